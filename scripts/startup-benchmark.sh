@@ -0,0 +1,101 @@
+#!/usr/bin/env bash
+#
+# Compares cold start of the plain fat jar with the AOT + AppCDS build.
+#
+# Build first with:
+#   mvn -B package -DskipTests -Pfast-startup
+# which leaves the fat jar in target/ and the extracted AOT jar plus the CDS archive in
+# target/fast-startup/. The fat jar run without -Dspring.aot.enabled=true is the baseline.
+#
+# Usage: scripts/startup-benchmark.sh [runs] [port]
+#
+# For each run the script starts the application, polls /actuator/health until it answers
+# (any HTTP status counts as ready, the database may be down) and reports the wall-clock
+# time-to-ready, the startup time logged by Spring and the resident set size at that point.
+
+set -euo pipefail
+
+RUNS="${1:-5}"
+PORT="${2:-18080}"
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+TARGET="$ROOT/target"
+JAVA_OPTS="${JAVA_OPTS:-}"
+
+PLAIN_JAR="$(ls "$TARGET"/amfk-starfish-sync-*.jar 2>/dev/null | grep -v -- '-plain' | head -n 1 || true)"
+FAST_DIR="$TARGET/fast-startup"
+FAST_JAR="$(ls "$FAST_DIR"/amfk-starfish-sync-*.jar 2>/dev/null | head -n 1 || true)"
+
+now_ms() {
+    date +%s%3N
+}
+
+rss_kb() {
+    awk '/VmRSS/ { print $2 }' "/proc/$1/status" 2>/dev/null || echo 0
+}
+
+# run_once <label> <java args...>
+run_once() {
+    local label="$1"
+    shift
+    local log
+    log="$(mktemp)"
+    local start
+    start="$(now_ms)"
+    java $JAVA_OPTS "$@" --server.port="$PORT" --site.sync.enabled=false > "$log" 2>&1 &
+    local pid=$!
+
+    local ready=""
+    for _ in $(seq 1 1200); do
+        if curl -s -o /dev/null "http://localhost:$PORT/actuator/health"; then
+            ready="$(now_ms)"
+            break
+        fi
+        if ! kill -0 "$pid" 2>/dev/null; then
+            break
+        fi
+        sleep 0.05
+    done
+
+    if [[ -z "$ready" ]]; then
+        echo "$label: application did not become ready, see $log" >&2
+        kill "$pid" 2>/dev/null || true
+        return 1
+    fi
+
+    local rss
+    rss="$(rss_kb "$pid")"
+    local started
+    started="$(grep -o 'Started SchedulerApplication in [0-9.]* seconds' "$log" | grep -o '[0-9.]*' | head -n 1 || true)"
+
+    kill "$pid" 2>/dev/null || true
+    wait "$pid" 2>/dev/null || true
+    rm -f "$log"
+
+    printf '%-12s ready=%d ms  spring=%s s  rss=%d KB\n' "$label" "$((ready - start))" "${started:-?}" "$rss"
+}
+
+summarize() {
+    local label="$1"
+    shift
+    local results=()
+    for i in $(seq 1 "$RUNS"); do
+        results+=("$(run_once "$label" "$@")")
+        echo "${results[-1]}"
+    done
+    printf '%s\n' "${results[@]}" | awk -v label="$label" '
+        { split($2, r, "="); ready += r[2]; split($(NF-1), m, "="); rss += m[2]; n++ }
+        END { if (n) printf "%-12s mean ready=%d ms  mean rss=%d KB  (%d runs)\n\n", label, ready / n, rss / n, n }'
+}
+
+if [[ -z "$PLAIN_JAR" ]]; then
+    echo "No application jar in $TARGET, run mvn package first" >&2
+    exit 1
+fi
+
+summarize "plain" -jar "$PLAIN_JAR"
+
+if [[ -n "$FAST_JAR" && -f "$FAST_DIR/application.jsa" ]]; then
+    summarize "aot+cds" -XX:SharedArchiveFile="$FAST_DIR/application.jsa" -Dspring.aot.enabled=true -jar "$FAST_JAR"
+else
+    echo "No fast-startup build in $FAST_DIR, run mvn package -Pfast-startup to compare" >&2
+fi
@@ -0,0 +1,92 @@
+package com.amfk.starfish.sync.bench;
+
+import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.service.SiteDtoMapper;
+import com.amfk.starfish.sync.util.StringPool;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the retained heap of a parsed site list with JOL.
+ *
+ * Run with:
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.amfk.starfish.sync.bench.SiteFootprint -Dbenchmark.args=100000
+ */
+public class SiteFootprint {
+
+    public static void main(String[] args) {
+        int siteCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        List<Map<String, Object>> rawSites = SyntheticSites.rawSites(siteCount);
+        SiteDtoMapper mapper = new SiteDtoMapper();
+
+        // Pool of size 0 behaves like the previous mapping: every value keeps its own instance
+        List<SiteDto> unpooled = convert(rawSites, mapper, new StringPool(0));
+        List<SiteDto> pooled = convert(rawSites, mapper, new StringPool(50_000));
+
+        report("SiteDto (no pool)", unpooled, siteCount);
+        report("SiteDto (run-scoped pool)", pooled, siteCount);
+    }
+
+    private static List<SiteDto> convert(List<Map<String, Object>> rawSites, SiteDtoMapper mapper, StringPool pool) {
+        List<SiteDto> sites = new ArrayList<>(rawSites.size());
+        for (Map<String, Object> raw : rawSites) {
+            // Copy the map so strings are fresh instances, as they would be after JSON parsing
+            sites.add(mapper.toSiteDto(SyntheticSites.freshCopy(raw), pool));
+        }
+        return sites;
+    }
+
+    private static void report(String label, Object root, int siteCount) {
+        long total = GraphLayout.parseInstance(root).totalSize();
+        System.out.printf("%-28s total=%,d bytes  per-site=%,d bytes%n", label, total, total / siteCount);
+    }
+
+    /**
+     * Synthetic Master Service payloads with realistic cardinality: a few hundred clusters,
+     * a handful of SIP domains, routing policies and audit users shared across all sites.
+     */
+    static final class SyntheticSites {
+
+        private SyntheticSites() {
+        }
+
+        static List<Map<String, Object>> rawSites(int count) {
+            List<Map<String, Object>> sites = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Map<String, Object> site = new LinkedHashMap<>();
+                int cluster = i % 300;
+                site.put("id", i);
+                site.put("name", "Site " + i);
+                site.put("nameEnglish", "Site " + i);
+                site.put("nameGerman", "Standort " + i);
+                site.put("locationCode", "LC" + i);
+                site.put("city", "City " + (i % 120));
+                site.put("street", "Street " + (i % 2000));
+                site.put("remark", null);
+                site.put("active", i % 10 == 0 ? 0 : 1);
+                site.put("logCreatedBy", "user" + (i % 8));
+                site.put("logUpdatedBy", "user" + (i % 8));
+                site.put("clusterName", "CLUSTER-" + cluster);
+                site.put("clusterId", cluster);
+                site.put("sipDomain", "sip" + (i % 6) + ".example.com");
+                site.put("routingPolicy", "RP-" + (i % 12));
+                site.put("cmName", "CM-" + cluster);
+                site.put("notes", "");
+                site.put("ars", "ARS-" + (i % 4));
+                site.put("userStamp", "batch");
+                sites.add(site);
+            }
+            return sites;
+        }
+
+        static Map<String, Object> freshCopy(Map<String, Object> raw) {
+            Map<String, Object> copy = new LinkedHashMap<>();
+            raw.forEach((key, value) -> copy.put(key, value instanceof String s ? new String(s) : value));
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.amfk.starfish.sync.bench;
+
+import com.amfk.starfish.sync.SchedulerApplication;
+import com.amfk.starfish.sync.harness.AmspTestDatabase;
+import com.amfk.starfish.sync.harness.LoadGenerator;
+import com.amfk.starfish.sync.harness.LoadGenerator.LoadResult;
+import org.h2.tools.Server;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Closed-loop load test of {@code GET /ProvisioningWebService/sps/v1/site} against a slow database.
+ *
+ * The application runs in-process against an H2 TCP server seeded with the amsp tables.
+ * Every site details query is slowed down by {@code dbDelayMs} on the server side, so
+ * request threads block on a socket read the way they do against a remote MySQL.
+ * Each concurrency level runs {@code duration} seconds and reports throughput and latency
+ * percentiles. Compare {@code virtual=false} and {@code virtual=true} (Java 21+) with a
+ * database pool large enough not to be the bottleneck: with platform threads throughput
+ * levels off at about {@code tomcatThreads / request latency}.
+ *
+ * Run with:
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.amfk.starfish.sync.bench.SiteLoadTest \
+ *     -Dbenchmark.args="virtual=true concurrency=10,50,100,200 duration=10 dbDelayMs=100 poolSize=400 tomcatThreads=50"
+ */
+public class SiteLoadTest {
+
+    private static final int CLUSTERS = 50;
+    private static final int RANGES_PER_CLUSTER = 10;
+
+    private static volatile long dbDelayMs;
+
+    public static void main(String[] args) throws Exception {
+        // devtools is on the benchmark classpath and would restart main in a new class loader
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        Map<String, String> options = parseOptions(args);
+        boolean virtual = Boolean.parseBoolean(options.getOrDefault("virtual", "false"));
+        int[] concurrencyLevels = Arrays.stream(options.getOrDefault("concurrency", "10,50,200,400").split(","))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "10"));
+        dbDelayMs = Long.parseLong(options.getOrDefault("dbDelayMs", "50"));
+        int poolSize = Integer.parseInt(options.getOrDefault("poolSize", "400"));
+        int tomcatThreads = Integer.parseInt(options.getOrDefault("tomcatThreads", "200"));
+
+        AmspTestDatabase database = AmspTestDatabase.create("site-load");
+        database.seedUniform(CLUSTERS, RANGES_PER_CLUSTER);
+        slowDownSiteDetails(database.getJdbcTemplate());
+        // The TCP server exposes the same in-memory database over a socket
+        Server dbServer = Server.createTcpServer("-tcpPort", "0").start();
+        String dbUrl = "jdbc:h2:tcp://localhost:" + dbServer.getPort() + "/mem:site-load;MODE=MySQL";
+
+        // Command line arguments take precedence over application.properties
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SchedulerApplication.class).run(
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=" + virtual,
+                "--server.tomcat.threads.max=" + tomcatThreads,
+                "--spring.datasource.url=" + dbUrl,
+                "--spring.datasource.driverClassName=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=none",
+                "--site.sync.enabled=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.amfk.starfish.sync=WARN");
+        try {
+            int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+            String baseUrl = "http://localhost:" + port + "/ProvisioningWebService/sps/v1/site?SiteName=";
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+
+            System.out.printf("Java %d, virtual threads requested=%s, tomcat threads=%d, db pool=%d, db delay=%d ms%n",
+                    Runtime.version().feature(), virtual, tomcatThreads, poolSize, dbDelayMs);
+            // Warm up the JIT, the connection pools and the lazy controller
+            LoadGenerator.closedLoop(Math.min(concurrencyLevels[0], 20), Duration.ofSeconds(3), () -> getSite(client, baseUrl));
+            System.out.println(LoadResult.header());
+            for (int concurrency : concurrencyLevels) {
+                LoadResult result = LoadGenerator.closedLoop(concurrency, Duration.ofSeconds(durationSeconds),
+                        () -> getSite(client, baseUrl));
+                System.out.println(result.format("c=" + concurrency));
+            }
+        } finally {
+            context.close();
+            dbServer.stop();
+        }
+    }
+
+    /**
+     * H2 function used by the slowed down view. H2 evaluates it once per joined range row,
+     * and every cluster has the same number of ranges, so a query takes {@code dbDelayMs}.
+     */
+    public static boolean slowQuery() {
+        LockSupport.parkNanos(dbDelayMs * 1_000_000L / RANGES_PER_CLUSTER);
+        return true;
+    }
+
+    private static void slowDownSiteDetails(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("CREATE ALIAS IF NOT EXISTS SLOW_QUERY FOR '" + SiteLoadTest.class.getName() + ".slowQuery'");
+        // The site details query joins the country view for every range row it returns
+        jdbcTemplate.execute("ALTER TABLE amsp.country RENAME TO country_data");
+        jdbcTemplate.execute("CREATE VIEW amsp.country AS SELECT * FROM amsp.country_data WHERE SLOW_QUERY()");
+    }
+
+    private static boolean getSite(HttpClient client, String baseUrl) throws Exception {
+        String cluster = AmspTestDatabase.clusterName(ThreadLocalRandom.current().nextInt(CLUSTERS));
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + cluster))
+                .timeout(Duration.ofSeconds(60)).build(), HttpResponse.BodyHandlers.discarding());
+        return response.statusCode() == 200;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator > 0) {
+                options.put(arg.substring(0, separator), arg.substring(separator + 1));
+            }
+        }
+        return options;
+    }
+}
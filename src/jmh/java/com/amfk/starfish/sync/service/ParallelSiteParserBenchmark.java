@@ -0,0 +1,79 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.harness.SiteFixtures;
+import com.amfk.starfish.sync.util.StringPool;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse-and-convert time of a site array by size and thread count, against the sequential
+ * Jackson parse; time should drop with threads up to the number of cores.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="ParallelSiteParserBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelSiteParserBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Param({"10000", "50000", "100000"})
+    private int sites;
+
+    @Param({"1", "2", "4"})
+    private int threads;
+
+    private final SiteDtoMapper siteDtoMapper = new SiteDtoMapper();
+    private byte[] json;
+    private ParallelSiteParser parser;
+
+    @Setup
+    public void setUp() {
+        json = SiteFixtures.sitesJson(sites, 500).getBytes(StandardCharsets.UTF_8);
+        parser = new ParallelSiteParser(true, 0, 500, threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        parser.destroy();
+    }
+
+    @Benchmark
+    public List<SiteDto> sequential() throws Exception {
+        List<Map<String, Object>> raw = MAPPER.readValue(json, new TypeReference<>() {});
+        StringPool stringPool = new StringPool(10000);
+        List<SiteDto> result = new ArrayList<>(raw.size());
+        for (Map<String, Object> site : raw) {
+            result.add(siteDtoMapper.toSiteDto(site, stringPool));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<SiteDto> parallel() {
+        return parser.parse(json, siteDtoMapper, new StringPool(10000)).sites();
+    }
+}
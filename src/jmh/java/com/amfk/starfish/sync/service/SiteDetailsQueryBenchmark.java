@@ -0,0 +1,84 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.RangeRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the map-based and typed mappings of the site details query on an embedded database.
+ *
+ * Run with the GC profiler to see per-row allocations:
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="SiteDetailsQueryBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SiteDetailsQueryBenchmark {
+
+    private static final String CLUSTER = "CLUSTER-1";
+
+    @Param({"50", "2000"})
+    private int rangesPerCluster;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup
+    public void setUp() {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:site-details-" + rangesPerCluster + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(500);
+        jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS amsp");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS amsp.country (id INT PRIMARY KEY, country_code VARCHAR(8))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS amsp.pbx_phonenumber_type (id INT PRIMARY KEY, name VARCHAR(32))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS amsp.pbx_cluster (id INT PRIMARY KEY, name VARCHAR(64), "
+                + "id_pbx VARCHAR(64), id_country INT, active INT)");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS amsp.pbx_number_range (id INT PRIMARY KEY, id_pbx_cluster INT, "
+                + "phone_number_type INT, range_from BIGINT, range_to BIGINT, active INT)");
+        jdbcTemplate.update("MERGE INTO amsp.country KEY (id) VALUES (1, '49')");
+        jdbcTemplate.update("MERGE INTO amsp.pbx_phonenumber_type KEY (id) VALUES (1, 'DID')");
+        jdbcTemplate.update("MERGE INTO amsp.pbx_cluster KEY (id) VALUES (1, ?, 'CM-1', 1, 1)", CLUSTER);
+        for (int i = 0; i < rangesPerCluster; i++) {
+            jdbcTemplate.update("MERGE INTO amsp.pbx_number_range KEY (id) VALUES (?, 1, 1, ?, ?, 1)",
+                    i, 4930000000L + i * 100L, 4930000000L + i * 100L + 99);
+        }
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> queryForListMaps() {
+        return jdbcTemplate.queryForList(MockApiService.SITE_DETAILS_SQL, CLUSTER, CLUSTER);
+    }
+
+    @Benchmark
+    public List<RangeRow> typedRowMapper() {
+        return jdbcTemplate.query(MockApiService.SITE_DETAILS_SQL, MockApiService.RANGE_ROW_MAPPER, CLUSTER, CLUSTER);
+    }
+
+    @Benchmark
+    public void streamingCallback(Blackhole blackhole) {
+        int[] rowNum = {0};
+        jdbcTemplate.query(MockApiService.SITE_DETAILS_SQL,
+                (RowCallbackHandler) rs -> blackhole.consume(MockApiService.RANGE_ROW_MAPPER.mapRow(rs, rowNum[0]++)),
+                CLUSTER, CLUSTER);
+    }
+}
@@ -0,0 +1,73 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.SiteDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reconciliation time by input size; time per site should stay flat as the lists grow.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="SiteReconcilerBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SiteReconcilerBenchmark {
+
+    private static final String[] FIELDS = {"name", "locationCode", "clusterName", "clusterId", "cmName", "active", "city", "street"};
+
+    @Param({"10000", "50000", "100000"})
+    private int sites;
+
+    private List<SiteDto> master;
+    private List<Map<String, Object>> starfish;
+
+    @Setup
+    public void setUp() {
+        master = new ArrayList<>(sites);
+        starfish = new ArrayList<>(sites);
+        for (int i = 0; i < sites; i++) {
+            SiteDto site = new SiteDto(i, "Site " + i, "DE-FRA-CL" + (i % 500), i % 500 + 1);
+            site.setLocationCode("LOC" + i);
+            site.setCity("Frankfurt");
+            site.setActive(1);
+            master.add(site);
+            // 10% new in the Master Service, 5% changed, 10% only in Starfish
+            if (i % 10 != 0) {
+                Map<String, Object> raw = new HashMap<>();
+                raw.put("id", i % 10 == 1 ? sites + i : i);
+                raw.put("name", i % 20 == 3 ? "Renamed " + i : "Site " + i);
+                raw.put("locationCode", "LOC" + i);
+                raw.put("clusterName", "DE-FRA-CL" + (i % 500));
+                raw.put("clusterId", i % 500 + 1);
+                raw.put("city", "Frankfurt");
+                raw.put("active", 1);
+                starfish.add(raw);
+            }
+        }
+    }
+
+    @Benchmark
+    public SiteReconciler.Summary reconcile(Blackhole blackhole) {
+        return SiteReconciler.reconcile(master, starfish, "locationCode", FIELDS, blackhole::consume);
+    }
+}
@@ -0,0 +1,103 @@
+package com.amfk.starfish.sync.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Primary and read-only datasources.
+ *
+ * The primary pool is built from the standard {@code spring.datasource.*} properties and
+ * backs JPA and every write. Heavy read-only queries use {@code readJdbcTemplate}, which
+ * routes to the replicas listed in {@code db.replica.urls} (one HikariCP pool each,
+ * named {@code replica-N}) and falls back to the primary, both when a replica refuses
+ * connections and when a query fails on it. With no replica configured,
+ * reads simply go to the primary. Both templates cut statement timeouts to the remaining
+ * budget of a sync run, see {@link DeadlineJdbcTemplate}.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Value("${db.replica.urls:}")
+    private String replicaUrls;
+
+    @Value("${db.replica.username:${spring.datasource.username:}}")
+    private String replicaUsername;
+
+    @Value("${db.replica.password:${spring.datasource.password:}}")
+    private String replicaPassword;
+
+    @Value("${db.replica.pool.max.size:10}")
+    private int replicaPoolMaxSize;
+
+    @Value("${db.replica.failure.cooldown.ms:30000}")
+    private long replicaFailureCooldownMs;
+
+    @Value("${db.read.fetch.size:500}")
+    private int readFetchSize;
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+        return new DeadlineJdbcTemplate(dataSource);
+    }
+
+    @Bean
+    public ReadReplicaRoutingDataSource readDataSource(HikariDataSource dataSource, MeterRegistry meterRegistry) {
+        List<DataSource> replicas = new ArrayList<>();
+        List<String> urls = Arrays.stream(replicaUrls.split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .toList();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + (i + 1));
+            replica.setJdbcUrl(urls.get(i));
+            replica.setUsername(replicaUsername);
+            replica.setPassword(replicaPassword);
+            if (dataSource.getDriverClassName() != null) {
+                replica.setDriverClassName(dataSource.getDriverClassName());
+            }
+            replica.setDataSourceProperties(dataSource.getDataSourceProperties());
+            replica.setMaximumPoolSize(replicaPoolMaxSize);
+            replica.setReadOnly(true);
+            replica.setInitializationFailTimeout(-1);
+            replica.setMetricRegistry(meterRegistry);
+            replicas.add(replica);
+        }
+        return new ReadReplicaRoutingDataSource(dataSource, replicas, replicaFailureCooldownMs, meterRegistry);
+    }
+
+    /**
+     * JdbcTemplate for read-only queries, routed to the replicas when configured. A query
+     * that fails on a replica is repeated on the primary, see {@link ReplicaReadJdbcTemplate}.
+     * Rows are fetched in batches of {@code db.read.fetch.size} so large result sets
+     * can be consumed row by row.
+     */
+    @Bean
+    public JdbcTemplate readJdbcTemplate(ReadReplicaRoutingDataSource readDataSource) {
+        JdbcTemplate readJdbcTemplate = new ReplicaReadJdbcTemplate(readDataSource);
+        readJdbcTemplate.setFetchSize(readFetchSize);
+        return readJdbcTemplate;
+    }
+}
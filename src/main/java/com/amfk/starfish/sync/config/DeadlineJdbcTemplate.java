@@ -0,0 +1,33 @@
+package com.amfk.starfish.sync.config;
+
+import com.amfk.starfish.sync.util.Deadline;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * JdbcTemplate whose statements time out no later than the run {@link Deadline} of the
+ * calling thread: the query timeout becomes {@code min(configured timeout, remaining budget)},
+ * rounded up to whole seconds as JDBC requires. Without a deadline it behaves like a
+ * plain JdbcTemplate.
+ */
+public class DeadlineJdbcTemplate extends JdbcTemplate {
+
+    public DeadlineJdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        super.applyStatementSettings(stmt);
+        if (Deadline.current() == null) {
+            return;
+        }
+        // 0 means no timeout for both the statement and the clamp
+        long configuredMs = stmt.getQueryTimeout() * 1000L;
+        long timeoutMs = Deadline.clamp(configuredMs);
+        stmt.setQueryTimeout((int) Math.max(1, (timeoutMs + 999) / 1000));
+    }
+}
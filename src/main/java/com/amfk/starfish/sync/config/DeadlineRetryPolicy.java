@@ -0,0 +1,66 @@
+package com.amfk.starfish.sync.config;
+
+import com.amfk.starfish.sync.util.Deadline;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryPolicy;
+import org.springframework.retry.context.RetryContextSupport;
+
+/**
+ * Retry policy that stops retrying when the run {@link Deadline} of the calling thread
+ * cannot fit another attempt: the remaining budget must be at least as long as the
+ * previous attempt took, and at least {@code minAttemptMs}. Always allows retrying on a
+ * thread without a deadline; meant to be combined with a policy that limits attempts.
+ */
+public class DeadlineRetryPolicy implements RetryPolicy {
+
+    /**
+     * Shortest attempt worth starting: below this the call would only time out.
+     */
+    public static final long DEFAULT_MIN_ATTEMPT_MS = 1000;
+
+    private static final String ATTEMPT_STARTED = "deadline.attemptStartedNanos";
+    private static final String LAST_ATTEMPT_MS = "deadline.lastAttemptMs";
+
+    private final long minAttemptMs;
+
+    public DeadlineRetryPolicy(long minAttemptMs) {
+        this.minAttemptMs = minAttemptMs;
+    }
+
+    @Override
+    public boolean canRetry(RetryContext context) {
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return true;
+        }
+        Long lastAttemptMs = (Long) context.getAttribute(LAST_ATTEMPT_MS);
+        long needed = Math.max(minAttemptMs, lastAttemptMs != null ? lastAttemptMs : 0);
+        if (context.getRetryCount() > 0 && deadline.remainingMs() < needed) {
+            context.setAttribute(RetryContext.EXHAUSTED, true);
+            return false;
+        }
+        if (deadline.isExpired()) {
+            return false;
+        }
+        context.setAttribute(ATTEMPT_STARTED, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public RetryContext open(RetryContext parent) {
+        return new RetryContextSupport(parent);
+    }
+
+    @Override
+    public void close(RetryContext context) {
+    }
+
+    @Override
+    public void registerThrowable(RetryContext context, Throwable throwable) {
+        Long started = (Long) context.getAttribute(ATTEMPT_STARTED);
+        if (started != null) {
+            context.setAttribute(LAST_ATTEMPT_MS, (System.nanoTime() - started) / 1_000_000);
+        }
+        ((RetryContextSupport) context).registerThrowable(throwable);
+    }
+}
@@ -0,0 +1,72 @@
+package com.amfk.starfish.sync.config;
+
+import com.amfk.starfish.sync.config.MasterServiceSourceProperties.Source;
+import com.amfk.starfish.sync.service.HealthProber;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.CompositeHealthContributor;
+import org.springframework.boot.actuate.health.HealthContributor;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Actuator health of the Master Service, Starfish and the database, answered from the
+ * cached results of the {@link HealthProber}.
+ *
+ * HTTP probes share a separate client with short {@code health.probe.*} timeouts, owned
+ * and closed by the prober.
+ * With several Master Service sources every source is a component of {@code masterService}.
+ * Spring Boot's own {@code db} indicator, which queries on every request, is disabled
+ * in favour of {@code database}.
+ */
+@Configuration
+public class HealthIndicatorConfig {
+
+    @Value("${health.probe.connect.timeout.ms:2000}")
+    private int connectTimeoutMs;
+
+    @Value("${health.probe.read.timeout.ms:3000}")
+    private int readTimeoutMs;
+
+    @Bean
+    public HealthContributor masterServiceHealthContributor(HealthProber healthProber,
+                                                            RestClientConfig restClientConfig,
+                                                            MasterServiceSourceProperties sourceProperties,
+                                                            @Value("${master.service.base.url}") String baseUrl) {
+        RestTemplate probeClient = probeClient(healthProber, restClientConfig);
+        if (sourceProperties.getSources().isEmpty()) {
+            return healthProber.register("masterService", HealthProber.http(probeClient, baseUrl + "/health"));
+        }
+        Map<String, HealthIndicator> sources = new LinkedHashMap<>();
+        for (Source source : sourceProperties.getSources()) {
+            String name = source.getName() != null && !source.getName().isBlank()
+                    ? source.getName().trim() : "source-" + (sources.size() + 1);
+            sources.put(name, healthProber.register("masterService." + name,
+                    HealthProber.http(probeClient, source.getBaseUrl() + "/health")));
+        }
+        return CompositeHealthContributor.fromMap(sources);
+    }
+
+    @Bean
+    public HealthIndicator starfishHealthIndicator(HealthProber healthProber, RestClientConfig restClientConfig,
+                                                   @Value("${starfish.api.base.url:https://linpubah043.gl.avaya.com:9003}")
+                                                   String baseUrl) {
+        return healthProber.register("starfish", HealthProber.http(probeClient(healthProber, restClientConfig), baseUrl + "/health"));
+    }
+
+    @Bean
+    public HealthIndicator databaseHealthIndicator(HealthProber healthProber, HikariDataSource dataSource) {
+        return healthProber.register("database",
+                HealthProber.database(dataSource, Math.max(1, readTimeoutMs / 1000)));
+    }
+
+    private RestTemplate probeClient(HealthProber healthProber, RestClientConfig restClientConfig) {
+        // Pool connections are opened on demand; the limit only has to cover one per probe
+        return healthProber.httpClient(() -> restClientConfig.restTemplate(connectTimeoutMs, readTimeoutMs, 16));
+    }
+}
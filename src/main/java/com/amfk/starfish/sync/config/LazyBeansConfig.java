@@ -0,0 +1,36 @@
+package com.amfk.starfish.sync.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.Arrays;
+
+/**
+ * Marks beans that are not needed until first use as lazy, to shorten startup.
+ *
+ * The bean names come from {@code startup.lazy.beans}. By default this covers the mail
+ * sender, which is auto-configured but only used for notifications, and the mock
+ * provisioning controller, whose request mappings are still registered at startup while
+ * the controller itself is created on the first request.
+ */
+@Configuration
+public class LazyBeansConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(LazyBeansConfig.class);
+
+    @Bean
+    public static BeanFactoryPostProcessor lazyBeansPostProcessor(Environment environment) {
+        String[] beanNames = environment.getProperty("startup.lazy.beans", String[].class, new String[0]);
+        return beanFactory -> Arrays.stream(beanNames)
+                .map(String::trim)
+                .filter(beanName -> !beanName.isEmpty() && beanFactory.containsBeanDefinition(beanName))
+                .forEach(beanName -> {
+                    beanFactory.getBeanDefinition(beanName).setLazyInit(true);
+                    logger.debug("Bean '{}' will be initialized on first use", beanName);
+                });
+    }
+}
@@ -0,0 +1,142 @@
+package com.amfk.starfish.sync.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Master Service instances sites are fetched from, bound from {@code master.service.sources[n].*}.
+ *
+ * Every source gets its own connection pool, timeouts, retry policy and deadline, so a
+ * slow or failing instance cannot hold up the others. When the list is empty the single
+ * instance configured by {@code master.service.base.url} is used.
+ */
+@ConfigurationProperties("master.service")
+public class MasterServiceSourceProperties {
+
+    private List<Source> sources = new ArrayList<>();
+
+    public List<Source> getSources() {
+        return sources;
+    }
+
+    public void setSources(List<Source> sources) {
+        this.sources = sources;
+    }
+
+    public static class Source {
+
+        /** Tag put on the sites of this source and on its metrics. */
+        private String name;
+        private String baseUrl;
+        private String bearerToken;
+        /** Token endpoint logged into with username and password; replaces the static bearer token. */
+        private String tokenUrl;
+        private String username;
+        private String password;
+        private int connectionTimeout = 30000;
+        private int readTimeout = 300000;
+        private int maxConnections = 20;
+        /** Wall-clock budget for the whole fetch including retries; the source is skipped beyond it. */
+        private long deadlineMs = 600000;
+        private int maxAttempts = 3;
+        private long backoffMs = 2000;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        public void setBaseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        public String getBearerToken() {
+            return bearerToken;
+        }
+
+        public void setBearerToken(String bearerToken) {
+            this.bearerToken = bearerToken;
+        }
+
+        public String getTokenUrl() {
+            return tokenUrl;
+        }
+
+        public void setTokenUrl(String tokenUrl) {
+            this.tokenUrl = tokenUrl;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public int getConnectionTimeout() {
+            return connectionTimeout;
+        }
+
+        public void setConnectionTimeout(int connectionTimeout) {
+            this.connectionTimeout = connectionTimeout;
+        }
+
+        public int getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(int readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public long getDeadlineMs() {
+            return deadlineMs;
+        }
+
+        public void setDeadlineMs(long deadlineMs) {
+            this.deadlineMs = deadlineMs;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getBackoffMs() {
+            return backoffMs;
+        }
+
+        public void setBackoffMs(long backoffMs) {
+            this.backoffMs = backoffMs;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.amfk.starfish.sync.config;
+
+import com.amfk.starfish.sync.util.Deadline;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * DataSource for read-only queries that spreads connections over the read replicas
+ * round-robin and falls back to the primary.
+ *
+ * A replica that fails to hand out a connection is skipped for
+ * {@code failureCooldownMs}; when no replica is available (or none is configured) the
+ * connection comes from the primary pool. Each route is counted in the
+ * {@code db.read.route} metric, tagged with the target pool.
+ *
+ * A statement that fails on a replica after the connection was handed out is covered by
+ * {@link #withPrimaryFallback}, which {@link ReplicaReadJdbcTemplate} applies to its queries:
+ * the replica is put on cooldown and the read runs again on the primary.
+ */
+public class ReadReplicaRoutingDataSource extends AbstractDataSource implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadReplicaRoutingDataSource.class);
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final long failureCooldownMs;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final AtomicLongArray downUntil;
+    private final Counter[] replicaRoutes;
+    private final Counter primaryRoutes;
+    private final Counter fallbacks;
+    // Replica that served the last connection of the current read, or NONE
+    private final ThreadLocal<Integer> lastReplica = ThreadLocal.withInitial(() -> NONE);
+    private final ThreadLocal<Boolean> primaryOnly = ThreadLocal.withInitial(() -> false);
+
+    private static final int NONE = -1;
+
+    public ReadReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas,
+                                        long failureCooldownMs, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.failureCooldownMs = failureCooldownMs;
+        this.downUntil = new AtomicLongArray(replicas.size());
+        this.replicaRoutes = new Counter[replicas.size()];
+        for (int i = 0; i < replicas.size(); i++) {
+            replicaRoutes[i] = Counter.builder("db.read.route").tag("target", "replica-" + (i + 1))
+                    .description("Read-only connections handed out per route").register(meterRegistry);
+        }
+        this.primaryRoutes = Counter.builder("db.read.route").tag("target", "primary")
+                .description("Read-only connections handed out per route").register(meterRegistry);
+        this.fallbacks = Counter.builder("db.read.fallback")
+                .description("Replica failures that fell back to another route").register(meterRegistry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private Connection route(ConnectionSource source) throws SQLException {
+        int replicaCount = replicas.size();
+        if (replicaCount > 0 && !primaryOnly.get()) {
+            long now = System.currentTimeMillis();
+            int start = Math.floorMod(nextReplica.getAndIncrement(), replicaCount);
+            for (int attempt = 0; attempt < replicaCount; attempt++) {
+                int index = (start + attempt) % replicaCount;
+                if (downUntil.get(index) > now) {
+                    continue;
+                }
+                try {
+                    Connection connection = source.open(replicas.get(index));
+                    replicaRoutes[index].increment();
+                    lastReplica.set(index);
+                    return connection;
+                } catch (SQLException e) {
+                    markDown(index, e);
+                }
+            }
+        }
+        primaryRoutes.increment();
+        lastReplica.set(NONE);
+        return source.open(primary);
+    }
+
+    /**
+     * Runs a read; if it fails on a replica before {@code nothingDelivered} turns false,
+     * the replica is put on cooldown and the read runs once more on the primary. Reads
+     * that already handed rows to the caller, or that ran past the run deadline, are not
+     * repeated.
+     */
+    public <T> T withPrimaryFallback(Supplier<T> read, BooleanSupplier nothingDelivered) {
+        if (replicas.isEmpty() || primaryOnly.get()) {
+            return read.get();
+        }
+        try {
+            return read.get();
+        } catch (DataAccessException e) {
+            int replica = lastReplica.get();
+            Deadline deadline = Deadline.current();
+            if (replica == NONE || !nothingDelivered.getAsBoolean() || (deadline != null && deadline.isExpired())) {
+                throw e;
+            }
+            markDown(replica, e);
+            primaryOnly.set(true);
+            try {
+                return read.get();
+            } finally {
+                primaryOnly.remove();
+            }
+        } finally {
+            lastReplica.remove();
+        }
+    }
+
+    private void markDown(int index, Exception cause) {
+        downUntil.set(index, System.currentTimeMillis() + failureCooldownMs);
+        fallbacks.increment();
+        logger.warn("Read replica {} failed, skipping it for {} ms: {}", index + 1, failureCooldownMs, cause.getMessage());
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSource {
+        Connection open(DataSource dataSource) throws SQLException;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (DataSource replica : replicas) {
+            if (replica instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
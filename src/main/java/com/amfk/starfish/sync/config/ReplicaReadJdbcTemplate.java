@@ -0,0 +1,76 @@
+package com.amfk.starfish.sync.config;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Read-only template over a {@link ReadReplicaRoutingDataSource} that repeats a query on
+ * the primary when it fails on a replica.
+ *
+ * Queries returning a list are always safe to repeat. Row callback queries are only
+ * repeated if the failure came before the first row reached the callback, so a caller
+ * streaming rows never sees one twice; a replica that breaks mid-stream fails the query.
+ * Other {@code JdbcTemplate} methods run without fallback.
+ */
+public class ReplicaReadJdbcTemplate extends DeadlineJdbcTemplate {
+
+    private final ReadReplicaRoutingDataSource routingDataSource;
+
+    public ReplicaReadJdbcTemplate(ReadReplicaRoutingDataSource routingDataSource) {
+        super(routingDataSource);
+        this.routingDataSource = routingDataSource;
+    }
+
+    @Override
+    public void query(String sql, RowCallbackHandler rch) throws DataAccessException {
+        DeliveryTrackingHandler handler = new DeliveryTrackingHandler(rch);
+        routingDataSource.withPrimaryFallback(() -> {
+            super.query(sql, handler);
+            return null;
+        }, handler::nothingDelivered);
+    }
+
+    @Override
+    public void query(String sql, RowCallbackHandler rch, Object... args) throws DataAccessException {
+        DeliveryTrackingHandler handler = new DeliveryTrackingHandler(rch);
+        routingDataSource.withPrimaryFallback(() -> {
+            super.query(sql, handler, args);
+            return null;
+        }, handler::nothingDelivered);
+    }
+
+    @Override
+    public <T> List<T> query(String sql, RowMapper<T> rowMapper) throws DataAccessException {
+        return routingDataSource.withPrimaryFallback(() -> super.query(sql, rowMapper), () -> true);
+    }
+
+    @Override
+    public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) throws DataAccessException {
+        return routingDataSource.withPrimaryFallback(() -> super.query(sql, rowMapper, args), () -> true);
+    }
+
+    private static final class DeliveryTrackingHandler implements RowCallbackHandler {
+
+        private final RowCallbackHandler delegate;
+        private boolean delivered;
+
+        DeliveryTrackingHandler(RowCallbackHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            delivered = true;
+            delegate.processRow(rs);
+        }
+
+        boolean nothingDelivered() {
+            return !delivered;
+        }
+    }
+}
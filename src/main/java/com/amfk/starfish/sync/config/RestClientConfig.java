@@ -1,7 +1,10 @@
 package com.amfk.starfish.sync.config;
 
+import com.amfk.starfish.sync.util.Deadline;
+import org.apache.hc.client5.http.config.ConnectionConfig;
 import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
@@ -10,7 +13,9 @@ import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
 import org.apache.hc.core5.util.Timeout;
 import org.apache.hc.core5.http.config.Registry;
 import org.apache.hc.core5.http.config.RegistryBuilder;
+import org.apache.hc.core5.http.protocol.HttpContext;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
@@ -26,6 +31,7 @@ import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 
 @Configuration
+@EnableConfigurationProperties(MasterServiceSourceProperties.class)
 public class RestClientConfig {
     
     @Value("${rest.client.connection.timeout:30000}")
@@ -45,12 +51,48 @@ public class RestClientConfig {
     
     @Bean
     public RestTemplate restTemplate() {
+        return restTemplate(connectionTimeout, readTimeout, maxConnections);
+    }
+    
+    /**
+     * RestTemplate with its own connection pool and timeouts, for upstreams that must not
+     * share the default pool (see {@link MasterServiceSourceProperties}).
+     *
+     * A request made under a run {@link Deadline} waits for a pooled connection and for the
+     * response at most the remaining budget, and fails right away once the deadline has
+     * passed. Opening a new connection is bounded by the connect timeout of the pool.
+     */
+    public RestTemplate restTemplate(int connectionTimeout, int readTimeout, int maxConnections) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setResponseTimeout(Timeout.ofMilliseconds(readTimeout))
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectionTimeout))
+                .setCircularRedirectsAllowed(true)
+                .setMaxRedirects(3)
+                .build();
         HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory();
-        factory.setHttpClient(httpClient());
+        factory.setHttpClient(httpClient(requestConfig, connectionTimeout, maxConnections));
+        factory.setHttpContextFactory((method, uri) -> deadlineContext(requestConfig));
         return new RestTemplate(factory);
     }
     
-    private CloseableHttpClient httpClient() {
+    /**
+     * Per-request context with the connection request and response timeouts cut to the
+     * remaining run budget, or null (client defaults) when the calling thread has no deadline.
+     */
+    static HttpContext deadlineContext(RequestConfig defaults) {
+        if (Deadline.current() == null) {
+            return null;
+        }
+        HttpClientContext context = HttpClientContext.create();
+        context.setRequestConfig(RequestConfig.copy(defaults)
+                .setResponseTimeout(Timeout.ofMilliseconds(Deadline.clamp(defaults.getResponseTimeout().toMilliseconds())))
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(
+                        Deadline.clamp(defaults.getConnectionRequestTimeout().toMilliseconds())))
+                .build());
+        return context;
+    }
+    
+    private CloseableHttpClient httpClient(RequestConfig requestConfig, int connectionTimeout, int maxConnections) {
         // Create socket factory registry
         Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
                 .register("http", PlainConnectionSocketFactory.getSocketFactory())
@@ -59,18 +101,13 @@ public class RestClientConfig {
         
         PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
         connectionManager.setMaxTotal(maxConnections);
-        connectionManager.setDefaultMaxPerRoute(maxConnections / 2);
+        connectionManager.setDefaultMaxPerRoute(Math.max(1, maxConnections / 2));
         
         // Configure connection pool for large responses
-        connectionManager.setValidateAfterInactivity(org.apache.hc.core5.util.Timeout.ofMilliseconds(5000));
-        
-        RequestConfig requestConfig = RequestConfig.custom()
+        connectionManager.setDefaultConnectionConfig(ConnectionConfig.custom()
                 .setConnectTimeout(Timeout.ofMilliseconds(connectionTimeout))
-                .setResponseTimeout(Timeout.ofMilliseconds(readTimeout))
-                .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectionTimeout))
-                .setCircularRedirectsAllowed(true)
-                .setMaxRedirects(3)
-                .build();
+                .setValidateAfterInactivity(Timeout.ofMilliseconds(5000))
+                .build());
         
         CloseableHttpClient httpClient = HttpClients.custom()
                 .setConnectionManager(connectionManager)
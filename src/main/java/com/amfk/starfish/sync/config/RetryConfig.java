@@ -1,12 +1,17 @@
 package com.amfk.starfish.sync.config;
 
+import com.amfk.starfish.sync.service.SpoolParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import org.apache.hc.core5.http.TruncatedChunkException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.retry.RetryPolicy;
 import org.springframework.retry.backoff.ExponentialBackOffPolicy;
+import org.springframework.retry.interceptor.RetryInterceptorBuilder;
+import org.springframework.retry.interceptor.RetryOperationsInterceptor;
 import org.springframework.retry.policy.CompositeRetryPolicy;
 import org.springframework.retry.policy.SimpleRetryPolicy;
 import org.springframework.retry.policy.TimeoutRetryPolicy;
@@ -44,7 +49,10 @@ public class RetryConfig {
         TimeoutRetryPolicy timeoutRetryPolicy = new TimeoutRetryPolicy();
         timeoutRetryPolicy.setTimeout(600000); // 10 minutes total timeout for large datasets
         
-        compositeRetryPolicy.setPolicies(new RetryPolicy[]{simpleRetryPolicy, timeoutRetryPolicy});
+        // Run deadline: no retry that the remaining budget of the sync run cannot fit
+        DeadlineRetryPolicy deadlineRetryPolicy = new DeadlineRetryPolicy(DeadlineRetryPolicy.DEFAULT_MIN_ATTEMPT_MS);
+        
+        compositeRetryPolicy.setPolicies(new RetryPolicy[]{simpleRetryPolicy, timeoutRetryPolicy, deadlineRetryPolicy});
         retryTemplate.setRetryPolicy(compositeRetryPolicy);
         
         // Exponential backoff policy
@@ -75,6 +83,43 @@ public class RetryConfig {
         return retryTemplate;
     }
     
+    /**
+     * Retry advice of {@code MasterServiceClient.getSites()}: up to 8 attempts with
+     * exponential backoff, bounded by the 10-minute timeout and by the deadline of the
+     * sync run. When attempts are exhausted, the last error is rethrown wrapped. A spool
+     * that was received but cannot be parsed is not retried, even when caused by a JSON
+     * mapping error.
+     */
+    @Bean
+    public RetryOperationsInterceptor masterServiceRetryInterceptor() {
+        Map<Class<? extends Throwable>, Boolean> retryableExceptions = new HashMap<>();
+        retryableExceptions.put(HttpServerErrorException.class, true);
+        retryableExceptions.put(ResourceAccessException.class, true);
+        retryableExceptions.put(RestClientException.class, true);
+        retryableExceptions.put(HttpMessageNotReadableException.class, true);
+        retryableExceptions.put(JsonMappingException.class, true);
+        // Mapped explicitly so that its causes are not looked at
+        retryableExceptions.put(SpoolParseException.class, false);
+        
+        TimeoutRetryPolicy timeoutRetryPolicy = new TimeoutRetryPolicy();
+        timeoutRetryPolicy.setTimeout(600000);
+        
+        CompositeRetryPolicy retryPolicy = new CompositeRetryPolicy();
+        retryPolicy.setPolicies(new RetryPolicy[]{
+                new SimpleRetryPolicy(8, retryableExceptions, true),
+                timeoutRetryPolicy,
+                new DeadlineRetryPolicy(DeadlineRetryPolicy.DEFAULT_MIN_ATTEMPT_MS)});
+        
+        return RetryInterceptorBuilder.stateless()
+                .retryPolicy(retryPolicy)
+                .backOffOptions(3000, 1.5, 60000)
+                .recoverer((args, cause) -> {
+                    logger.error("All retry attempts failed for getSites. Last error: {}", cause.getMessage(), cause);
+                    throw new RuntimeException("Failed to fetch sites from Master Service after all retry attempts", cause);
+                })
+                .build();
+    }
+    
     /**
      * Checks if the given throwable is caused by a TruncatedChunkException
      */
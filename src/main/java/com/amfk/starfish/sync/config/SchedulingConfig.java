@@ -0,0 +1,106 @@
+package com.amfk.starfish.sync.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.SimpleAsyncTaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Thread pools used for scheduling.
+ *
+ * The site sync gets its own scheduler and executor so a long running sync never
+ * occupies the shared {@code taskScheduler} that drives every other @Scheduled task.
+ *
+ * With virtual threads active (see {@link VirtualThreads}) the schedulers fire tasks on
+ * new virtual threads instead of a fixed pool, and the sync itself runs on a virtual thread.
+ */
+@Configuration
+public class SchedulingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchedulingConfig.class);
+
+    @Value("${spring.task.scheduling.pool.size:2}")
+    private int schedulerPoolSize;
+
+    private final boolean virtualThreads;
+
+    public SchedulingConfig(Environment environment) {
+        this.virtualThreads = VirtualThreads.isActive(environment);
+        if (VirtualThreads.isRequestedButUnavailable(environment)) {
+            logger.warn("spring.threads.virtual.enabled is set but Java {} has no virtual threads, using platform threads",
+                    Runtime.version().feature());
+        } else if (virtualThreads) {
+            logger.info("Running servlet requests, scheduled tasks and site sync work on virtual threads");
+        }
+    }
+
+    /**
+     * Default scheduler picked up by @Scheduled methods that do not name a scheduler.
+     */
+    @Bean
+    public TaskScheduler taskScheduler() {
+        if (virtualThreads) {
+            return virtualScheduler("scheduling-");
+        }
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(schedulerPoolSize);
+        scheduler.setThreadNamePrefix("scheduling-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(false);
+        return scheduler;
+    }
+
+    /**
+     * Dedicated single-threaded scheduler that fires the site sync cron trigger.
+     */
+    @Bean
+    public TaskScheduler siteSyncTaskScheduler() {
+        if (virtualThreads) {
+            // Each firing runs on its own virtual thread and does not wait for the previous one;
+            // an overlapping firing joins the running sync through SiteSyncCoordinator
+            return virtualScheduler("site-sync-scheduler-");
+        }
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("site-sync-scheduler-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(false);
+        return scheduler;
+    }
+
+    /**
+     * Executor that runs the actual site sync. A single thread is enough since
+     * only one sync may be in flight at any time.
+     *
+     * Not a default candidate: it is only injected by name, and Boot keeps its own
+     * {@code applicationTaskExecutor} for @Async and MVC async requests.
+     */
+    @Bean(defaultCandidate = false)
+    public TaskExecutor siteSyncExecutor() {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("site-sync-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(1);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("site-sync-");
+        return executor;
+    }
+
+    private SimpleAsyncTaskScheduler virtualScheduler(String threadNamePrefix) {
+        SimpleAsyncTaskScheduler scheduler = new SimpleAsyncTaskScheduler();
+        scheduler.setVirtualThreads(true);
+        scheduler.setThreadNamePrefix(threadNamePrefix);
+        return scheduler;
+    }
+}
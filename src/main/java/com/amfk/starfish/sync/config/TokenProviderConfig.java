@@ -0,0 +1,46 @@
+package com.amfk.starfish.sync.config;
+
+import com.amfk.starfish.sync.service.BearerTokenProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Bearer token providers of the upstream APIs.
+ *
+ * Each upstream uses its token endpoint ({@code *.token.url}) with username and password
+ * when one is configured, and the static {@code *.bearer.token} otherwise.
+ */
+@Configuration
+public class TokenProviderConfig {
+
+    @Value("${auth.token.refresh.ahead.ms:60000}")
+    private long refreshAheadMs;
+
+    @Value("${auth.token.default.lifetime.ms:300000}")
+    private long defaultLifetimeMs;
+
+    @Value("${auth.token.login.timeout.ms:10000}")
+    private long loginTimeoutMs;
+
+    @Bean
+    public BearerTokenProvider masterServiceTokenProvider(RestTemplate restTemplate,
+                                                          @Value("${master.service.token.url:}") String tokenUrl,
+                                                          @Value("${master.service.username:}") String username,
+                                                          @Value("${master.service.password:}") String password,
+                                                          @Value("${master.service.bearer.token:}") String token) {
+        return BearerTokenProvider.create("master-service", restTemplate, tokenUrl, username, password, token,
+                refreshAheadMs, defaultLifetimeMs, loginTimeoutMs);
+    }
+
+    @Bean
+    public BearerTokenProvider starfishTokenProvider(RestTemplate restTemplate,
+                                                     @Value("${starfish.api.token.url:}") String tokenUrl,
+                                                     @Value("${starfish.api.username:}") String username,
+                                                     @Value("${starfish.api.password:}") String password,
+                                                     @Value("${starfish.api.bearer.token:}") String token) {
+        return BearerTokenProvider.create("starfish", restTemplate, tokenUrl, username, password, token,
+                refreshAheadMs, defaultLifetimeMs, loginTimeoutMs);
+    }
+}
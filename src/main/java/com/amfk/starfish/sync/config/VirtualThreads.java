@@ -0,0 +1,49 @@
+package com.amfk.starfish.sync.config;
+
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread creation for the opt-in virtual thread mode.
+ *
+ * Virtual threads are used when {@code spring.threads.virtual.enabled=true} and the JVM
+ * is Java 21 or later, the same rule Spring Boot applies to Tomcat and its own executors.
+ * On Java 17 the property is ignored and platform threads are used.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Returns true if virtual threads are enabled and supported by the running JVM.
+     */
+    public static boolean isActive(Environment environment) {
+        return Threading.VIRTUAL.isActive(environment);
+    }
+
+    /**
+     * Returns true if virtual threads were requested but the JVM does not support them.
+     */
+    public static boolean isRequestedButUnavailable(Environment environment) {
+        return environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)
+                && !isActive(environment);
+    }
+
+    /**
+     * Thread factory creating threads named {@code namePrefix} followed by a sequence number.
+     *
+     * @param virtual whether to create virtual threads, see {@link #isActive(Environment)}
+     */
+    public static ThreadFactory threadFactory(String namePrefix, boolean virtual) {
+        if (virtual) {
+            return new VirtualThreadTaskExecutor(namePrefix).getVirtualThreadFactory();
+        }
+        AtomicInteger threadIds = new AtomicInteger();
+        return runnable -> new Thread(runnable, namePrefix + threadIds.incrementAndGet());
+    }
+}
@@ -1,76 +1,166 @@
 package com.amfk.starfish.sync.controller;
 
-import com.amfk.starfish.sync.service.MockApiService;
+import com.amfk.starfish.sync.dto.RangeRow;
+import com.amfk.starfish.sync.dto.SiteBatchRequest;
+import com.amfk.starfish.sync.dto.SiteDetailsDto;
+import com.amfk.starfish.sync.service.SiteExporter;
+import com.amfk.starfish.sync.service.SiteLookupCoalescer;
+import com.amfk.starfish.sync.service.SiteLookupRejectedException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/ProvisioningWebService/sps/v1")
 public class MockApiController {
 
     @Autowired
-    private MockApiService mockApiService;
+    private SiteLookupCoalescer siteLookupCoalescer;
+
+    @Autowired
+    private SiteExporter siteExporter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${site.batch.max.names:500}")
+    private int batchMaxNames;
 
     @GetMapping("/site")
-    public Map<String, Object> getSiteDetails(@RequestParam String SiteName) {
+    public ResponseEntity<Map<String, Object>> getSiteDetails(@RequestParam String SiteName) {
         Map<String, Object> response = new HashMap<>();
-        List<Map<String, Object>> results = new ArrayList<>();
-        
+        List<SiteDetailsDto> results;
+
         try {
-            // Get data from service
-            List<Map<String, Object>> queryResults = mockApiService.getSiteDetails(SiteName);
-            
-            if (!queryResults.isEmpty()) {
-                // Group results by site and cm
-                Map<String, Map<String, Object>> siteGroups = new HashMap<>();
-                
-                for (Map<String, Object> row : queryResults) {
-                    String site = (String) row.get("site");
-                    String cm = (String) row.get("cm");
-                    String key = site + "_" + cm;
-                    
-                    if (!siteGroups.containsKey(key)) {
-                        Map<String, Object> siteData = new HashMap<>();
-                        siteData.put("Site", site);
-                        siteData.put("CM", cm);
-                        siteData.put("Ranges", new ArrayList<Map<String, Object>>());
-                        siteGroups.put(key, siteData);
-                    }
-                    
-                    // Add range data
-                    Map<String, Object> range = new HashMap<>();
-                    range.put("Type", row.get("type"));
-                    range.put("Lowerbound", row.get("lowerbound"));
-                    range.put("Upperbound", row.get("upperbound"));
-                    range.put("Prefix", row.get("prefix"));
-                    range.put("AvailableExtensions", new ArrayList<String>());
-                    
-                    @SuppressWarnings("unchecked")
-                    List<Map<String, Object>> ranges = (List<Map<String, Object>>) siteGroups.get(key).get("Ranges");
-                    ranges.add(range);
-                }
-                
-                results.addAll(siteGroups.values());
-            } else {
+            // Get data from service, grouped by site and cm
+            results = SiteDetailsDto.fromRows(siteLookupCoalescer.getSiteDetails(SiteName));
+
+            if (results.isEmpty()) {
                 // Return empty result if no data found
-                Map<String, Object> emptySite = new HashMap<>();
-                emptySite.put("Site", SiteName);
-                emptySite.put("CM", "");
-                emptySite.put("Ranges", new ArrayList<Map<String, Object>>());
-                results.add(emptySite);
+                results = List.of(new SiteDetailsDto(SiteName, ""));
             }
-            
+
+        } catch (SiteLookupRejectedException e) {
+            // Shed load instead of queueing more work on the database
+            response.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(response);
         } catch (Exception e) {
             // Return empty result on error
-            Map<String, Object> errorSite = new HashMap<>();
-            errorSite.put("Site", SiteName);
-            errorSite.put("CM", "");
-            errorSite.put("Ranges", new ArrayList<Map<String, Object>>());
-            results.add(errorSite);
+            results = List.of(new SiteDetailsDto(SiteName, ""));
         }
-        
+
         response.put("Results", results);
-        return response;
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Resolves many site names with one database query. Results are keyed by the requested
+     * name, in request order, and written to the response as they are serialized; unknown
+     * names get the same empty entry as {@code GET /site}.
+     */
+    @PostMapping(value = "/site/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getSiteDetailsBatch(@RequestBody SiteBatchRequest request) {
+        List<String> requested = request.getSiteNames() != null ? request.getSiteNames() : List.of();
+        List<String> siteNames = new ArrayList<>(new LinkedHashSet<>(requested));
+        siteNames.removeIf(Objects::isNull);
+        if (siteNames.size() > batchMaxNames) {
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                    .body(error("At most " + batchMaxNames + " site names per batch, got " + siteNames.size()));
+        }
+
+        Map<String, List<RangeRow>> rowsByName;
+        try {
+            rowsByName = siteLookupCoalescer.getSiteDetails(siteNames);
+        } catch (SiteLookupRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(error(e.getMessage()));
+        } catch (Exception e) {
+            // Same as a single lookup: empty results on error
+            rowsByName = new LinkedHashMap<>();
+            for (String siteName : siteNames) {
+                rowsByName.put(siteName, List.of());
+            }
+        }
+
+        Map<String, List<RangeRow>> results = rowsByName;
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.writeStartObject();
+                json.writeObjectFieldStart("Results");
+                for (Map.Entry<String, List<RangeRow>> entry : results.entrySet()) {
+                    List<SiteDetailsDto> sites = SiteDetailsDto.fromRows(entry.getValue());
+                    if (sites.isEmpty()) {
+                        sites = List.of(new SiteDetailsDto(entry.getKey(), ""));
+                    }
+                    json.writeFieldName(entry.getKey());
+                    json.writeObject(sites);
+                }
+                json.writeEndObject();
+                json.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Streams every active site with its ranges as NDJSON (one site per line) or CSV (one
+     * range per line), gzip-compressed if the client accepts it. The export is written
+     * while rows are read from the database, so it never sits in memory as a whole.
+     */
+    @GetMapping("/site/export")
+    public ResponseEntity<StreamingResponseBody> exportSites(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        SiteExporter.Format exportFormat;
+        try {
+            exportFormat = SiteExporter.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                    .body(error("Unsupported export format: " + format + " (ndjson or csv)"));
+        }
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                try (GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024)) {
+                    siteExporter.export(exportFormat, compressed);
+                }
+            } else {
+                BufferedOutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+                siteExporter.export(exportFormat, buffered);
+                buffered.flush();
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(exportFormat == SiteExporter.Format.CSV
+                        ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"sites." + exportFormat.name().toLowerCase(Locale.ROOT) + "\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    private StreamingResponseBody error(String message) {
+        return out -> objectMapper.writeValue(out, Map.of("error", message));
     }
 }
@@ -1,32 +1,265 @@
 package com.amfk.starfish.sync.controller;
 
-import com.amfk.starfish.sync.service.SiteSyncService;
+import com.amfk.starfish.sync.service.SiteFreshnessTracker;
+import com.amfk.starfish.sync.service.SiteReconciler;
+import com.amfk.starfish.sync.service.SiteSyncCoordinator;
+import com.amfk.starfish.sync.service.SiteValidator;
 import com.amfk.starfish.sync.service.MasterServiceClient;
-import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.service.ResponseSpool;
+import com.amfk.starfish.sync.service.SyncJob;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RestController
 @RequestMapping("/api/scheduler")
 public class SchedulerController {
-    
-    private final SiteSyncService siteSyncService;
+
+    private static final Logger logger = LoggerFactory.getLogger(SchedulerController.class);
+
     private final MasterServiceClient masterServiceClient;
+    private final SiteSyncCoordinator siteSyncCoordinator;
+    private final TaskScheduler taskScheduler;
+    private final SiteReconciler siteReconciler;
+    private final ObjectMapper objectMapper;
+    private final ResponseSpool responseSpool;
+    private final SiteValidator siteValidator;
+    private final SiteFreshnessTracker siteFreshness;
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-    
+
+    @Value("${site.sync.progress.interval.ms:1000}")
+    private long progressIntervalMs;
+
     @Autowired
-    public SchedulerController(SiteSyncService siteSyncService, MasterServiceClient masterServiceClient) {
-        this.siteSyncService = siteSyncService;
+    public SchedulerController(MasterServiceClient masterServiceClient,
+                               SiteSyncCoordinator siteSyncCoordinator,
+                               @Qualifier("taskScheduler") TaskScheduler taskScheduler,
+                               SiteReconciler siteReconciler, ObjectMapper objectMapper,
+                               ResponseSpool responseSpool, SiteValidator siteValidator,
+                               SiteFreshnessTracker siteFreshness) {
         this.masterServiceClient = masterServiceClient;
+        this.siteSyncCoordinator = siteSyncCoordinator;
+        this.taskScheduler = taskScheduler;
+        this.siteReconciler = siteReconciler;
+        this.objectMapper = objectMapper;
+        this.responseSpool = responseSpool;
+        this.siteValidator = siteValidator;
+        this.siteFreshness = siteFreshness;
+    }
+
+    /**
+     * Starts a site sync in the background and returns its job ID right away.
+     * If a sync is already running, the request is coalesced into that job.
+     */
+    @PostMapping("/sync")
+    public ResponseEntity<Map<String, Object>> triggerSync() {
+        SiteSyncCoordinator.TriggerResult trigger = siteSyncCoordinator.triggerSync("manual");
+
+        Map<String, Object> response = new HashMap<>(trigger.job().snapshot());
+        response.put("coalesced", trigger.joined());
+        response.put("message", trigger.joined()
+                ? "Site sync already in progress, joined the running job"
+                : "Site sync started");
+        response.put("timestamp", LocalDateTime.now().format(formatter));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    /**
+     * Lists the most recent sync jobs, newest first.
+     */
+    @GetMapping("/sync")
+    public List<Map<String, Object>> getRecentJobs() {
+        return siteSyncCoordinator.getRecentJobs().stream().map(SyncJob::snapshot).toList();
+    }
+
+    /**
+     * Progress of the sync currently running, if any.
+     */
+    @GetMapping("/sync/current")
+    public ResponseEntity<Map<String, Object>> getCurrentJob() {
+        SyncJob job = siteSyncCoordinator.getCurrentJob();
+        if (job == null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "IDLE");
+            response.put("message", "No site sync in progress");
+            response.put("timestamp", LocalDateTime.now().format(formatter));
+            return ResponseEntity.ok(response);
+        }
+        return ResponseEntity.ok(job.snapshot());
+    }
+
+    /**
+     * Live progress of a sync job: processed/success/failed counts, current phase and ETA.
+     */
+    @GetMapping("/sync/{jobId}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable String jobId) {
+        SyncJob job = siteSyncCoordinator.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job.snapshot());
+    }
+
+    /**
+     * Server-Sent Events stream of progress snapshots, sent every
+     * {@code site.sync.progress.interval.ms} until the job finishes.
+     */
+    @GetMapping(value = "/sync/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJob(@PathVariable String jobId) {
+        SyncJob job = siteSyncCoordinator.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        SseEmitter emitter = new SseEmitter(0L);
+        AtomicReference<ScheduledFuture<?>> publisher = new AtomicReference<>();
+        Runnable stop = () -> {
+            ScheduledFuture<?> future = publisher.get();
+            if (future != null) {
+                future.cancel(false);
+            }
+        };
+        emitter.onCompletion(stop);
+        emitter.onTimeout(stop);
+        emitter.onError(e -> stop.run());
+
+        publisher.set(taskScheduler.scheduleAtFixedRate(() -> {
+            try {
+                boolean finished = job.isFinished();
+                emitter.send(SseEmitter.event().name(finished ? "finished" : "progress").data(job.snapshot()));
+                if (finished) {
+                    emitter.complete();
+                    stop.run();
+                }
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Progress stream for job {} closed: {}", jobId, e.getMessage());
+                stop.run();
+            }
+        }, Duration.ofMillis(progressIntervalMs)));
+
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * Reconciles the Master Service sites with the Starfish sites and streams the result
+     * as NDJSON: one line per create, update and delete (and unchanged site with
+     * {@code includeUnchanged=true}), then a summary line.
+     */
+    @GetMapping(value = "/reconcile", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> reconcile(
+            @RequestParam(defaultValue = "false") boolean includeUnchanged) {
+        // Fetch before streaming so an upstream failure still gets an error status
+        SiteReconciler.Inputs inputs;
+        try {
+            inputs = siteReconciler.fetch();
+        } catch (Exception e) {
+            logger.error("Reconciliation fetch failed: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).contentType(MediaType.APPLICATION_NDJSON)
+                    .body(out -> objectMapper.writeValue(out, Map.of("error", "Failed to fetch sites: " + e.getMessage())));
+        }
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.setRootValueSeparator(null);
+                SiteReconciler.Summary summary = siteReconciler.reconcile(inputs, diff -> {
+                    if (includeUnchanged || diff.action() != SiteReconciler.Action.UNCHANGED) {
+                        writeLine(json, diff);
+                    }
+                });
+                writeLine(json, Map.of("summary", summary));
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Spooled Master Service responses kept on disk, newest first.
+     */
+    @GetMapping("/spool")
+    public List<Map<String, Object>> getSpools() throws IOException {
+        return responseSpool.list().stream().map(file -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", file.path().getFileName().toString());
+            entry.put("sizeBytes", file.size());
+            entry.put("modified", file.modified().toString());
+            entry.put("failed", file.failed());
+            return entry;
+        }).toList();
+    }
+
+    /**
+     * Parses a kept spool again without fetching from the Master Service, e.g. to check
+     * that a failed response converts after a fix.
+     */
+    @PostMapping("/spool/{name}/parse")
+    public ResponseEntity<Map<String, Object>> parseSpool(@PathVariable String name) throws IOException {
+        Optional<Path> spool = responseSpool.find(name);
+        Map<String, Object> response = new HashMap<>();
+        response.put("spool", name);
+        if (spool.isEmpty()) {
+            response.put("error", "Spool not found");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        long start = System.currentTimeMillis();
+        try {
+            response.put("sites", masterServiceClient.parseSpool(spool.get()).size());
+            response.put("durationMs", System.currentTimeMillis() - start);
+            return ResponseEntity.ok(response);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Spool {} could not be parsed: {}", name, e.getMessage());
+            response.put("error", e.getMessage());
+            return ResponseEntity.unprocessableEntity().body(response);
+        }
+    }
+
+    /**
+     * Validation report of the last sync run, with the quarantined sites.
+     */
+    @GetMapping("/validation")
+    public ResponseEntity<SiteValidator.Report> getValidationReport() {
+        SiteValidator.Report report = siteValidator.getLastReport();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Refresh state of the synced sites, with the {@code limit} least recently refreshed ones.
+     */
+    @GetMapping("/freshness")
+    public SiteFreshnessTracker.Report getFreshness(@RequestParam(defaultValue = "20") int limit) {
+        return siteFreshness.report(limit);
+    }
+
+    private static void writeLine(JsonGenerator json, Object value) {
+        try {
+            json.writeObject(value);
+            json.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
-    
-    
-   
-} 
\ No newline at end of file
+}
@@ -0,0 +1,18 @@
+package com.amfk.starfish.sync.dto;
+
+/**
+ * One active number range of a PBX cluster, as returned by the site details query.
+ *
+ * A row costs one small object instead of a case-insensitive map of column values.
+ * The bounds keep the text of the {@code range_from}/{@code range_to} columns as read,
+ * so leading zeros and non-numeric bounds survive and a missing bound stays null.
+ */
+public record RangeRow(
+        String clusterName,
+        String site,
+        String cm,
+        String type,
+        String lowerbound,
+        String upperbound,
+        String prefix) {
+}
@@ -0,0 +1,23 @@
+package com.amfk.starfish.sync.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Body of the batch site details request: the site names (cluster names or PBX ids) to resolve.
+ */
+public class SiteBatchRequest {
+
+    @JsonProperty("SiteNames")
+    private List<String> siteNames = new ArrayList<>();
+
+    public List<String> getSiteNames() {
+        return siteNames;
+    }
+
+    public void setSiteNames(List<String> siteNames) {
+        this.siteNames = siteNames;
+    }
+}
@@ -0,0 +1,103 @@
+package com.amfk.starfish.sync.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Site entry of the provisioning {@code Results} response: a site/CM pair and its ranges.
+ */
+@JsonPropertyOrder({"Site", "CM", "Ranges"})
+public class SiteDetailsDto {
+
+    @JsonProperty("Site")
+    private final String site;
+
+    @JsonProperty("CM")
+    private final String cm;
+
+    @JsonProperty("Ranges")
+    private final List<RangeDto> ranges = new ArrayList<>();
+
+    public SiteDetailsDto(String site, String cm) {
+        this.site = site;
+        this.cm = cm;
+    }
+
+    /**
+     * Groups range rows by site and CM, keeping the order in which sites first appear.
+     */
+    public static List<SiteDetailsDto> fromRows(Iterable<RangeRow> rows) {
+        Map<String, SiteDetailsDto> siteGroups = new LinkedHashMap<>();
+        for (RangeRow row : rows) {
+            siteGroups.computeIfAbsent(row.site() + "_" + row.cm(), key -> new SiteDetailsDto(row.site(), row.cm()))
+                    .getRanges().add(new RangeDto(row));
+        }
+        return new ArrayList<>(siteGroups.values());
+    }
+
+    public String getSite() {
+        return site;
+    }
+
+    public String getCm() {
+        return cm;
+    }
+
+    public List<RangeDto> getRanges() {
+        return ranges;
+    }
+
+    /**
+     * Range entry of a site: number type, bounds and country prefix.
+     */
+    @JsonPropertyOrder({"Type", "Lowerbound", "Upperbound", "Prefix", "AvailableExtensions"})
+    public static class RangeDto {
+
+        @JsonProperty("Type")
+        private final String type;
+
+        @JsonProperty("Lowerbound")
+        private final String lowerbound;
+
+        @JsonProperty("Upperbound")
+        private final String upperbound;
+
+        @JsonProperty("Prefix")
+        private final String prefix;
+
+        @JsonProperty("AvailableExtensions")
+        private final List<String> availableExtensions = List.of();
+
+        public RangeDto(RangeRow row) {
+            this.type = row.type();
+            this.lowerbound = row.lowerbound();
+            this.upperbound = row.upperbound();
+            this.prefix = row.prefix();
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getLowerbound() {
+            return lowerbound;
+        }
+
+        public String getUpperbound() {
+            return upperbound;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public List<String> getAvailableExtensions() {
+            return availableExtensions;
+        }
+    }
+}
@@ -74,6 +74,10 @@ public class SiteDto {
     // Computed fields
     private String location;
     
+    // Master Service source the site was fetched from (see master.service.sources)
+    @JsonProperty("source")
+    private String source;
+    
     // Default constructor
     public SiteDto() {}
     
@@ -270,6 +274,14 @@ public class SiteDto {
         this.location = location;
     }
     
+    public String getSource() {
+        return source;
+    }
+    
+    public void setSource(String source) {
+        this.source = source;
+    }
+    
     // Convenience methods for backward compatibility
     public String getSiteId() {
         return id != null ? id.toString() : null;
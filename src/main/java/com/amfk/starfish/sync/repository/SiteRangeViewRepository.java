@@ -0,0 +1,187 @@
+package com.amfk.starfish.sync.repository;
+
+import com.amfk.starfish.sync.dto.RangeRow;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Denormalized copy of the active site ranges, pre-joined from the amsp tables.
+ *
+ * {@code site_range_view} holds one row per active range and lookup key: the trimmed,
+ * lower-cased cluster name and, when it differs, the PBX id. Its primary key starts with
+ * the lookup key, so a site lookup is a single index range scan.
+ * {@code site_range_view_cluster} keeps a fingerprint of the source rows of every
+ * cluster in the view, which lets a refresh rewrite only the clusters that changed.
+ */
+@Repository
+public class SiteRangeViewRepository {
+
+    static final String TABLE = "site_range_view";
+    static final String CLUSTER_TABLE = "site_range_view_cluster";
+
+    /**
+     * The site details join with the ids needed to fingerprint and order the rows of a cluster.
+     */
+    static final String SOURCE_SQL = """
+            SELECT
+                pc.id AS cluster_id,
+                pnr.id AS range_id,
+                pc.name AS cluster_name,
+                pc.id_pbx AS cm,
+                pt.name AS type,
+                pnr.range_from AS lowerbound,
+                pnr.range_to AS upperbound,
+                cr.country_code AS prefix
+            FROM amsp.pbx_number_range pnr
+            JOIN amsp.pbx_cluster pc ON pc.id = pnr.id_pbx_cluster
+            JOIN amsp.pbx_phonenumber_type pt ON pt.id = pnr.phone_number_type
+            JOIN amsp.country cr ON cr.id = pc.id_country
+            WHERE pnr.active = 1 AND pc.active = 1
+            ORDER BY pc.id, pnr.id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate readJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public SiteRangeViewRepository(JdbcTemplate jdbcTemplate,
+                                   @Qualifier("readJdbcTemplate") JdbcTemplate readJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readJdbcTemplate = readJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(
+                new DataSourceTransactionManager(Objects.requireNonNull(jdbcTemplate.getDataSource())));
+    }
+
+    /**
+     * Creates the view and fingerprint tables if needed.
+     */
+    public void initialize() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " ("
+                + "lookup_key VARCHAR(255) NOT NULL, "
+                + "cluster_id BIGINT NOT NULL, "
+                + "range_id BIGINT NOT NULL, "
+                + "cluster_name VARCHAR(255), "
+                + "cm VARCHAR(255), "
+                + "range_type VARCHAR(255), "
+                + "range_from VARCHAR(64), "
+                + "range_to VARCHAR(64), "
+                + "country_code VARCHAR(32), "
+                + "PRIMARY KEY (lookup_key, cluster_id, range_id), "
+                + "INDEX idx_site_range_view_cluster (cluster_id))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + CLUSTER_TABLE + " ("
+                + "cluster_id BIGINT NOT NULL PRIMARY KEY, "
+                + "fingerprint VARCHAR(64) NOT NULL, "
+                + "range_count INT NOT NULL, "
+                + "refreshed_at BIGINT NOT NULL)");
+    }
+
+    /**
+     * Streams the active source rows ordered by cluster and range id, fetched in batches
+     * through the read template so the result set is not buffered whole.
+     */
+    public void forEachSourceRow(SourceRowHandler handler) {
+        readJdbcTemplate.query(SOURCE_SQL, rs -> {
+            handler.accept(rs.getLong(1), rs.getLong(2), new RangeRow(
+                    rs.getString(3),
+                    rs.getString(3),
+                    rs.getString(4),
+                    rs.getString(5),
+                    rs.getString(6),
+                    rs.getString(7),
+                    rs.getString(8)));
+        });
+    }
+
+    /**
+     * Fingerprints of the clusters currently in the view, by cluster id.
+     */
+    public Map<Long, String> findFingerprints() {
+        Map<Long, String> fingerprints = new HashMap<>();
+        jdbcTemplate.query("SELECT cluster_id, fingerprint FROM " + CLUSTER_TABLE,
+                rs -> {
+                    fingerprints.put(rs.getLong(1), rs.getString(2));
+                });
+        return fingerprints;
+    }
+
+    /**
+     * True if the view holds at least one cluster; read through the read template.
+     */
+    public boolean isPopulated() {
+        List<Long> clusters = readJdbcTemplate.queryForList("SELECT cluster_id FROM " + CLUSTER_TABLE + " LIMIT 1",
+                Long.class);
+        return !clusters.isEmpty();
+    }
+
+    /**
+     * Replaces the rows of the given changed clusters and drops the removed ones in a single
+     * transaction, so readers see either the previous or the new state of every cluster.
+     */
+    public void replaceClusters(Collection<ClusterRows> changed, Collection<Long> removed, long now) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Object[]> deletes = new ArrayList<>();
+            changed.forEach(cluster -> deletes.add(new Object[]{cluster.clusterId()}));
+            removed.forEach(clusterId -> deletes.add(new Object[]{clusterId}));
+            jdbcTemplate.batchUpdate("DELETE FROM " + TABLE + " WHERE cluster_id = ?", deletes);
+            jdbcTemplate.batchUpdate("DELETE FROM " + CLUSTER_TABLE + " WHERE cluster_id = ?", deletes);
+
+            List<Object[]> rows = new ArrayList<>();
+            List<Object[]> fingerprints = new ArrayList<>();
+            for (ClusterRows cluster : changed) {
+                for (int i = 0; i < cluster.rows().size(); i++) {
+                    RangeRow row = cluster.rows().get(i);
+                    long rangeId = cluster.rangeIds().get(i);
+                    String nameKey = lookupKey(row.clusterName());
+                    String pbxKey = lookupKey(row.cm());
+                    rows.add(viewRow(nameKey, cluster.clusterId(), rangeId, row));
+                    if (!pbxKey.isEmpty() && !pbxKey.equals(nameKey)) {
+                        rows.add(viewRow(pbxKey, cluster.clusterId(), rangeId, row));
+                    }
+                }
+                fingerprints.add(new Object[]{cluster.clusterId(), cluster.fingerprint(), cluster.rows().size(), now});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO " + TABLE
+                    + " (lookup_key, cluster_id, range_id, cluster_name, cm, range_type, range_from, range_to, country_code)"
+                    + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+            jdbcTemplate.batchUpdate("INSERT INTO " + CLUSTER_TABLE
+                    + " (cluster_id, fingerprint, range_count, refreshed_at) VALUES (?, ?, ?, ?)", fingerprints);
+        });
+    }
+
+    /**
+     * Key a cluster is looked up by, normalized the way the site details query compares names.
+     */
+    public static String lookupKey(String name) {
+        return name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Object[] viewRow(String lookupKey, long clusterId, long rangeId, RangeRow row) {
+        return new Object[]{lookupKey, clusterId, rangeId, row.clusterName(), row.cm(), row.type(),
+                row.lowerbound(), row.upperbound(), row.prefix()};
+    }
+
+    /**
+     * Callback for the source rows of the view.
+     */
+    @FunctionalInterface
+    public interface SourceRowHandler {
+        void accept(long clusterId, long rangeId, RangeRow row);
+    }
+
+    /**
+     * New content of one cluster: its rows with their range ids, and the fingerprint of both.
+     */
+    public record ClusterRows(long clusterId, String fingerprint, List<Long> rangeIds, List<RangeRow> rows) {
+    }
+}
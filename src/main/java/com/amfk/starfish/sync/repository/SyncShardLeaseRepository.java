@@ -0,0 +1,109 @@
+package com.amfk.starfish.sync.repository;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Lease table used by replicas to split a site sync run into shards.
+ *
+ * Each row represents one shard. A node owns a shard while {@code lease_until} lies in
+ * the future; once the shard is processed, {@code completed_at} is stamped so other
+ * nodes skip it for the rest of the run. Timestamps are epoch milliseconds taken from
+ * the node clocks, which keeps the SQL portable between MySQL and embedded databases.
+ */
+@Repository
+public class SyncShardLeaseRepository {
+
+    static final String TABLE = "site_sync_shard_lease";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SyncShardLeaseRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Creates the lease table if needed and makes sure a row exists for every shard.
+     */
+    public void initialize(int shardCount) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " ("
+                + "shard_id INT NOT NULL PRIMARY KEY, "
+                + "owner VARCHAR(128), "
+                + "lease_until BIGINT NOT NULL DEFAULT 0, "
+                + "completed_at BIGINT NOT NULL DEFAULT 0)");
+        Integer existing = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + TABLE + " WHERE shard_id < ?", Integer.class, shardCount);
+        if (existing != null && existing >= shardCount) {
+            return;
+        }
+        for (int shard = 0; shard < shardCount; shard++) {
+            try {
+                jdbcTemplate.update("INSERT INTO " + TABLE + " (shard_id, lease_until, completed_at) VALUES (?, 0, 0)", shard);
+            } catch (DuplicateKeyException e) {
+                // Created concurrently by another node
+            }
+        }
+    }
+
+    /**
+     * Shards that are neither leased nor completed since {@code completedSince}.
+     */
+    public List<Integer> findClaimable(int shardCount, long now, long completedSince) {
+        return jdbcTemplate.queryForList(
+                "SELECT shard_id FROM " + TABLE
+                        + " WHERE shard_id < ? AND lease_until < ? AND completed_at < ? ORDER BY shard_id",
+                Integer.class, shardCount, now, completedSince);
+    }
+
+    /**
+     * Number of shards not yet completed since {@code completedSince}, leased or not.
+     */
+    public int countPending(int shardCount, long completedSince) {
+        Integer pending = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + TABLE + " WHERE shard_id < ? AND completed_at < ?",
+                Integer.class, shardCount, completedSince);
+        return pending != null ? pending : 0;
+    }
+
+    /**
+     * Atomically claims a shard whose lease has expired and which has not been completed
+     * since {@code completedSince}.
+     *
+     * @return true if this node now owns the shard
+     */
+    public boolean tryClaim(int shardId, String owner, long now, long leaseUntil, long completedSince) {
+        return jdbcTemplate.update(
+                "UPDATE " + TABLE + " SET owner = ?, lease_until = ?"
+                        + " WHERE shard_id = ? AND lease_until < ? AND completed_at < ?",
+                owner, leaseUntil, shardId, now, completedSince) == 1;
+    }
+
+    /**
+     * Extends the lease of a shard still owned by this node.
+     *
+     * @return false if the lease was lost to another node
+     */
+    public boolean renew(int shardId, String owner, long leaseUntil) {
+        return jdbcTemplate.update(
+                "UPDATE " + TABLE + " SET lease_until = ? WHERE shard_id = ? AND owner = ?",
+                leaseUntil, shardId, owner) == 1;
+    }
+
+    public void complete(int shardId, String owner, long completedAt) {
+        jdbcTemplate.update(
+                "UPDATE " + TABLE + " SET completed_at = ?, lease_until = 0 WHERE shard_id = ? AND owner = ?",
+                completedAt, shardId, owner);
+    }
+
+    /**
+     * Gives a shard back without completing it, so another node can pick it up right away.
+     */
+    public void release(int shardId, String owner) {
+        jdbcTemplate.update(
+                "UPDATE " + TABLE + " SET lease_until = 0 WHERE shard_id = ? AND owner = ?",
+                shardId, owner);
+    }
+}
@@ -0,0 +1,328 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.util.Deadline;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bearer token of one upstream, cached together with the request headers that carry it.
+ *
+ * With a token endpoint the provider logs in with username and password and refreshes
+ * the token {@code refreshAheadMs} before it expires, on its own background thread.
+ * Callers only read the cached token: they wait solely for the very first login and for
+ * the login that replaces a token the upstream rejected, and a failed refresh keeps the
+ * current token in use while it is retried. Logins hold a lock, so each one is bounded
+ * by {@code loginTimeoutMs} rather than the read timeout of the shared client. Without an
+ * endpoint the configured static token is used as is; its expiry is still decoded so an
+ * expired token is reported at startup instead of as 401s during a sync.
+ *
+ * The token endpoint receives {@code {"username", "password"}} as JSON and answers with
+ * the token in {@code token} or {@code access_token}. Its lifetime is taken from the JWT
+ * {@code exp} claim, else from {@code expires_in} (seconds), else {@code defaultLifetimeMs}.
+ */
+public class BearerTokenProvider implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BearerTokenProvider.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long MIN_REFRESH_DELAY_MS = 1000;
+    private static final long MAX_RETRY_DELAY_MS = 30000;
+
+    private final String name;
+    private final RestTemplate restTemplate;
+    private final String tokenUrl;
+    private final String username;
+    private final String password;
+    private final long refreshAheadMs;
+    private final long defaultLifetimeMs;
+    private final long loginTimeoutMs;
+    private final ScheduledExecutorService refresher;
+    private final Object loginLock = new Object();
+
+    private volatile CachedToken current;
+    private ScheduledFuture<?> nextRefresh;
+    // Written by callers on a rejected token as well as by the refresh thread
+    private volatile long retryDelayMs = MIN_REFRESH_DELAY_MS;
+
+    private BearerTokenProvider(String name, RestTemplate restTemplate, String tokenUrl, String username,
+                                String password, long refreshAheadMs, long defaultLifetimeMs, long loginTimeoutMs) {
+        this.name = name;
+        this.restTemplate = restTemplate;
+        this.tokenUrl = tokenUrl;
+        this.username = username;
+        this.password = password;
+        this.refreshAheadMs = refreshAheadMs;
+        this.defaultLifetimeMs = defaultLifetimeMs;
+        this.loginTimeoutMs = loginTimeoutMs;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "token-refresh-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.refresher = executor;
+    }
+
+    /**
+     * Provider for a token endpoint if {@code tokenUrl} is set, else for the static {@code token}.
+     */
+    public static BearerTokenProvider create(String name, RestTemplate restTemplate, String tokenUrl, String username,
+                                             String password, String token, long refreshAheadMs,
+                                             long defaultLifetimeMs, long loginTimeoutMs) {
+        if (tokenUrl == null || tokenUrl.isBlank()) {
+            return fixed(name, token);
+        }
+        BearerTokenProvider provider = new BearerTokenProvider(name, restTemplate, tokenUrl.trim(), username, password,
+                refreshAheadMs, defaultLifetimeMs, loginTimeoutMs);
+        // Log in ahead of the first request
+        provider.schedule(0);
+        return provider;
+    }
+
+    /**
+     * Provider for a static token; an empty token sends no Authorization header.
+     */
+    public static BearerTokenProvider fixed(String name, String token) {
+        BearerTokenProvider provider = new BearerTokenProvider(name, null, null, null, null, 0, 0, 0);
+        provider.refresher.shutdown();
+        provider.current = CachedToken.of(token, expiry(token, null, Long.MAX_VALUE));
+        if (provider.current.expiresAt().isBefore(Instant.now())) {
+            logger.warn("Bearer token for {} expired at {}; requests will be rejected until it is replaced",
+                    name, provider.current.expiresAt());
+        }
+        return provider;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The cached token; only the first call on an endpoint-backed provider may wait for a login.
+     */
+    public CachedToken current() {
+        CachedToken token = current;
+        if (token == null) {
+            synchronized (loginLock) {
+                token = current;
+                if (token == null) {
+                    token = refresh();
+                }
+            }
+        }
+        return token;
+    }
+
+    /**
+     * Request headers with the cached token, rebuilt only when the token changes.
+     * The returned instances are read-only and shared between callers.
+     */
+    public AuthorizedHeaders withHeaders(HttpHeaders baseHeaders) {
+        return new AuthorizedHeaders(this, HttpHeaders.readOnlyHttpHeaders(copyOf(baseHeaders)));
+    }
+
+    /**
+     * Called when the upstream rejected the token: logs in again before returning, so the
+     * caller's retry carries the new token. Callers rejected at the same time share one
+     * login. If the login fails, the background refresh keeps trying.
+     */
+    public void invalidate() {
+        if (tokenUrl == null) {
+            return;
+        }
+        CachedToken rejected = current;
+        synchronized (loginLock) {
+            if (current != rejected) {
+                // Replaced while this caller waited for the lock
+                return;
+            }
+            logger.warn("Bearer token for {} was rejected, refreshing it", name);
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                logger.warn("Refreshing rejected bearer token for {} failed: {}", name, e.getMessage());
+                schedule(retryDelayMs);
+            }
+        }
+    }
+
+    private synchronized void schedule(long delayMs) {
+        if (refresher.isShutdown()) {
+            return;
+        }
+        if (nextRefresh != null) {
+            nextRefresh.cancel(false);
+        }
+        CachedToken scheduledFor = current;
+        nextRefresh = refresher.schedule(() -> refreshInBackground(scheduledFor), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void refreshInBackground(CachedToken scheduledFor) {
+        try {
+            // Holding the lock lets a first caller wait for this login instead of starting its own
+            synchronized (loginLock) {
+                if (current != scheduledFor) {
+                    // A caller logged in while this refresh waited for the lock
+                    return;
+                }
+                refresh();
+            }
+        } catch (RuntimeException e) {
+            CachedToken token = current;
+            long delay = retryDelayMs;
+            retryDelayMs = Math.min(MAX_RETRY_DELAY_MS, retryDelayMs * 2);
+            logger.warn("Refreshing bearer token for {} failed, retrying in {} ms{}: {}", name, delay,
+                    token != null ? " (current token expires at " + token.expiresAt() + ")" : "", e.getMessage());
+            schedule(delay);
+        }
+    }
+
+    /**
+     * Logs in, publishes the new token and schedules the next refresh.
+     */
+    private CachedToken refresh() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        Map<String, String> credentials = Map.of("username", username != null ? username : "",
+                "password", password != null ? password : "");
+        JsonNode response;
+        // Callers may be waiting on the login lock, so the login gets its own, shorter budget
+        try (Deadline.Scope scope = Deadline.after(Math.min(loginTimeoutMs, Deadline.currentRemainingMs())).enter()) {
+            response = restTemplate.postForObject(tokenUrl, new HttpEntity<>(credentials, headers), JsonNode.class);
+        }
+        String token = response != null ? text(response, "token", "access_token") : null;
+        if (token == null || token.isEmpty()) {
+            throw new IllegalStateException("Token endpoint " + tokenUrl + " returned no token");
+        }
+        Long expiresIn = response.hasNonNull("expires_in") ? response.get("expires_in").asLong() : null;
+        long now = System.currentTimeMillis();
+        Instant expiresAt = expiry(token, expiresIn, now + defaultLifetimeMs);
+        CachedToken cached = CachedToken.of(token, expiresAt);
+        current = cached;
+        retryDelayMs = MIN_REFRESH_DELAY_MS;
+
+        long lifetimeMs = expiresAt.toEpochMilli() - now;
+        // Short-lived tokens are refreshed halfway through their lifetime
+        long ahead = Math.min(refreshAheadMs, lifetimeMs / 2);
+        long delay = Math.max(MIN_REFRESH_DELAY_MS, lifetimeMs - ahead);
+        schedule(delay);
+        logger.info("Obtained bearer token for {} valid until {}, next refresh in {} ms", name, expiresAt, delay);
+        return cached;
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Expiry from the JWT {@code exp} claim, else {@code expiresInSeconds}, else {@code fallbackEpochMs}.
+     */
+    static Instant expiry(String token, Long expiresInSeconds, long fallbackEpochMs) {
+        Long exp = jwtExpiry(token);
+        if (exp != null) {
+            return Instant.ofEpochSecond(exp);
+        }
+        if (expiresInSeconds != null) {
+            return Instant.ofEpochMilli(System.currentTimeMillis() + expiresInSeconds * 1000);
+        }
+        return fallbackEpochMs == Long.MAX_VALUE ? Instant.MAX : Instant.ofEpochMilli(fallbackEpochMs);
+    }
+
+    /**
+     * The {@code exp} claim of a JWT in epoch seconds, or null if the token is not a JWT or has none.
+     */
+    static Long jwtExpiry(String token) {
+        if (token == null) {
+            return null;
+        }
+        String[] parts = token.split("\\.");
+        if (parts.length < 2) {
+            return null;
+        }
+        try {
+            JsonNode claims = MAPPER.readTree(new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8));
+            return claims.hasNonNull("exp") ? claims.get("exp").asLong() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String text(JsonNode node, String... fields) {
+        for (String field : fields) {
+            if (node.hasNonNull(field)) {
+                return node.get(field).asText();
+            }
+        }
+        return null;
+    }
+
+    private static HttpHeaders copyOf(HttpHeaders headers) {
+        HttpHeaders copy = new HttpHeaders();
+        copy.putAll(headers);
+        return copy;
+    }
+
+    /**
+     * A token with its expiry and the Authorization header value carrying it.
+     */
+    public record CachedToken(String token, Instant expiresAt, String authorization) {
+
+        static CachedToken of(String token, Instant expiresAt) {
+            boolean present = token != null && !token.isEmpty();
+            return new CachedToken(present ? token : null, expiresAt, present ? "Bearer " + token : null);
+        }
+    }
+
+    /**
+     * Read-only request headers for one call site, precomputed for the current token.
+     */
+    public static final class AuthorizedHeaders {
+
+        private final BearerTokenProvider provider;
+        private final HttpHeaders baseHeaders;
+        private volatile Snapshot snapshot;
+
+        private AuthorizedHeaders(BearerTokenProvider provider, HttpHeaders baseHeaders) {
+            this.provider = provider;
+            this.baseHeaders = baseHeaders;
+        }
+
+        public HttpHeaders get() {
+            CachedToken token = provider.current();
+            Snapshot cached = snapshot;
+            if (cached == null || cached.token != token) {
+                HttpHeaders headers = copyOf(baseHeaders);
+                if (token.authorization() != null) {
+                    headers.set(HttpHeaders.AUTHORIZATION, token.authorization());
+                }
+                cached = new Snapshot(token, HttpHeaders.readOnlyHttpHeaders(headers));
+                snapshot = cached;
+            }
+            return cached.headers;
+        }
+
+        public BearerTokenProvider getProvider() {
+            return provider;
+        }
+
+        private record Snapshot(CachedToken token, HttpHeaders headers) {
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.amfk.starfish.sync.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Checks upstream services and the database in the background and caches the results.
+ *
+ * Every registered probe runs every {@code health.probe.interval.ms} on the prober's own
+ * threads, so a hanging upstream delays neither the other probes nor a health request.
+ * {@link Probe#health()} only reads the cached result and adds when it was taken; a
+ * result older than {@code health.probe.stale.after.ms} (e.g. because the probe itself
+ * hangs) is reported as {@code UNKNOWN}. HTTP probes share one client with short
+ * timeouts (see {@code HealthIndicatorConfig}), which is closed with the prober.
+ */
+@Component
+public class HealthProber implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(HealthProber.class);
+
+    private final long intervalMs;
+    private final long staleAfterMs;
+    private final ScheduledThreadPoolExecutor executor;
+    private RestTemplate httpClient;
+
+    public HealthProber(@Value("${health.probe.interval.ms:30000}") long intervalMs,
+                        @Value("${health.probe.stale.after.ms:120000}") long staleAfterMs) {
+        this.intervalMs = intervalMs;
+        this.staleAfterMs = staleAfterMs;
+        this.executor = new ScheduledThreadPoolExecutor(0, runnable -> {
+            Thread thread = new Thread(runnable, "health-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Registers a check and starts running it right away. The check returns the details
+     * of a healthy result and throws when the target is down.
+     */
+    public Probe register(String name, Check check) {
+        Probe probe = new Probe(name, check, staleAfterMs);
+        // One thread per probe, so a probe stuck in a timeout does not hold up the others
+        executor.setCorePoolSize(executor.getCorePoolSize() + 1);
+        executor.scheduleWithFixedDelay(probe::run, 0, intervalMs, TimeUnit.MILLISECONDS);
+        return probe;
+    }
+
+    /**
+     * The HTTP client shared by all probes, created by {@code factory} on first use.
+     */
+    public synchronized RestTemplate httpClient(Supplier<RestTemplate> factory) {
+        if (httpClient == null) {
+            httpClient = factory.get();
+        }
+        return httpClient;
+    }
+
+    /**
+     * Check of an HTTP endpoint: up on any 2xx answer.
+     */
+    public static Check http(RestTemplate restTemplate, String url) {
+        return () -> {
+            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                throw new IllegalStateException("HTTP " + response.getStatusCode().value());
+            }
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put("url", url);
+            details.put("status", response.getStatusCode().value());
+            return details;
+        };
+    }
+
+    /**
+     * Check of a database: a connection from the pool that the driver validates within the timeout.
+     */
+    public static Check database(DataSource dataSource, int validationTimeoutSeconds) {
+        return () -> {
+            try (Connection connection = dataSource.getConnection()) {
+                if (!connection.isValid(validationTimeoutSeconds)) {
+                    throw new IllegalStateException("Connection not valid within " + validationTimeoutSeconds + " s");
+                }
+                Map<String, Object> details = new LinkedHashMap<>();
+                details.put("database", connection.getMetaData().getDatabaseProductName());
+                return details;
+            }
+        };
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+        RestTemplate client;
+        synchronized (this) {
+            client = httpClient;
+        }
+        if (client != null && client.getRequestFactory() instanceof DisposableBean disposable) {
+            try {
+                // Closes the HTTP client and its connection pool
+                disposable.destroy();
+            } catch (Exception e) {
+                logger.warn("Failed to close health probe HTTP client: {}", e.getMessage());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Check {
+        Map<String, Object> check() throws Exception;
+    }
+
+    /**
+     * Health indicator answering from the last result of its check.
+     */
+    public static final class Probe implements HealthIndicator {
+
+        private final String name;
+        private final Check check;
+        private final long staleAfterMs;
+        private volatile Result last;
+
+        Probe(String name, Check check, long staleAfterMs) {
+            this.name = name;
+            this.check = check;
+            this.staleAfterMs = staleAfterMs;
+        }
+
+        void run() {
+            long start = System.nanoTime();
+            Status status;
+            Map<String, Object> details;
+            try {
+                details = check.check();
+                status = Status.UP;
+            } catch (Exception e) {
+                status = Status.DOWN;
+                details = Map.of("error", e.getClass().getSimpleName() + ": " + e.getMessage());
+                if (last == null || last.status() != Status.DOWN) {
+                    logger.warn("Health probe {} is down: {}", name, e.getMessage());
+                }
+            }
+            last = new Result(status, details, Instant.now(), (System.nanoTime() - start) / 1_000_000);
+        }
+
+        @Override
+        public Health health() {
+            Result result = last;
+            if (result == null) {
+                return Health.unknown().withDetail("reason", "Not checked yet").build();
+            }
+            long ageMs = Instant.now().toEpochMilli() - result.checkedAt().toEpochMilli();
+            Health.Builder builder = ageMs > staleAfterMs
+                    ? Health.unknown().withDetail("reason", "Last check is older than " + staleAfterMs + " ms")
+                            .withDetail("lastStatus", result.status().getCode())
+                    : Health.status(result.status());
+            return builder.withDetails(result.details())
+                    .withDetail("lastChecked", result.checkedAt().toString())
+                    .withDetail("ageMs", ageMs)
+                    .withDetail("latencyMs", result.latencyMs())
+                    .build();
+        }
+
+        private record Result(Status status, Map<String, Object> details, Instant checkedAt, long latencyMs) {
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.RangeRow;
+import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.util.LogSampler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Default sink that logs the site details: a rate-limited summary line per site, and
+ * the full rows only at DEBUG.
+ */
+@Component
+public class LoggingSiteSyncSink implements SiteSyncSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoggingSiteSyncSink.class);
+
+    private final LogSampler logSampler;
+
+    public LoggingSiteSyncSink(@Value("${site.sync.log.max.per.second:20}") int logMaxPerSecond) {
+        this.logSampler = new LogSampler(logMaxPerSecond);
+    }
+
+    @Override
+    public void accept(SiteDto site, List<RangeRow> siteDetails) {
+        if (logSampler.tryAcquire()) {
+            logSuppressedLines();
+            if (siteDetails.isEmpty()) {
+                logger.warn("No Mock API data found for site: {} ({}) with cluster: {}", site.getSiteName(),
+                        site.getSiteId(), site.getClusterName());
+            } else {
+                logger.info("Retrieved Mock API data for site: {} ({}) with cluster: {} - {} ranges", site.getSiteName(),
+                        site.getSiteId(), site.getClusterName(), siteDetails.size());
+            }
+        }
+        if (!siteDetails.isEmpty() && logger.isDebugEnabled()) {
+            logger.debug("Mock API data for site {}: {}", site.getSiteName(), siteDetails);
+        }
+    }
+
+    @Override
+    public void finish(boolean complete) {
+        logSuppressedLines();
+    }
+
+    private void logSuppressedLines() {
+        long suppressed = logSampler.drainSuppressed();
+        if (suppressed > 0) {
+            logger.info("Suppressed {} per-site log lines (site.sync.log.max.per.second)", suppressed);
+        }
+    }
+}
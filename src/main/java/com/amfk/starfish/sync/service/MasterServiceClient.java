@@ -1,17 +1,20 @@
 package com.amfk.starfish.sync.service;
 
 import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.util.DeadlineExceededException;
+import com.amfk.starfish.sync.util.StringPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
-import org.springframework.retry.annotation.Recover;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
@@ -21,48 +24,93 @@ import org.springframework.web.client.RestTemplate;
 import org.apache.hc.core5.http.TruncatedChunkException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonEOFException;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 @Service
 public class MasterServiceClient {
     
     private static final Logger logger = LoggerFactory.getLogger(MasterServiceClient.class);
     
+    private static final ObjectMapper STREAMING_MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> SITE_MAP_TYPE = new TypeReference<>() {};
+    
     private final RestTemplate restTemplate;
+    private final SiteDtoMapper siteDtoMapper;
     
     @Value("${master.service.base.url}")
     private String baseUrl;
     
-    @Value("${master.service.bearer.token}")
-    private String bearerToken;
-    
     @Value("${master.service.timeout:30000}")
     private int timeout;
+    
+    @Value("${master.service.string.pool.max.entries:50000}")
+    private int stringPoolMaxEntries;
+    
+    // Spools responses to disk when master.service.spool.enabled is set; absent in unit tests
+    @Autowired(required = false)
+    private ResponseSpool responseSpool;
+    
+    private String sourceName = MultiSourceSiteFetcher.DEFAULT_SOURCE;
+    
+    // Request headers carrying the cached token of the provider
+    private final BearerTokenProvider.AuthorizedHeaders authorizedHeaders;
+    
+    // Parses large payloads on several cores when master.service.parse.parallel.enabled is set
+    @Autowired(required = false)
+    private ParallelSiteParser parallelSiteParser;
 
     
-    public MasterServiceClient(RestTemplate restTemplate) {
+    @Autowired
+    public MasterServiceClient(RestTemplate restTemplate, SiteDtoMapper siteDtoMapper,
+                               @Qualifier("masterServiceTokenProvider") BearerTokenProvider tokenProvider) {
         this.restTemplate = restTemplate;
+        this.siteDtoMapper = siteDtoMapper;
+        this.authorizedHeaders = tokenProvider.withHeaders(baseHeaders());
+    }
+    
+    /**
+     * Client for one of the configured Master Service sources. It is not a bean, so
+     * getSites() is not retried by the @Retryable proxy; callers apply their own policy.
+     */
+    public MasterServiceClient(RestTemplate restTemplate, SiteDtoMapper siteDtoMapper, String sourceName,
+                               String baseUrl, BearerTokenProvider tokenProvider, int stringPoolMaxEntries,
+                               ResponseSpool responseSpool, ParallelSiteParser parallelSiteParser) {
+        this(restTemplate, siteDtoMapper, tokenProvider);
+        this.sourceName = sourceName;
+        this.baseUrl = baseUrl;
+        this.stringPoolMaxEntries = stringPoolMaxEntries;
+        this.responseSpool = responseSpool;
+        this.parallelSiteParser = parallelSiteParser;
     }
     
     /**
      * Fetches all sites from the Master Service.
      * Expected dataset size: ~471 records
      * This method includes retry logic for handling TruncatedChunkException
-     * and other network-related issues common with large responses.
+     * and other network-related issues common with large responses; the policy, bounded
+     * by the sync run's deadline, is defined in {@code RetryConfig}.
      */
-    @Retryable(
-        value = {HttpServerErrorException.class, ResourceAccessException.class, RestClientException.class, 
-                org.springframework.http.converter.HttpMessageNotReadableException.class,
-                com.fasterxml.jackson.databind.JsonMappingException.class},
-        maxAttempts = 8,
-        backoff = @Backoff(delay = 3000, multiplier = 1.5, maxDelay = 60000)
-    )
+    @Retryable(interceptor = "masterServiceRetryInterceptor")
     public List<SiteDto> getSites() {
         String url = baseUrl + "/amsp/api/masterdata/v1/sites";
         
         try {
+            if (responseSpool != null && responseSpool.isEnabled()) {
+                return getSitesViaSpool(url);
+            }
+            
             HttpHeaders headers = createHeaders();
             HttpEntity<String> entity = new HttpEntity<>(headers);
             
@@ -89,6 +137,16 @@ public class MasterServiceClient {
             
             logger.info("Received response body length: {} characters", responseBody.length());
             
+            if (parallelSiteParser != null && parallelSiteParser.appliesTo(responseBody)) {
+                StringPool stringPool = new StringPool(stringPoolMaxEntries);
+                ParallelSiteParser.Result parsed = parallelSiteParser.parse(responseBody, siteDtoMapper, stringPool);
+                if (!parsed.complete()) {
+                    logger.warn("Response appears to be truncated; recovered {} complete sites", parsed.sites().size());
+                }
+                logger.info("Successfully parsed {} sites from Master Service in parallel", parsed.sites().size());
+                return parsed.sites();
+            }
+            
             // Parse the JSON response manually to handle truncation better
             List<Map<String, Object>> sites = parseSitesResponse(responseBody);
             
@@ -101,22 +159,19 @@ public class MasterServiceClient {
                     logger.info("Processing large dataset: {} sites - this may take longer", siteCount);
                 }
                 
-                System.out.println("=== MASTER SERVICE API RESPONSE ===");
-                System.out.println("Total sites returned: " + siteCount);
-                System.out.println("First 5 sites:");
-                for (int i = 0; i < Math.min(5, sites.size()); i++) {
-                    Map<String, Object> site = sites.get(i);
-                    System.out.println("Site " + (i+1) + ": " + site.get("name") + " (Cluster: " + site.get("clusterName") + ")");
-                }
-                if (siteCount > 5) {
-                    System.out.println("... and " + (siteCount - 5) + " more sites");
+                if (logger.isDebugEnabled()) {
+                    for (int i = 0; i < Math.min(5, siteCount); i++) {
+                        Map<String, Object> site = sites.get(i);
+                        logger.debug("Site {}: {} (Cluster: {})", i + 1, site.get("name"), site.get("clusterName"));
+                    }
                 }
-                System.out.println("=================================");
                 
-                // Convert Map to SiteDto objects
+                // Convert Map to SiteDto objects, sharing repeated strings within this run
+                StringPool stringPool = new StringPool(stringPoolMaxEntries);
                 List<SiteDto> siteDtos = sites.stream()
-                    .map(this::convertToSiteDto)
+                    .map(site -> siteDtoMapper.toSiteDto(site, stringPool))
                     .toList();
+                logger.debug("String pool for this run holds {} values ({} hits)", stringPool.size(), stringPool.getHits());
                 
                 return siteDtos;
             } else {
@@ -126,6 +181,9 @@ public class MasterServiceClient {
             
         } catch (HttpClientErrorException e) {
             logger.error("Client error while fetching sites from Master Service: {}", e.getMessage());
+            if (e.getStatusCode() == HttpStatus.UNAUTHORIZED) {
+                authorizedHeaders.getProvider().invalidate();
+            }
             throw e;
         } catch (HttpServerErrorException e) {
             logger.error("Server error while fetching sites from Master Service: {}", e.getMessage());
@@ -141,6 +199,12 @@ public class MasterServiceClient {
                 logger.error("Rest client error while fetching sites from Master Service: {}", e.getMessage());
             }
             throw e;
+        } catch (DeadlineExceededException e) {
+            logger.warn("Not fetching sites from Master Service: {}", e.getMessage());
+            throw e;
+        } catch (SpoolParseException e) {
+            logger.error("{}: {}", e.getMessage(), e.getCause().getMessage());
+            throw e;
         } catch (Exception e) {
             logger.error("Unexpected error while fetching sites from Master Service: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to fetch sites from Master Service", e);
@@ -148,12 +212,123 @@ public class MasterServiceClient {
     }
     
     /**
-     * Recovery method for retry failures
+     * Writes the response to a spool file, then parses the spool. A spool that ends before
+     * its array does was cut off in transfer: it is deleted and the fetch fails with a
+     * {@link ResourceAccessException}, which the retry policies retry like a truncated chunk.
+     * A complete spool that cannot be parsed is kept as the failed spool and a
+     * {@link SpoolParseException} is thrown, which they leave alone: a refetch would only
+     * replace the kept spool.
      */
-    @Recover
-    public List<SiteDto> recover(Exception ex) {
-        logger.error("All retry attempts failed for getSites. Last error: {}", ex.getMessage(), ex);
-        throw new RuntimeException("Failed to fetch sites from Master Service after all retry attempts", ex);
+    private List<SiteDto> getSitesViaSpool(String url) {
+        HttpHeaders headers = createHeaders();
+        logger.info("Fetching sites from {} into spool {}", url, responseSpool.getDirectory());
+        Path spool = restTemplate.execute(url, HttpMethod.GET,
+            request -> request.getHeaders().putAll(headers),
+            response -> {
+                if (!response.getStatusCode().is2xxSuccessful()) {
+                    logger.warn("Master Service returned non-success status: {}", response.getStatusCode());
+                    return null;
+                }
+                return responseSpool.write(sourceName, response.getBody());
+            });
+        if (spool == null) {
+            return List.of();
+        }
+        try {
+            return parseSpool(spool);
+        } catch (EOFException | JsonEOFException e) {
+            responseSpool.discard(spool);
+            throw new ResourceAccessException("Spooled Master Service response is incomplete: " + e.getMessage(), e);
+        } catch (IOException | RuntimeException e) {
+            throw new SpoolParseException(responseSpool.markFailed(spool), e);
+        }
+    }
+    
+    /**
+     * Parses a spooled response from its memory mapping, converting every site as soon as
+     * it is read. Used by spooled fetches and to parse a kept spool again without a refetch.
+     *
+     * @throws EOFException or {@link JsonEOFException} if the spool ends inside the array
+     */
+    public List<SiteDto> parseSpool(Path spool) throws IOException {
+        if (responseSpool == null) {
+            throw new IllegalStateException("No response spool configured");
+        }
+        long start = System.currentTimeMillis();
+        StringPool stringPool = new StringPool(stringPoolMaxEntries);
+        ByteBuffer mapped = responseSpool.map(spool);
+        if (mapped != null && parallelSiteParser != null && parallelSiteParser.appliesTo(mapped.remaining())) {
+            ParallelSiteParser.Result parsed = parallelSiteParser.parse(mapped, siteDtoMapper, stringPool);
+            if (!parsed.complete()) {
+                throw new EOFException("Spool " + spool + " ends after " + parsed.sites().size() + " complete sites");
+            }
+            logger.info("Parsed {} sites from spool {} in parallel in {} ms", parsed.sites().size(), spool,
+                    System.currentTimeMillis() - start);
+            return parsed.sites();
+        }
+        List<SiteDto> sites = new ArrayList<>();
+        try (InputStream in = responseSpool.open(spool);
+             JsonParser parser = STREAMING_MAPPER.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of sites in " + spool);
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                Map<String, Object> site = STREAMING_MAPPER.readValue(parser, SITE_MAP_TYPE);
+                sites.add(siteDtoMapper.toSiteDto(site, stringPool));
+            }
+            if (token == null) {
+                throw new EOFException("Spool " + spool + " ends after " + sites.size() + " complete sites");
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw new IOException("Unexpected " + token + " after " + sites.size() + " sites in " + spool);
+            }
+        }
+        logger.info("Parsed {} sites from spool {} in {} ms", sites.size(), spool, System.currentTimeMillis() - start);
+        return sites;
+    }
+    
+    /**
+     * Streams sites from the Master Service without materializing the response.
+     *
+     * The body is read token by token and every top-level site object is handed to the
+     * consumer as soon as it is parsed. A consumer that blocks (for example on a full
+     * queue) therefore stops the read, which in turn throttles the upstream connection.
+     * Sites emitted before a failure such as a truncated chunk have already been
+     * delivered when the exception is thrown, so this method is not retried.
+     *
+     * @param consumer receives each raw site object in response order
+     * @return number of sites streamed
+     */
+    public int streamSites(Consumer<Map<String, Object>> consumer) {
+        String url = baseUrl + "/amsp/api/masterdata/v1/sites";
+        HttpHeaders headers = createHeaders();
+        logger.info("Streaming sites from: {}", url);
+
+        Integer count = restTemplate.execute(url, HttpMethod.GET,
+            request -> request.getHeaders().putAll(headers),
+            response -> {
+                if (!response.getStatusCode().is2xxSuccessful()) {
+                    logger.warn("Master Service returned non-success status: {}", response.getStatusCode());
+                    return 0;
+                }
+                int streamed = 0;
+                try (JsonParser parser = STREAMING_MAPPER.getFactory().createParser(response.getBody())) {
+                    if (parser.nextToken() != JsonToken.START_ARRAY) {
+                        throw new RestClientException("Expected a JSON array of sites from Master Service");
+                    }
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        Map<String, Object> site = STREAMING_MAPPER.readValue(parser, SITE_MAP_TYPE);
+                        consumer.accept(site);
+                        streamed++;
+                    }
+                }
+                return streamed;
+            });
+
+        int streamed = count != null ? count : 0;
+        logger.info("Streamed {} sites from Master Service", streamed);
+        return streamed;
     }
     
     /**
@@ -261,115 +436,22 @@ public class MasterServiceClient {
     }
 
     
-    private SiteDto convertToSiteDto(Map<String, Object> siteMap) {
-        SiteDto siteDto = new SiteDto();
-        
-        // Map the fields from the Master Service response to SiteDto
-        if (siteMap.containsKey("id")) {
-            siteDto.setId((Integer) siteMap.get("id"));
-        }
-        if (siteMap.containsKey("name")) {
-            siteDto.setName(siteMap.get("name").toString());
-        }
-        if (siteMap.containsKey("nameEnglish")) {
-            siteDto.setNameEnglish(siteMap.get("nameEnglish") != null ? siteMap.get("nameEnglish").toString() : null);
-        }
-        if (siteMap.containsKey("nameGerman")) {
-            siteDto.setNameGerman(siteMap.get("nameGerman") != null ? siteMap.get("nameGerman").toString() : null);
-        }
-        if (siteMap.containsKey("locationCode")) {
-            siteDto.setLocationCode(siteMap.get("locationCode") != null ? siteMap.get("locationCode").toString() : null);
-        }
-        if (siteMap.containsKey("city")) {
-            siteDto.setCity(siteMap.get("city") != null ? siteMap.get("city").toString() : null);
-        }
-        if (siteMap.containsKey("street")) {
-            siteDto.setStreet(siteMap.get("street") != null ? siteMap.get("street").toString() : null);
-        }
-        if (siteMap.containsKey("remark")) {
-            siteDto.setRemark(siteMap.get("remark") != null ? siteMap.get("remark").toString() : null);
-        }
-        if (siteMap.containsKey("active")) {
-            siteDto.setActive((Integer) siteMap.get("active"));
-        }
-        if (siteMap.containsKey("logCreatedBy")) {
-            siteDto.setLogCreatedBy(siteMap.get("logCreatedBy") != null ? siteMap.get("logCreatedBy").toString() : null);
-        }
-        if (siteMap.containsKey("logCreatedOn")) {
-            // Handle date parsing if needed
-            Object createdOn = siteMap.get("logCreatedOn");
-            if (createdOn != null) {
-                // You might need to parse the date string here
-                // For now, we'll leave it as null if it's not already a LocalDateTime
-            }
-        }
-        if (siteMap.containsKey("logUpdatedBy")) {
-            siteDto.setLogUpdatedBy(siteMap.get("logUpdatedBy") != null ? siteMap.get("logUpdatedBy").toString() : null);
-        }
-        if (siteMap.containsKey("logUpdatedOn")) {
-            // Handle date parsing if needed
-            Object updatedOn = siteMap.get("logUpdatedOn");
-            if (updatedOn != null) {
-                // You might need to parse the date string here
-                // For now, we'll leave it as null if it's not already a LocalDateTime
-            }
-        }
-        if (siteMap.containsKey("clusterName")) {
-            siteDto.setClusterName(siteMap.get("clusterName") != null ? siteMap.get("clusterName").toString() : null);
-        }
-        if (siteMap.containsKey("clusterId")) {
-            siteDto.setClusterId((Integer) siteMap.get("clusterId"));
-        }
-        if (siteMap.containsKey("sipDomain")) {
-            siteDto.setSipDomain(siteMap.get("sipDomain") != null ? siteMap.get("sipDomain").toString() : null);
-        }
-        if (siteMap.containsKey("routingPolicy")) {
-            siteDto.setRoutingPolicy(siteMap.get("routingPolicy") != null ? siteMap.get("routingPolicy").toString() : null);
-        }
-        if (siteMap.containsKey("cmName")) {
-            siteDto.setCmName(siteMap.get("cmName") != null ? siteMap.get("cmName").toString() : null);
-        }
-        if (siteMap.containsKey("notes")) {
-            siteDto.setNotes(siteMap.get("notes") != null ? siteMap.get("notes").toString() : null);
-        }
-        if (siteMap.containsKey("ars")) {
-            siteDto.setArs(siteMap.get("ars") != null ? siteMap.get("ars").toString() : null);
-        }
-        if (siteMap.containsKey("userStamp")) {
-            siteDto.setUserStamp(siteMap.get("userStamp") != null ? siteMap.get("userStamp").toString() : null);
-        }
-        if (siteMap.containsKey("timeStamp")) {
-            // Handle date parsing if needed
-            Object timeStamp = siteMap.get("timeStamp");
-            if (timeStamp != null) {
-                // You might need to parse the date string here
-                // For now, we'll leave it as null if it's not already a LocalDateTime
-            }
-        }
-        
-        // Map location as combination of city and street
-        String city = siteDto.getCity() != null ? siteDto.getCity() : "";
-        String street = siteDto.getStreet() != null ? siteDto.getStreet() : "";
-        if (!city.isEmpty() || !street.isEmpty()) {
-            siteDto.setLocation((city + " " + street).trim());
-        }
-        
-        return siteDto;
+    /**
+     * Shared read-only request headers carrying the current bearer token.
+     */
+    private HttpHeaders createHeaders() {
+        return authorizedHeaders.get();
     }
     
-    private HttpHeaders createHeaders() {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("Content-Type", "application/json");
-        headers.set("Accept", "application/json");
-        headers.set("Accept-Encoding", "gzip, deflate");
-        headers.set("Connection", "keep-alive");
-        headers.set("Cache-Control", "no-cache");
-        
-        if (bearerToken != null && !bearerToken.isEmpty()) {
-            headers.set("Authorization", "Bearer " + bearerToken);
-        }
-        
-        return headers;
+    private static HttpHeaders baseHeaders() {
+        HttpHeaders baseHeaders = new HttpHeaders();
+        baseHeaders.set("Content-Type", "application/json");
+        baseHeaders.set("Accept", "application/json");
+        // The HTTP client does not decompress responses, so only ask for identity encoding
+        baseHeaders.set("Accept-Encoding", "identity");
+        baseHeaders.set("Connection", "keep-alive");
+        baseHeaders.set("Cache-Control", "no-cache");
+        return baseHeaders;
     }
     
     public boolean isServiceHealthy() {
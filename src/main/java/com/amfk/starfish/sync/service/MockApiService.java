@@ -1,20 +1,29 @@
 package com.amfk.starfish.sync.service;
 
+import com.amfk.starfish.sync.dto.RangeRow;
+import com.amfk.starfish.sync.repository.SiteRangeViewRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 @Service
 public class MockApiService {
     
-    @Autowired
-    private JdbcTemplate jdbcTemplate;
+    private static final Logger logger = LoggerFactory.getLogger(MockApiService.class);
     
-    public List<Map<String, Object>> getSiteDetails(String clusterName) {
-        String sql = """
+    static final String SITE_DETAILS_SQL = """
             SELECT 
                 pc.name AS cluster_name,
                 pc.name AS site,
@@ -32,22 +41,205 @@ public class MockApiService {
                     TRIM(LOWER(pc.name)) = TRIM(LOWER(?))
                  OR TRIM(LOWER(pc.id_pbx)) = TRIM(LOWER(?))
               )
-            """;   
-        System.out.println("MockApiService: Searching for cluster name: '" + clusterName + "'");
-        List<Map<String, Object>> result = jdbcTemplate.queryForList(sql, clusterName, clusterName);
-        System.out.println("MockApiService: Found " + result.size() + " records for cluster: '" + clusterName + "'");
+            """;
+    
+    /**
+     * Site details for a set of clusters in one statement. The {@code %s} placeholders are
+     * replaced with one bind parameter per normalized name.
+     */
+    static final String SITE_DETAILS_BATCH_SQL = """
+            SELECT 
+                pc.name AS cluster_name,
+                pc.name AS site,
+                pc.id_pbx AS cm,
+                pt.name AS type,
+                pnr.range_from AS lowerbound,
+                pnr.range_to AS upperbound,
+                cr.country_code AS prefix
+            FROM amsp.pbx_number_range pnr
+            JOIN amsp.pbx_cluster pc ON pc.id = pnr.id_pbx_cluster
+            JOIN amsp.pbx_phonenumber_type pt ON pt.id = pnr.phone_number_type
+            JOIN amsp.country cr ON cr.id = pc.id_country
+            WHERE pnr.active = 1 AND pc.active = 1
+              AND (
+                    TRIM(LOWER(pc.name)) IN (%s)
+                 OR TRIM(LOWER(pc.id_pbx)) IN (%s)
+              )
+            ORDER BY pc.id, pnr.id
+            """;
+    
+    /**
+     * Every active range of every active cluster, ordered so the ranges of a cluster are
+     * consecutive; used by the bulk export.
+     */
+    static final String SITE_EXPORT_SQL = """
+            SELECT 
+                pc.name AS cluster_name,
+                pc.name AS site,
+                pc.id_pbx AS cm,
+                pt.name AS type,
+                pnr.range_from AS lowerbound,
+                pnr.range_to AS upperbound,
+                cr.country_code AS prefix
+            FROM amsp.pbx_number_range pnr
+            JOIN amsp.pbx_cluster pc ON pc.id = pnr.id_pbx_cluster
+            JOIN amsp.pbx_phonenumber_type pt ON pt.id = pnr.phone_number_type
+            JOIN amsp.country cr ON cr.id = pc.id_country
+            WHERE pnr.active = 1 AND pc.active = 1
+            ORDER BY pc.id, pnr.id
+            """;
+    
+    /**
+     * Site details from the materialized view (see {@link SiteRangeView}): one index range
+     * scan on the normalized lookup key, no joins.
+     */
+    static final String SITE_DETAILS_VIEW_SQL = """
+            SELECT cluster_name, cluster_name, cm, range_type, range_from, range_to, country_code
+            FROM site_range_view
+            WHERE lookup_key = ?
+            ORDER BY lookup_key, cluster_id, range_id
+            """;
+    
+    /**
+     * Batch variant of {@link #SITE_DETAILS_VIEW_SQL}; the lookup key is selected last so
+     * rows can be assigned back to the requested names.
+     */
+    static final String SITE_DETAILS_VIEW_BATCH_SQL = """
+            SELECT cluster_name, cluster_name, cm, range_type, range_from, range_to, country_code, lookup_key
+            FROM site_range_view
+            WHERE lookup_key IN (%s)
+            ORDER BY lookup_key, cluster_id, range_id
+            """;
+    
+    /**
+     * Maps a site details row by column position into a {@link RangeRow}.
+     */
+    static final RowMapper<RangeRow> RANGE_ROW_MAPPER = (rs, rowNum) -> new RangeRow(
+            rs.getString(1),
+            rs.getString(2),
+            rs.getString(3),
+            rs.getString(4),
+            rs.getString(5),
+            rs.getString(6),
+            rs.getString(7));
+    
+    // Read-only queries go through the replica-routing template
+    @Autowired
+    @Qualifier("readJdbcTemplate")
+    private JdbcTemplate readJdbcTemplate;
+    
+    @Autowired
+    private SiteRangeView siteRangeView;
+    
+    public List<RangeRow> getSiteDetails(String clusterName) {
+        List<RangeRow> result = new ArrayList<>();
+        forEachSiteRange(clusterName, result::add);
+        logger.debug("Found {} records for cluster: '{}'", result.size(), clusterName);
+        
+        return result;
+    }
+    
+    /**
+     * Streams the active ranges of a cluster to the consumer as rows are read from the
+     * cursor, without building an intermediate list.
+     *
+     * @param clusterName cluster name or PBX id, matched case-insensitively
+     * @return number of rows streamed
+     */
+    public int forEachSiteRange(String clusterName, Consumer<RangeRow> consumer) {
+        int[] count = {0};
+        if (readFromView()) {
+            readJdbcTemplate.query(SITE_DETAILS_VIEW_SQL, rs -> {
+                consumer.accept(RANGE_ROW_MAPPER.mapRow(rs, count[0]++));
+            }, normalize(clusterName));
+            return count[0];
+        }
+        readJdbcTemplate.query(SITE_DETAILS_SQL, rs -> {
+            consumer.accept(RANGE_ROW_MAPPER.mapRow(rs, count[0]++));
+        }, clusterName, clusterName);
+        return count[0];
+    }
+    
+    /**
+     * Streams every active range in a single pass over one cursor (rows are fetched in
+     * batches of {@code db.read.fetch.size}), grouped by cluster.
+     *
+     * @return number of rows streamed
+     */
+    public int forEachActiveRange(Consumer<RangeRow> consumer) {
+        int[] count = {0};
+        readJdbcTemplate.query(SITE_EXPORT_SQL, rs -> {
+            consumer.accept(RANGE_ROW_MAPPER.mapRow(rs, count[0]++));
+        });
+        return count[0];
+    }
+    
+    /**
+     * Resolves many clusters with a single set-based query.
+     *
+     * Names are matched like {@link #getSiteDetails(String)}, trimmed and case-insensitive
+     * against the cluster name or PBX id. The result is keyed by the requested name in
+     * request order; names without active ranges map to an empty list.
+     */
+    public Map<String, List<RangeRow>> getSiteDetails(Collection<String> clusterNames) {
+        Map<String, List<RangeRow>> byKey = new LinkedHashMap<>();
+        for (String clusterName : clusterNames) {
+            byKey.putIfAbsent(normalize(clusterName), new ArrayList<>());
+        }
+        if (!byKey.isEmpty() && readFromView()) {
+            String placeholders = String.join(", ", Collections.nCopies(byKey.size(), "?"));
+            int[] count = {0};
+            readJdbcTemplate.query(SITE_DETAILS_VIEW_BATCH_SQL.formatted(placeholders), rs -> {
+                byKey.get(rs.getString(8)).add(RANGE_ROW_MAPPER.mapRow(rs, count[0]++));
+            }, byKey.keySet().toArray());
+            logger.debug("Found {} records for {} clusters in the site range view", count[0], byKey.size());
+        } else if (!byKey.isEmpty()) {
+            String placeholders = String.join(", ", Collections.nCopies(byKey.size(), "?"));
+            String sql = SITE_DETAILS_BATCH_SQL.formatted(placeholders, placeholders);
+            List<Object> args = new ArrayList<>(byKey.keySet());
+            args.addAll(byKey.keySet());
+            int[] count = {0};
+            readJdbcTemplate.query(sql, rs -> {
+                RangeRow row = RANGE_ROW_MAPPER.mapRow(rs, count[0]++);
+                // A row can answer a request by cluster name and another one by PBX id
+                List<RangeRow> byName = byKey.get(normalize(row.clusterName()));
+                List<RangeRow> byPbx = byKey.get(normalize(row.cm()));
+                if (byName != null) {
+                    byName.add(row);
+                }
+                if (byPbx != null && byPbx != byName) {
+                    byPbx.add(row);
+                }
+            }, args.toArray());
+            logger.debug("Found {} records for {} clusters", count[0], byKey.size());
+        }
         
+        Map<String, List<RangeRow>> result = new LinkedHashMap<>();
+        for (String clusterName : clusterNames) {
+            result.put(clusterName, byKey.get(normalize(clusterName)));
+        }
         return result;
     }
     
+    /**
+     * Key under which a requested name matches clusters: trimmed and lower case, as the
+     * site details queries compare it.
+     */
+    static String normalize(String clusterName) {
+        return SiteRangeViewRepository.lookupKey(clusterName);
+    }
+    
+    private boolean readFromView() {
+        return siteRangeView != null && siteRangeView.isReadable();
+    }
+    
     public void checkAvailableClusters() {
         String sql = "SELECT DISTINCT name FROM amsp.pbx_cluster WHERE active = 1";
-        List<Map<String, Object>> clusters = jdbcTemplate.queryForList(sql);
-        System.out.println("=== AVAILABLE CLUSTERS IN DATABASE ===");
-        for (Map<String, Object> cluster : clusters) {
-            System.out.println("Cluster: " + cluster.get("name"));
-        }
-        System.out.println("Total clusters found: " + clusters.size());
-        System.out.println("=====================================");
+        int[] count = {0};
+        readJdbcTemplate.query(sql, rs -> {
+            logger.debug("Available cluster: {}", rs.getString(1));
+            count[0]++;
+        });
+        logger.info("Active clusters in database: {}", count[0]);
     }
 }
@@ -0,0 +1,319 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.config.DeadlineRetryPolicy;
+import com.amfk.starfish.sync.config.MasterServiceSourceProperties;
+import com.amfk.starfish.sync.config.MasterServiceSourceProperties.Source;
+import com.amfk.starfish.sync.config.RestClientConfig;
+import com.amfk.starfish.sync.config.VirtualThreads;
+import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.util.Deadline;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.retry.RetryPolicy;
+import org.springframework.retry.policy.CompositeRetryPolicy;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.retry.support.RetryTemplateBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Fetches the sites of every configured Master Service source and merges them into one list.
+ *
+ * Sources ({@code master.service.sources}) are fetched concurrently, each through its own
+ * connection pool and retry policy, and each is waited for only until its own deadline:
+ * a source that fails or runs late is logged and left out, the others are still merged.
+ * Only when every source fails does the fetch fail; otherwise the result tells whether
+ * every source delivered, as only then is it the complete site list. Sites are
+ * deduplicated by id, the first source in configuration order winning, and carry the
+ * name of their source.
+ * Without configured sources the {@code master.service.base.url} client is used as the
+ * single source {@code default}.
+ *
+ * Every source records the timer {@code master.service.fetch{source,outcome}} and the
+ * counter {@code master.service.sites{source}}.
+ */
+@Service
+public class MultiSourceSiteFetcher implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(MultiSourceSiteFetcher.class);
+
+    static final String DEFAULT_SOURCE = "default";
+
+    private final List<SourceClient> sources;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService executor;
+    private final List<BearerTokenProvider> tokenProviders = new ArrayList<>();
+    // Request factories of the per-source RestTemplates, each owning a pooled HTTP client
+    private final List<ClientHttpRequestFactory> requestFactories = new ArrayList<>();
+
+    public MultiSourceSiteFetcher(MasterServiceClient defaultClient, SiteDtoMapper siteDtoMapper,
+                                  MasterServiceSourceProperties properties, RestClientConfig restClientConfig,
+                                  ResponseSpool responseSpool, ParallelSiteParser parallelSiteParser,
+                                  MeterRegistry meterRegistry, Environment environment,
+                                  @Value("${master.service.string.pool.max.entries:50000}") int stringPoolMaxEntries,
+                                  @Value("${auth.token.refresh.ahead.ms:60000}") long tokenRefreshAheadMs,
+                                  @Value("${auth.token.default.lifetime.ms:300000}") long tokenDefaultLifetimeMs,
+                                  @Value("${auth.token.login.timeout.ms:10000}") long tokenLoginTimeoutMs) {
+        this.meterRegistry = meterRegistry;
+        List<SourceClient> clients = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (Source source : properties.getSources()) {
+            String name = source.getName() != null && !source.getName().isBlank()
+                    ? source.getName().trim() : "source-" + (clients.size() + 1);
+            if (source.getBaseUrl() == null || source.getBaseUrl().isBlank()) {
+                throw new IllegalArgumentException("master.service.sources: base-url missing for source " + name);
+            }
+            if (!names.add(name)) {
+                throw new IllegalArgumentException("master.service.sources: duplicate source name " + name);
+            }
+            RestTemplate restTemplate = restClientConfig.restTemplate(source.getConnectionTimeout(),
+                    source.getReadTimeout(), source.getMaxConnections());
+            requestFactories.add(restTemplate.getRequestFactory());
+            BearerTokenProvider tokenProvider = BearerTokenProvider.create("master-service-" + name, restTemplate,
+                    source.getTokenUrl(), source.getUsername(), source.getPassword(), source.getBearerToken(),
+                    tokenRefreshAheadMs, tokenDefaultLifetimeMs, tokenLoginTimeoutMs);
+            tokenProviders.add(tokenProvider);
+            MasterServiceClient client = new MasterServiceClient(restTemplate, siteDtoMapper, name,
+                    source.getBaseUrl(), tokenProvider, stringPoolMaxEntries, responseSpool, parallelSiteParser);
+            clients.add(new SourceClient(name, client, retryTemplate(source), source.getDeadlineMs()));
+        }
+        if (clients.isEmpty()) {
+            // The bean client retries through its @Retryable proxy
+            clients.add(new SourceClient(DEFAULT_SOURCE, defaultClient, RetryTemplate.builder().maxAttempts(1).build(), 0));
+        }
+        this.sources = List.copyOf(clients);
+        this.executor = Executors.newCachedThreadPool(
+                VirtualThreads.threadFactory("master-source-", VirtualThreads.isActive(environment)));
+        logger.info("Master Service sources: {}", sources.stream().map(SourceClient::name).toList());
+    }
+
+    public List<String> getSourceNames() {
+        return sources.stream().map(SourceClient::name).toList();
+    }
+
+    /**
+     * Fetches all sources concurrently and returns their sites, deduplicated by id.
+     *
+     * @throws RuntimeException the first source's failure if no source delivered sites
+     */
+    public List<SiteDto> getSites() {
+        return fetchSites().sites();
+    }
+
+    /**
+     * Like {@link #getSites()}, also telling whether every source delivered.
+     *
+     * @throws RuntimeException the first source's failure if no source delivered sites
+     */
+    public Fetched<List<SiteDto>> fetchSites() {
+        long start = System.nanoTime();
+        List<Future<List<SiteDto>>> futures = new ArrayList<>(sources.size());
+        for (SourceClient source : sources) {
+            futures.add(executor.submit(Deadline.propagate(
+                    () -> source.retryTemplate().execute(context -> source.client().getSites()))));
+        }
+
+        Map<String, SiteDto> byId = new LinkedHashMap<>();
+        List<SiteDto> withoutId = new ArrayList<>();
+        RuntimeException firstFailure = null;
+        int succeeded = 0;
+        int duplicates = 0;
+        for (int i = 0; i < sources.size(); i++) {
+            SourceClient source = sources.get(i);
+            List<SiteDto> sites;
+            try {
+                sites = await(source, futures.get(i), start);
+            } catch (RuntimeException e) {
+                firstFailure = firstFailure != null ? firstFailure : e;
+                continue;
+            }
+            succeeded++;
+            for (SiteDto site : sites) {
+                site.setSource(source.name());
+                String id = site.getSiteId();
+                if (id == null) {
+                    withoutId.add(site);
+                } else if (byId.putIfAbsent(id, site) != null) {
+                    duplicates++;
+                }
+            }
+        }
+        if (succeeded == 0) {
+            throw firstFailure;
+        }
+
+        List<SiteDto> merged = new ArrayList<>(byId.size() + withoutId.size());
+        merged.addAll(byId.values());
+        merged.addAll(withoutId);
+        logger.info("Merged {} sites from {}/{} Master Service sources ({} duplicates dropped) in {} ms",
+                merged.size(), succeeded, sources.size(), duplicates, (System.nanoTime() - start) / 1_000_000);
+        return new Fetched<>(merged, succeeded == sources.size());
+    }
+
+    /**
+     * Streams all sources concurrently into {@code consumer}, which must be thread safe.
+     *
+     * Each raw site carries its source under {@link SiteDtoMapper#SOURCE_KEY}. A site whose
+     * id was already delivered by any source is dropped, so with overlapping sources the
+     * first one to deliver an id wins. A source past its deadline is stopped at its next
+     * site. Streams are not retried, since their sites have already been consumed.
+     *
+     * @return number of sites handed to the consumer and whether every source delivered
+     */
+    public Fetched<Integer> streamSites(Consumer<Map<String, Object>> consumer) {
+        long start = System.nanoTime();
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        AtomicInteger delivered = new AtomicInteger();
+        List<AtomicBoolean> stopped = new ArrayList<>(sources.size());
+        List<Future<Integer>> futures = new ArrayList<>(sources.size());
+        for (SourceClient source : sources) {
+            AtomicBoolean stop = new AtomicBoolean();
+            stopped.add(stop);
+            futures.add(executor.submit(Deadline.propagate(() -> source.client().streamSites(site -> {
+                if (stop.get()) {
+                    throw new CancellationException("Source " + source.name() + " passed its deadline");
+                }
+                Object id = site.get("id");
+                if (id == null || seen.add(id.toString())) {
+                    site.put(SiteDtoMapper.SOURCE_KEY, source.name());
+                    consumer.accept(site);
+                    delivered.incrementAndGet();
+                }
+            }))));
+        }
+
+        RuntimeException firstFailure = null;
+        int succeeded = 0;
+        for (int i = 0; i < sources.size(); i++) {
+            try {
+                await(sources.get(i), futures.get(i), start);
+                succeeded++;
+            } catch (RuntimeException e) {
+                stopped.get(i).set(true);
+                firstFailure = firstFailure != null ? firstFailure : e;
+            }
+        }
+        if (succeeded == 0) {
+            throw firstFailure;
+        }
+        logger.info("Streamed {} sites from {}/{} Master Service sources in {} ms", delivered.get(), succeeded,
+                sources.size(), (System.nanoTime() - start) / 1_000_000);
+        return new Fetched<>(delivered.get(), succeeded == sources.size());
+    }
+
+    /**
+     * Waits for one source until its deadline, counted from the start of the fetch, or
+     * until the deadline of the sync run if that comes first, and records its latency and
+     * outcome.
+     */
+    private <T> T await(SourceClient source, Future<T> future, long start) {
+        String outcome = "failure";
+        long sourceRemainingMs = source.deadlineMs() > 0
+                ? Math.max(0, source.deadlineMs() - (System.nanoTime() - start) / 1_000_000) : Long.MAX_VALUE;
+        long waitMs = Math.min(sourceRemainingMs, Math.max(0, Deadline.currentRemainingMs()));
+        try {
+            T result = waitMs != Long.MAX_VALUE ? future.get(waitMs, TimeUnit.MILLISECONDS) : future.get();
+            outcome = "success";
+            int sites = result instanceof List<?> list ? list.size() : result instanceof Integer count ? count : 0;
+            Counter.builder("master.service.sites")
+                    .tag("source", source.name())
+                    .description("Sites received from a Master Service source")
+                    .register(meterRegistry)
+                    .increment(sites);
+            return result;
+        } catch (TimeoutException e) {
+            outcome = "timeout";
+            future.cancel(true);
+            if (waitMs < sourceRemainingMs) {
+                logger.warn("Master Service source {} did not finish before the run deadline, continuing without it",
+                        source.name());
+            } else {
+                logger.warn("Master Service source {} missed its {} ms deadline, continuing without it",
+                        source.name(), source.deadlineMs());
+            }
+            throw new IllegalStateException("Master Service source " + source.name() + " timed out", e);
+        } catch (ExecutionException e) {
+            logger.warn("Master Service source {} failed, continuing without it: {}", source.name(),
+                    e.getCause().getMessage());
+            throw e.getCause() instanceof RuntimeException cause ? cause
+                    : new IllegalStateException("Master Service source " + source.name() + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new IllegalStateException("Interrupted while fetching Master Service source " + source.name(), e);
+        } finally {
+            // Measured until the caller stopped waiting, i.e. the source's share of the fetch
+            Timer.builder("master.service.fetch")
+                    .tag("source", source.name())
+                    .tag("outcome", outcome)
+                    .description("Time to fetch the sites of a Master Service source")
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static RetryTemplate retryTemplate(Source source) {
+        // Client errors such as 401 and unparsable responses will not go away by themselves
+        SimpleRetryPolicy attempts = new SimpleRetryPolicy(Math.max(1, source.getMaxAttempts()),
+                Map.of(RestClientException.class, true, HttpClientErrorException.class, false,
+                        SpoolParseException.class, false), true);
+        CompositeRetryPolicy policy = new CompositeRetryPolicy();
+        policy.setPolicies(new RetryPolicy[]{attempts, new DeadlineRetryPolicy(DeadlineRetryPolicy.DEFAULT_MIN_ATTEMPT_MS)});
+        RetryTemplateBuilder builder = RetryTemplate.builder().customPolicy(policy);
+        return (source.getBackoffMs() > 0 ? builder.fixedBackoff(source.getBackoffMs()) : builder.noBackoff()).build();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+        tokenProviders.forEach(BearerTokenProvider::close);
+        for (ClientHttpRequestFactory requestFactory : requestFactories) {
+            if (requestFactory instanceof DisposableBean disposable) {
+                try {
+                    // Closes the HTTP client and its connection pool
+                    disposable.destroy();
+                } catch (Exception e) {
+                    logger.warn("Failed to close Master Service HTTP client: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Result of a fetch; {@code allSources} is false if some sources failed or timed out
+     * and were left out.
+     */
+    public record Fetched<T>(T sites, boolean allSources) {
+    }
+
+    private record SourceClient(String name, MasterServiceClient client, RetryTemplate retryTemplate, long deadlineMs) {
+    }
+}
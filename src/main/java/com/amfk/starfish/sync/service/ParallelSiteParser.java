@@ -0,0 +1,344 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.util.StringPool;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parses a complete JSON array of sites on several cores.
+ *
+ * A single pass over the bytes (or the characters of a decoded response) finds where
+ * every top-level object starts and ends, tracking only nesting depth and whether it is
+ * inside a string. The objects are then
+ * split into chunks of {@code master.service.parse.parallel.chunk.sites} that are parsed
+ * and converted to {@link SiteDto} as fork-join tasks, each writing into its own slots
+ * of the result array, so the sites come out in payload order. The result is the same
+ * as a sequential parse; if the array is truncated, the complete objects before the cut
+ * are returned and {@link Result#complete()} is false.
+ */
+@Component
+public class ParallelSiteParser implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelSiteParser.class);
+
+    private static final ObjectReader SITE_READER = new ObjectMapper()
+            .readerFor(new TypeReference<Map<String, Object>>() {});
+
+    private final boolean enabled;
+    private final int thresholdBytes;
+    private final int chunkSites;
+    private final ForkJoinPool pool;
+
+    public ParallelSiteParser(@Value("${master.service.parse.parallel.enabled:false}") boolean enabled,
+                              @Value("${master.service.parse.parallel.threshold.bytes:1048576}") int thresholdBytes,
+                              @Value("${master.service.parse.parallel.chunk.sites:500}") int chunkSites,
+                              @Value("${master.service.parse.parallel.threads:0}") int threads) {
+        this.enabled = enabled;
+        this.thresholdBytes = thresholdBytes;
+        this.chunkSites = Math.max(1, chunkSites);
+        this.pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * True if payloads of this many bytes should be parsed in parallel.
+     */
+    public boolean appliesTo(long payloadBytes) {
+        return enabled && payloadBytes >= thresholdBytes;
+    }
+
+    /**
+     * True if this decoded response is at least the threshold long in UTF-8 bytes.
+     */
+    public boolean appliesTo(String json) {
+        if (!enabled) {
+            return false;
+        }
+        // A character takes one to three bytes, so most sizes are decided without counting
+        if (json.length() >= thresholdBytes) {
+            return true;
+        }
+        if ((long) json.length() * 3 < thresholdBytes) {
+            return false;
+        }
+        long bytes = 0;
+        for (int i = 0; i < json.length() && bytes < thresholdBytes; i++) {
+            char c = json.charAt(i);
+            // Each half of a surrogate pair counts for two of its four bytes
+            bytes += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+        }
+        return bytes >= thresholdBytes;
+    }
+
+    public Result parse(byte[] json, SiteDtoMapper mapper, StringPool stringPool) {
+        return parse(ByteBuffer.wrap(json), mapper, stringPool);
+    }
+
+    /**
+     * Parses the array in {@code json} between its position and limit.
+     */
+    public Result parse(ByteBuffer json, SiteDtoMapper mapper, StringPool stringPool) {
+        return parse(new ByteSource(json), mapper, stringPool);
+    }
+
+    /**
+     * Parses a decoded response in place; the sites are read through readers over it, not a copy.
+     */
+    public Result parse(String json, SiteDtoMapper mapper, StringPool stringPool) {
+        return parse(new TextSource(json), mapper, stringPool);
+    }
+
+    private Result parse(Source json, SiteDtoMapper mapper, StringPool stringPool) {
+        long start = System.nanoTime();
+        Boundaries boundaries = scan(json);
+        SiteDto[] sites = new SiteDto[boundaries.count()];
+        pool.invoke(new ParseTask(json, boundaries, 0, boundaries.count(), sites, mapper, stringPool, chunkSites));
+        logger.debug("Parsed {} sites in parallel ({} threads) in {} ms", sites.length, pool.getParallelism(),
+                (System.nanoTime() - start) / 1_000_000);
+        return new Result(Arrays.asList(sites), boundaries.complete());
+    }
+
+    /**
+     * Finds the offsets of the top-level objects of a JSON array.
+     */
+    private static Boundaries scan(Source json) {
+        int limit = json.limit();
+        int i = json.position();
+        while (i < limit && isWhitespace(json.at(i))) {
+            i++;
+        }
+        if (i >= limit || json.at(i) != '[') {
+            throw new IllegalArgumentException("Expected a JSON array of sites");
+        }
+        int[] starts = new int[1024];
+        int[] ends = new int[1024];
+        int count = 0;
+        int depth = 0;
+        int objectStart = -1;
+        boolean inString = false;
+        boolean closed = false;
+        for (i = i + 1; i < limit; i++) {
+            int b = json.at(i);
+            if (inString) {
+                if (b == '\\') {
+                    i++;
+                } else if (b == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            switch (b) {
+                case '"' -> inString = true;
+                case '{', '[' -> {
+                    if (depth == 0) {
+                        if (b == '[') {
+                            throw new IllegalArgumentException("Expected site objects, found a nested array at " + i);
+                        }
+                        objectStart = i;
+                    }
+                    depth++;
+                }
+                case '}', ']' -> {
+                    if (depth == 0) {
+                        closed = b == ']';
+                        i = limit;
+                        continue;
+                    }
+                    depth--;
+                    if (depth == 0) {
+                        if (count == starts.length) {
+                            starts = Arrays.copyOf(starts, count * 2);
+                            ends = Arrays.copyOf(ends, count * 2);
+                        }
+                        starts[count] = objectStart;
+                        ends[count] = i + 1;
+                        count++;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return new Boundaries(starts, ends, count, closed);
+    }
+
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * The array being parsed. Structural characters are ASCII, and no byte of a multi-byte
+     * UTF-8 sequence is, so bytes and characters are scanned alike.
+     */
+    private interface Source {
+
+        int position();
+
+        int limit();
+
+        int at(int index);
+
+        Map<String, Object> read(int start, int length) throws IOException;
+    }
+
+    private record ByteSource(ByteBuffer json) implements Source {
+
+        @Override
+        public int position() {
+            return json.position();
+        }
+
+        @Override
+        public int limit() {
+            return json.limit();
+        }
+
+        @Override
+        public int at(int index) {
+            return json.get(index);
+        }
+
+        @Override
+        public Map<String, Object> read(int start, int length) throws IOException {
+            if (json.hasArray()) {
+                return SITE_READER.readValue(json.array(), json.arrayOffset() + start, length);
+            }
+            return SITE_READER.readValue(new ByteBufferBackedInputStream(json.slice(start, length)));
+        }
+    }
+
+    private record TextSource(String json) implements Source {
+
+        @Override
+        public int position() {
+            return 0;
+        }
+
+        @Override
+        public int limit() {
+            return json.length();
+        }
+
+        @Override
+        public int at(int index) {
+            return json.charAt(index);
+        }
+
+        @Override
+        public Map<String, Object> read(int start, int length) throws IOException {
+            return SITE_READER.readValue(new RangeReader(json, start, start + length));
+        }
+    }
+
+    /**
+     * Reads a range of a string without copying it first.
+     */
+    private static final class RangeReader extends Reader {
+
+        private final String text;
+        private final int end;
+        private int next;
+
+        RangeReader(String text, int start, int end) {
+            this.text = text;
+            this.next = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (next >= end) {
+                return -1;
+            }
+            int count = Math.min(length, end - next);
+            text.getChars(next, next + count, buffer, offset);
+            next += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Start (inclusive) and end (exclusive) offsets of the first {@code count} objects.
+     */
+    record Boundaries(int[] starts, int[] ends, int count, boolean complete) {
+    }
+
+    /**
+     * Parsed sites in payload order; {@code complete} is false if the array was cut off.
+     */
+    public record Result(List<SiteDto> sites, boolean complete) {
+    }
+
+    private static final class ParseTask extends RecursiveAction {
+
+        private final Source json;
+        private final Boundaries boundaries;
+        private final int from;
+        private final int to;
+        private final SiteDto[] sites;
+        private final SiteDtoMapper mapper;
+        private final StringPool stringPool;
+        private final int chunkSites;
+
+        ParseTask(Source json, Boundaries boundaries, int from, int to, SiteDto[] sites, SiteDtoMapper mapper,
+                  StringPool stringPool, int chunkSites) {
+            this.json = json;
+            this.boundaries = boundaries;
+            this.from = from;
+            this.to = to;
+            this.sites = sites;
+            this.mapper = mapper;
+            this.stringPool = stringPool;
+            this.chunkSites = chunkSites;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSites) {
+                parseChunk();
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ParseTask(json, boundaries, from, middle, sites, mapper, stringPool, chunkSites),
+                    new ParseTask(json, boundaries, middle, to, sites, mapper, stringPool, chunkSites));
+        }
+
+        private void parseChunk() {
+            try {
+                for (int i = from; i < to; i++) {
+                    int start = boundaries.starts()[i];
+                    int length = boundaries.ends()[i] - start;
+                    sites[i] = mapper.toSiteDto(json.read(start, length), stringPool);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to parse site at offset " + boundaries.starts()[from], e);
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.amfk.starfish.sync.service;
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Directory of raw Master Service responses written to disk while they are received.
+ *
+ * A response is copied to {@code <source>-<timestamp>.json.part} and renamed to
+ * {@code .json} once complete, then parsed from a read-only memory mapping, so the body
+ * never lives on the heap and can be parsed again without a refetch. A spool whose parse
+ * failed is renamed to {@code .failed.json} and kept for post-mortem; only the most
+ * recent failed spool of each source is kept. After every write the oldest other spools are deleted
+ * until the directory fits in {@code master.service.spool.max.bytes}.
+ */
+@Component
+public class ResponseSpool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResponseSpool.class);
+
+    static final String SUFFIX = ".json";
+    static final String FAILED_SUFFIX = ".failed.json";
+    static final String PARTIAL_SUFFIX = ".json.part";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public ResponseSpool(@Value("${master.service.spool.enabled:false}") boolean enabled,
+                         @Value("${master.service.spool.dir:}") String directory,
+                         @Value("${master.service.spool.max.bytes:1073741824}") long maxBytes) {
+        this.enabled = enabled;
+        this.directory = directory == null || directory.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "master-service-spool")
+                : Paths.get(directory);
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Copies {@code body} to a new spool file and applies the retention policy.
+     *
+     * @return the completed spool file
+     */
+    public Path write(String source, InputStream body) throws IOException {
+        Files.createDirectories(directory);
+        String name = safeName(source) + "-" + System.currentTimeMillis() + "-" + sequence.incrementAndGet();
+        Path partial = directory.resolve(name + PARTIAL_SUFFIX);
+        try {
+            long bytes;
+            try (var out = Files.newOutputStream(partial, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                bytes = body.transferTo(out);
+            }
+            Path spool = Files.move(partial, directory.resolve(name + SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Spooled {} bytes of Master Service response to {}", bytes, spool);
+            prune(spool);
+            return spool;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a spool file for reading through a read-only memory mapping. Files beyond the
+     * 2 GB limit of a single mapping are read as a plain stream.
+     */
+    public InputStream open(Path spool) throws IOException {
+        ByteBuffer mapped = map(spool);
+        return mapped != null ? new ByteBufferBackedInputStream(mapped) : Files.newInputStream(spool);
+    }
+
+    /**
+     * Read-only memory mapping of a spool file, or null if it exceeds the 2 GB limit of a mapping.
+     */
+    public ByteBuffer map(Path spool) throws IOException {
+        try (FileChannel channel = FileChannel.open(spool, StandardOpenOption.READ)) {
+            long size = channel.size();
+            // The mapping stays valid after the channel is closed
+            return size > Integer.MAX_VALUE ? null : channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * Keeps {@code spool} as the failed spool of its source and drops that source's older
+     * failed ones; failed spools of other sources are left alone.
+     *
+     * @return the renamed file
+     */
+    public Path markFailed(Path spool) {
+        try {
+            String name = spool.getFileName().toString();
+            String source = sourceOf(name);
+            for (SpoolFile file : list()) {
+                if (file.failed() && source.equals(sourceOf(file.path().getFileName().toString()))) {
+                    Files.deleteIfExists(file.path());
+                }
+            }
+            Path failed = spool.resolveSibling(name.substring(0, name.length() - SUFFIX.length()) + FAILED_SUFFIX);
+            Files.move(spool, failed, StandardCopyOption.ATOMIC_MOVE);
+            logger.warn("Kept spool of failed Master Service response for inspection: {}", failed);
+            return failed;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to keep spool " + spool, e);
+        }
+    }
+
+    /**
+     * Deletes a spool that is of no further use, such as one cut off in transfer.
+     */
+    public void discard(Path spool) {
+        try {
+            Files.deleteIfExists(spool);
+        } catch (IOException e) {
+            logger.warn("Failed to delete spool {}: {}", spool, e.getMessage());
+        }
+    }
+
+    /**
+     * Completed and failed spool files, newest first.
+     */
+    public List<SpoolFile> list() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        List<SpoolFile> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : paths.toList()) {
+                String name = path.getFileName().toString();
+                if (!name.endsWith(SUFFIX)) {
+                    continue;
+                }
+                try {
+                    files.add(new SpoolFile(path, Files.size(path),
+                            Files.getLastModifiedTime(path).toInstant(), name.endsWith(FAILED_SUFFIX)));
+                } catch (NoSuchFileException e) {
+                    // Pruned concurrently
+                }
+            }
+        }
+        files.sort(Comparator.comparing(SpoolFile::modified).thenComparing(file -> file.path().getFileName())
+                .reversed());
+        return files;
+    }
+
+    /**
+     * Spool file by name, restricted to the spool directory.
+     */
+    public Optional<Path> find(String name) throws IOException {
+        return list().stream().map(SpoolFile::path).filter(path -> path.getFileName().toString().equals(name))
+                .findFirst();
+    }
+
+    /**
+     * Deletes the oldest spools until the directory fits in the size limit. The newest
+     * spool and the failed spool are always kept.
+     */
+    private void prune(Path newest) throws IOException {
+        List<SpoolFile> files = list();
+        long total = files.stream().mapToLong(SpoolFile::size).sum();
+        for (int i = files.size() - 1; i >= 0 && total > maxBytes; i--) {
+            SpoolFile file = files.get(i);
+            if (file.failed() || file.path().equals(newest)) {
+                continue;
+            }
+            Files.deleteIfExists(file.path());
+            total -= file.size();
+            logger.debug("Deleted spool {} ({} bytes) to stay within {} bytes", file.path(), file.size(), maxBytes);
+        }
+    }
+
+    /**
+     * The {@link #safeName} part of a {@code <source>-<timestamp>-<sequence>} spool file name.
+     */
+    private static String sourceOf(String fileName) {
+        int sequence = fileName.lastIndexOf('-');
+        int timestamp = sequence > 0 ? fileName.lastIndexOf('-', sequence - 1) : -1;
+        return timestamp > 0 ? fileName.substring(0, timestamp) : fileName;
+    }
+
+    private static String safeName(String source) {
+        return source == null || source.isBlank() ? "default" : source.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /**
+     * A spool file with its size, modification time and whether its parse failed.
+     */
+    public record SpoolFile(Path path, long size, Instant modified, boolean failed) {
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Service for managing scheduled tasks in the AMFK Starfish Sync application
@@ -26,20 +27,22 @@ public class ScheduledTaskService {
     private static final Logger logger = LoggerFactory.getLogger(ScheduledTaskService.class);
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     
-    private final SiteSyncService siteSyncService;
-    private static final long SCHEDULE_INTERVAL_MS = 86400000; // 24 hours
+    private final SiteSyncCoordinator siteSyncCoordinator;
     
     @Value("${site.sync.enabled:true}")
     private boolean siteSyncEnabled;
     
+    @Value("${site.sync.start.jitter.ms:0}")
+    private long startJitterMs;
+    
     /**
      * Constructor for ScheduledTaskService
      * 
-     * @param siteSyncService Service for site synchronization operations
+     * @param siteSyncCoordinator Single-flight entry point for site synchronization runs
      */
     @Autowired
-    public ScheduledTaskService(SiteSyncService siteSyncService) {
-        this.siteSyncService = siteSyncService;
+    public ScheduledTaskService(SiteSyncCoordinator siteSyncCoordinator) {
+        this.siteSyncCoordinator = siteSyncCoordinator;
     }
     
 
@@ -47,26 +50,43 @@ public class ScheduledTaskService {
     /**
      * Scheduled method that executes site synchronization jobs
      * 
-     * This method is scheduled using fixed rate (every 2 minutes).
-     * It checks if site sync is enabled before executing, and if enabled,
-     * calls the site synchronization service to pull data from master service
-     * and STARFISH API.
+     * This method is triggered by the {@code site.sync.cron} expression on the dedicated
+     * site sync scheduler, so a long sync never delays other scheduled tasks.
+     * It checks if site sync is enabled before executing, waits a random start jitter
+     * (up to {@code site.sync.start.jitter.ms}) so that replicas do not hit the Master
+     * Service at the same instant, and then triggers the sync through the
+     * {@link SiteSyncCoordinator}. If a sync is already running, this trigger joins it.
      * 
-     * The method includes error handling and logging for monitoring purposes.
+     * The method waits for the run to finish. On the single platform scheduler thread
+     * the next cron firing is therefore only computed once the current run is over; with
+     * virtual threads every firing gets its own thread, and one that fires during a run
+     * joins it.
      */
-    @Scheduled(fixedRate = SCHEDULE_INTERVAL_MS)
+    @Scheduled(cron = "${site.sync.cron:0 0 */2 * * ?}", scheduler = "siteSyncTaskScheduler")
     public void scheduledSiteSync() {
         if (!siteSyncEnabled) {
             logger.debug("Site sync is disabled, skipping scheduled execution");
             return;
         }
         
+        if (startJitterMs > 0) {
+            long jitter = ThreadLocalRandom.current().nextLong(startJitterMs + 1);
+            logger.debug("Delaying scheduled site sync start by {} ms", jitter);
+            try {
+                Thread.sleep(jitter);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Scheduled site sync interrupted during start jitter, skipping this run");
+                return;
+            }
+        }
+        
         String currentTime = LocalDateTime.now().format(formatter);
         logger.info("Starting scheduled site sync job at: {}", currentTime);
         
         try {
-            // Execute the site synchronization process
-            String result = siteSyncService.syncSites();
+            // Execute the site synchronization process, or join the one already running
+            String result = siteSyncCoordinator.triggerSync("scheduled").job().getFuture().join();
             logger.info("Completed scheduled site sync job at: {} with result: {}", currentTime, result);
         } catch (Exception e) {
             logger.error("Scheduled site sync job failed at {}: {}", currentTime, e.getMessage(), e);
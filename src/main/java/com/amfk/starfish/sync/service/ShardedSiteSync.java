@@ -0,0 +1,238 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.config.VirtualThreads;
+import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.repository.SyncShardLeaseRepository;
+import com.amfk.starfish.sync.util.Deadline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Cluster-aware execution of the per-site sync work.
+ *
+ * The site list is split into shards by cluster. Replicas coordinate through
+ * {@link SyncShardLeaseRepository}: each node claims shards with a time-limited lease,
+ * processes them in parallel on its worker threads and marks them completed. Leases of
+ * nodes that die are not renewed, expire after {@code site.sync.cluster.lease.ttl.ms}
+ * and are claimed again by the remaining nodes, so adding replicas shortens a run
+ * instead of repeating it.
+ *
+ * A shard completed within the last {@code site.sync.cluster.shard.freshness.ms} counts
+ * as done for the current run. The window must be longer than the start jitter plus the
+ * run duration and shorter than the cron interval.
+ */
+@Service
+public class ShardedSiteSync {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedSiteSync.class);
+
+    private final SyncShardLeaseRepository leaseRepository;
+    private final boolean enabled;
+    private final int shardCount;
+    private final int workers;
+    private final long leaseTtlMs;
+    private final long freshnessMs;
+    private final long pollIntervalMs;
+    private final String nodeId;
+    private final boolean virtualThreads;
+    private volatile boolean initialized;
+
+    public ShardedSiteSync(SyncShardLeaseRepository leaseRepository,
+                           @Value("${site.sync.cluster.enabled:false}") boolean enabled,
+                           @Value("${site.sync.cluster.shards:16}") int shardCount,
+                           @Value("${site.sync.cluster.workers:2}") int workers,
+                           @Value("${site.sync.cluster.lease.ttl.ms:120000}") long leaseTtlMs,
+                           @Value("${site.sync.cluster.shard.freshness.ms:600000}") long freshnessMs,
+                           @Value("${site.sync.cluster.poll.interval.ms:5000}") long pollIntervalMs,
+                           @Value("${site.sync.cluster.node.id:}") String nodeId,
+                           Environment environment) {
+        this.leaseRepository = leaseRepository;
+        this.enabled = enabled;
+        this.shardCount = shardCount;
+        this.workers = workers;
+        this.leaseTtlMs = leaseTtlMs;
+        this.freshnessMs = freshnessMs;
+        this.pollIntervalMs = pollIntervalMs;
+        this.nodeId = nodeId != null && !nodeId.isBlank() ? nodeId : defaultNodeId();
+        this.virtualThreads = VirtualThreads.isActive(environment);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Shard of a site, derived from its cluster so all sites of a cluster land on the same node.
+     */
+    public static int shardOf(SiteDto site, int shardCount) {
+        Object key = site.getClusterId() != null ? site.getClusterId() : site.getClusterName();
+        return Math.floorMod(Objects.hashCode(key), shardCount);
+    }
+
+    /**
+     * Processes the shards this node manages to claim and returns once every shard has
+     * been completed by some node.
+     *
+     * @param sites     full site list of the run
+     * @param processor per-site work, returns true on success
+     * @param stats     counters updated for the sites processed by this node
+     */
+    public void run(List<SiteDto> sites, Predicate<SiteDto> processor, SiteSyncStats stats) {
+        initialize();
+
+        Map<Integer, List<SiteDto>> shards = new HashMap<>();
+        for (SiteDto site : sites) {
+            shards.computeIfAbsent(shardOf(site, shardCount), k -> new ArrayList<>()).add(site);
+        }
+
+        long completedSince = System.currentTimeMillis() - freshnessMs;
+        ExecutorService pool = Executors.newFixedThreadPool(workers,
+                VirtualThreads.threadFactory("site-sync-shard-", virtualThreads));
+        AtomicInteger claimed = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                futures.add(pool.submit(Deadline.propagate(() -> {
+                    workLoop(shards, processor, stats, completedSince, claimed);
+                    return null;
+                })));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Sharded site sync interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Sharded site sync worker failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        logger.info("Node {} processed {} of {} shards ({})", nodeId, claimed.get(), shardCount, stats);
+    }
+
+    private void workLoop(Map<Integer, List<SiteDto>> shards, Predicate<SiteDto> processor,
+                          SiteSyncStats stats, long completedSince, AtomicInteger claimed) {
+        Deadline deadline = Deadline.current();
+        while (!Thread.currentThread().isInterrupted()) {
+            if (deadline != null && deadline.isExpired()) {
+                logger.warn("Node {} stops claiming shards: {}", nodeId, deadline.exceeded().getMessage());
+                return;
+            }
+            Integer shard = claimNext(completedSince);
+            if (shard == null) {
+                if (leaseRepository.countPending(shardCount, completedSince) == 0) {
+                    return;
+                }
+                // Remaining shards are leased by other nodes: wait for them to finish or for their leases to expire
+                try {
+                    Thread.sleep(pollIntervalMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+            claimed.incrementAndGet();
+            processShard(shard, shards.getOrDefault(shard, List.of()), processor, stats);
+        }
+    }
+
+    private Integer claimNext(long completedSince) {
+        long now = System.currentTimeMillis();
+        for (Integer shard : leaseRepository.findClaimable(shardCount, now, completedSince)) {
+            if (leaseRepository.tryClaim(shard, nodeId, now, now + leaseTtlMs, completedSince)) {
+                return shard;
+            }
+        }
+        return null;
+    }
+
+    private void processShard(int shard, List<SiteDto> sites, Predicate<SiteDto> processor, SiteSyncStats stats) {
+        logger.info("Node {} claimed shard {} with {} sites", nodeId, shard, sites.size());
+        long lastRenewal = System.currentTimeMillis();
+        Deadline deadline = Deadline.current();
+        try {
+            for (SiteDto site : sites) {
+                if (deadline != null && deadline.isExpired()) {
+                    logger.warn("Node {} leaves shard {} unfinished at the run deadline", nodeId, shard);
+                    release(shard);
+                    return;
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastRenewal > leaseTtlMs / 3) {
+                    if (!leaseRepository.renew(shard, nodeId, now + leaseTtlMs)) {
+                        logger.warn("Node {} lost the lease on shard {}, leaving it to its new owner", nodeId, shard);
+                        return;
+                    }
+                    lastRenewal = now;
+                }
+                try {
+                    if (processor.test(site)) {
+                        stats.recordSuccess();
+                    } else {
+                        stats.recordFailure();
+                    }
+                } catch (Exception e) {
+                    logger.error("Error processing site {} in shard {}: {}", site.getSiteId(), shard, e.getMessage(), e);
+                    stats.recordFailure();
+                }
+            }
+            leaseRepository.complete(shard, nodeId, System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            release(shard);
+            throw e;
+        }
+    }
+
+    /**
+     * Gives the shard back so another node (or the next run) picks it up, even past the run deadline.
+     */
+    private void release(int shard) {
+        try (Deadline.Scope unbounded = Deadline.suspend()) {
+            leaseRepository.release(shard, nodeId);
+        }
+    }
+
+    private void initialize() {
+        if (!initialized) {
+            synchronized (this) {
+                if (!initialized) {
+                    leaseRepository.initialize(shardCount);
+                    initialized = true;
+                }
+            }
+        }
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,109 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.util.StringPool;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Converts raw site maps returned by the Master Service into {@link SiteDto} objects.
+ *
+ * Low-cardinality fields (cluster, SIP domain, routing policy, CM, city, audit users...)
+ * are canonicalized through a run-scoped {@link StringPool}, so hundreds of sites that
+ * share the same cluster do not each carry their own copy of the same strings.
+ * High-cardinality fields such as name, location code, street, location, remark and
+ * notes are stored as parsed: pooling them would only fill the pool with one-off values.
+ */
+@Component
+public class SiteDtoMapper {
+
+    /**
+     * Key under which the fetching code records the Master Service source in a raw site map.
+     */
+    public static final String SOURCE_KEY = "_source";
+
+    public SiteDto toSiteDto(Map<String, Object> siteMap, StringPool pool) {
+        SiteDto siteDto = new SiteDto();
+
+        // Map the fields from the Master Service response to SiteDto
+        if (siteMap.containsKey("id")) {
+            siteDto.setId((Integer) siteMap.get("id"));
+        }
+        if (siteMap.containsKey("name")) {
+            siteDto.setName(siteMap.get("name").toString());
+        }
+        if (siteMap.containsKey("nameEnglish")) {
+            siteDto.setNameEnglish(asString(siteMap.get("nameEnglish")));
+        }
+        if (siteMap.containsKey("nameGerman")) {
+            siteDto.setNameGerman(asString(siteMap.get("nameGerman")));
+        }
+        if (siteMap.containsKey("locationCode")) {
+            siteDto.setLocationCode(asString(siteMap.get("locationCode")));
+        }
+        if (siteMap.containsKey("city")) {
+            siteDto.setCity(pooled(siteMap.get("city"), pool));
+        }
+        if (siteMap.containsKey("street")) {
+            siteDto.setStreet(asString(siteMap.get("street")));
+        }
+        if (siteMap.containsKey("remark")) {
+            siteDto.setRemark(asString(siteMap.get("remark")));
+        }
+        if (siteMap.containsKey("active")) {
+            siteDto.setActive((Integer) siteMap.get("active"));
+        }
+        if (siteMap.containsKey("logCreatedBy")) {
+            siteDto.setLogCreatedBy(pooled(siteMap.get("logCreatedBy"), pool));
+        }
+        // logCreatedOn, logUpdatedOn and timeStamp arrive as strings and are not mapped yet
+        if (siteMap.containsKey("logUpdatedBy")) {
+            siteDto.setLogUpdatedBy(pooled(siteMap.get("logUpdatedBy"), pool));
+        }
+        if (siteMap.containsKey("clusterName")) {
+            siteDto.setClusterName(pooled(siteMap.get("clusterName"), pool));
+        }
+        if (siteMap.containsKey("clusterId")) {
+            siteDto.setClusterId((Integer) siteMap.get("clusterId"));
+        }
+        if (siteMap.containsKey("sipDomain")) {
+            siteDto.setSipDomain(pooled(siteMap.get("sipDomain"), pool));
+        }
+        if (siteMap.containsKey("routingPolicy")) {
+            siteDto.setRoutingPolicy(pooled(siteMap.get("routingPolicy"), pool));
+        }
+        if (siteMap.containsKey("cmName")) {
+            siteDto.setCmName(pooled(siteMap.get("cmName"), pool));
+        }
+        if (siteMap.containsKey("notes")) {
+            siteDto.setNotes(asString(siteMap.get("notes")));
+        }
+        if (siteMap.containsKey("ars")) {
+            siteDto.setArs(pooled(siteMap.get("ars"), pool));
+        }
+        if (siteMap.containsKey("userStamp")) {
+            siteDto.setUserStamp(pooled(siteMap.get("userStamp"), pool));
+        }
+        if (siteMap.containsKey(SOURCE_KEY)) {
+            siteDto.setSource(pooled(siteMap.get(SOURCE_KEY), pool));
+        }
+
+        // Map location as combination of city and street
+        String city = siteDto.getCity() != null ? siteDto.getCity() : "";
+        String street = siteDto.getStreet() != null ? siteDto.getStreet() : "";
+        if (!city.isEmpty() || !street.isEmpty()) {
+            siteDto.setLocation((city + " " + street).trim());
+        }
+
+        return siteDto;
+    }
+
+    private static String asString(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static String pooled(Object value, StringPool pool) {
+        return pool.canonicalize(asString(value));
+    }
+}
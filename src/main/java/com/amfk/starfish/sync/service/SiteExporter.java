@@ -0,0 +1,178 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.RangeRow;
+import com.amfk.starfish.sync.dto.SiteDetailsDto;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Writes every active site with its ranges to a stream, in a single pass over one cursor.
+ *
+ * Rows arrive grouped by cluster and are written as they are read, so memory use does
+ * not depend on the size of the inventory. NDJSON has one line per site in the shape of
+ * a {@code GET /site} result entry; CSV has one line per range.
+ */
+@Service
+public class SiteExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteExporter.class);
+
+    static final String CSV_HEADER = "Site,CM,Type,Lowerbound,Upperbound,Prefix";
+
+    public enum Format { NDJSON, CSV }
+
+    private final MockApiService mockApiService;
+    private final ObjectMapper objectMapper;
+
+    public SiteExporter(MockApiService mockApiService, ObjectMapper objectMapper) {
+        this.mockApiService = mockApiService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Streams the export to {@code out} without closing it.
+     */
+    public Summary export(Format format, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        int[] sites = {0};
+        int ranges;
+        try {
+            ranges = format == Format.CSV ? writeCsv(out, sites) : writeNdjson(out, sites);
+        } catch (UncheckedIOException e) {
+            // Usually the client went away; the cursor is closed as the exception unwinds
+            throw e.getCause();
+        }
+        Summary summary = new Summary(sites[0], ranges, System.currentTimeMillis() - start);
+        logger.info("Exported {} sites with {} ranges as {} in {} ms", summary.sites(), summary.ranges(), format,
+                summary.durationMs());
+        return summary;
+    }
+
+    private int writeNdjson(OutputStream out, int[] sites) throws IOException {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(nonClosing(out))) {
+            json.setRootValueSeparator(null);
+            RangeRow[] current = {null};
+            int ranges = mockApiService.forEachActiveRange(row -> {
+                try {
+                    if (current[0] == null || !sameSite(current[0], row)) {
+                        if (current[0] != null) {
+                            endSite(json);
+                        }
+                        json.writeStartObject();
+                        json.writeStringField("Site", row.site());
+                        json.writeStringField("CM", row.cm());
+                        json.writeArrayFieldStart("Ranges");
+                        sites[0]++;
+                    }
+                    json.writeObject(new SiteDetailsDto.RangeDto(row));
+                    current[0] = row;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (current[0] != null) {
+                endSite(json);
+            }
+            return ranges;
+        }
+    }
+
+    private static void endSite(JsonGenerator json) throws IOException {
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private int writeCsv(OutputStream out, int[] sites) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(nonClosing(out), StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        RangeRow[] previous = {null};
+        int ranges = mockApiService.forEachActiveRange(row -> {
+            try {
+                if (previous[0] == null || !sameSite(previous[0], row)) {
+                    sites[0]++;
+                }
+                writeCsvField(writer, row.site());
+                writer.write(',');
+                writeCsvField(writer, row.cm());
+                writer.write(',');
+                writeCsvField(writer, row.type());
+                writer.write(',');
+                writeCsvField(writer, row.lowerbound());
+                writer.write(',');
+                writeCsvField(writer, row.upperbound());
+                writer.write(',');
+                writeCsvField(writer, row.prefix());
+                writer.write('\n');
+                previous[0] = row;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+        return ranges;
+    }
+
+    /**
+     * Writes a field, quoted (RFC 4180) only if it contains a separator, quote or line break.
+     */
+    static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static boolean sameSite(RangeRow a, RangeRow b) {
+        return Objects.equals(a.site(), b.site()) && Objects.equals(a.cm(), b.cm());
+    }
+
+    /**
+     * Keeps the generator and writer from closing the response stream, which the caller owns.
+     */
+    private static OutputStream nonClosing(OutputStream out) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+        };
+    }
+
+    public record Summary(int sites, int ranges, long durationMs) {
+    }
+}
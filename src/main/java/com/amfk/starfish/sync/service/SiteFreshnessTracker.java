@@ -0,0 +1,143 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.SiteDto;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers when each site was last refreshed and in which version.
+ *
+ * The version of a site is derived from its cluster and {@code logUpdatedOn}, so a site
+ * edited in the Master Service counts as changed until it is refreshed again.
+ * {@link #prioritize} orders a run's sites new first, then changed, then by the age of
+ * their last refresh. Every sync mode calls {@link #retain} with the site list of a run
+ * that received every source, so sites no longer listed are forgotten. The age of the
+ * stalest refreshed site is published as {@code site.sync.freshness.oldest}. The state
+ * is kept in memory and starts empty.
+ */
+@Component
+public class SiteFreshnessTracker {
+
+    /**
+     * Refresh priority of a site, most urgent first.
+     */
+    public enum Priority { NEW, CHANGED, REFRESHED }
+
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    public SiteFreshnessTracker(MeterRegistry meterRegistry) {
+        Gauge.builder("site.sync.freshness.oldest", this, tracker -> tracker.oldestAgeMs() / 1000.0)
+                .baseUnit("seconds")
+                .description("Time since the least recently refreshed site was refreshed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records a completed refresh of the site; {@code found} tells whether it had site details.
+     */
+    public void recordRefresh(SiteDto site, boolean found) {
+        if (site.getId() == null) {
+            return;
+        }
+        entries.put(site.getId(), new Entry(site.getId(), site.getClusterName(), versionOf(site), Instant.now(), found));
+    }
+
+    public Priority priorityOf(SiteDto site) {
+        Entry entry = site.getId() != null ? entries.get(site.getId()) : null;
+        if (entry == null) {
+            return Priority.NEW;
+        }
+        return entry.version() != versionOf(site) ? Priority.CHANGED : Priority.REFRESHED;
+    }
+
+    /**
+     * Forgets the sites that are not in {@code sites}, the complete site list of a run.
+     */
+    public void retain(List<SiteDto> sites) {
+        Set<Integer> ids = new HashSet<>();
+        for (SiteDto site : sites) {
+            if (site.getId() != null) {
+                ids.add(site.getId());
+            }
+        }
+        retainIds(ids);
+    }
+
+    /**
+     * Forgets the sites whose id is not in {@code siteIds}.
+     */
+    public void retainIds(Set<Integer> siteIds) {
+        entries.keySet().retainAll(siteIds);
+    }
+
+    /**
+     * Returns the sites in refresh order.
+     */
+    public List<SiteDto> prioritize(List<SiteDto> sites) {
+        List<Ranked> ranked = new ArrayList<>(sites.size());
+        for (SiteDto site : sites) {
+            Entry entry = site.getId() != null ? entries.get(site.getId()) : null;
+            long refreshedAt = entry != null ? entry.refreshedAt().toEpochMilli() : Long.MIN_VALUE;
+            ranked.add(new Ranked(site, priorityOf(site), refreshedAt));
+        }
+        // Stable, so sites of equal rank keep the Master Service order
+        ranked.sort(Comparator.comparing(Ranked::priority).thenComparingLong(Ranked::refreshedAt));
+        return ranked.stream().map(Ranked::site).toList();
+    }
+
+    /**
+     * Current state with the {@code limit} stalest sites.
+     */
+    public Report report(int limit) {
+        long now = System.currentTimeMillis();
+        List<Entry> all = new ArrayList<>(entries.values());
+        all.sort(Comparator.comparing(Entry::refreshedAt));
+        List<SiteFreshness> stalest = all.stream()
+                .limit(Math.max(0, limit))
+                .map(entry -> new SiteFreshness(entry.siteId(), entry.clusterName(), entry.refreshedAt(),
+                        now - entry.refreshedAt().toEpochMilli(), entry.found()))
+                .toList();
+        Long oldestAgeMs = all.isEmpty() ? null : now - all.get(0).refreshedAt().toEpochMilli();
+        Long medianAgeMs = all.isEmpty() ? null : now - all.get(all.size() / 2).refreshedAt().toEpochMilli();
+        return new Report(Instant.ofEpochMilli(now), all.size(), oldestAgeMs, medianAgeMs, stalest);
+    }
+
+    private long oldestAgeMs() {
+        long oldest = Long.MAX_VALUE;
+        for (Entry entry : entries.values()) {
+            oldest = Math.min(oldest, entry.refreshedAt().toEpochMilli());
+        }
+        return oldest == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldest;
+    }
+
+    private static int versionOf(SiteDto site) {
+        return Objects.hash(site.getClusterName(), site.getLogUpdatedOn());
+    }
+
+    private record Entry(int siteId, String clusterName, int version, Instant refreshedAt, boolean found) {
+    }
+
+    private record Ranked(SiteDto site, Priority priority, long refreshedAt) {
+    }
+
+    /**
+     * Refresh state of the tracked sites; ages are in ms and null while nothing is tracked.
+     */
+    public record Report(Instant takenAt, int tracked, Long oldestAgeMs, Long medianAgeMs,
+                         List<SiteFreshness> stalest) {
+    }
+
+    public record SiteFreshness(int siteId, String clusterName, Instant lastRefreshedAt, long ageMs, boolean found) {
+    }
+}
@@ -0,0 +1,176 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.RangeRow;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Front for the /site lookup that coalesces identical in-flight queries and bounds how
+ * many run against the database at once.
+ *
+ * Lookups are keyed on the trimmed, lower-cased SiteName, which is how the site details
+ * query matches clusters. The first caller for a key runs the query; callers arriving
+ * while it is in flight wait for the same result instead of issuing their own.
+ *
+ * Only the callers that actually query are admitted against {@code maxConcurrent}
+ * permits. When none is free a caller waits up to {@code queueTimeoutMs} in a queue of at
+ * most {@code queueSize}; beyond that, or after the timeout, the lookup (and every caller
+ * coalesced into it) fails fast with {@link SiteLookupRejectedException}.
+ *
+ * Outcomes are counted in the {@code site.lookup} metric tagged executed, coalesced or
+ * rejected.
+ */
+@Component
+public class SiteLookupCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteLookupCoalescer.class);
+
+    private final MockApiService mockApiService;
+    private final boolean coalescingEnabled;
+    private final Semaphore permits;
+    private final int queueSize;
+    private final long queueTimeoutMs;
+    private final ConcurrentHashMap<String, CompletableFuture<List<RangeRow>>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Counter executed;
+    private final Counter coalesced;
+    private final Counter rejected;
+
+    public SiteLookupCoalescer(MockApiService mockApiService,
+                               @Value("${site.lookup.coalescing.enabled:true}") boolean coalescingEnabled,
+                               @Value("${site.lookup.max.concurrent:8}") int maxConcurrent,
+                               @Value("${site.lookup.queue.size:64}") int queueSize,
+                               @Value("${site.lookup.queue.timeout.ms:2000}") long queueTimeoutMs,
+                               MeterRegistry meterRegistry) {
+        this.mockApiService = mockApiService;
+        this.coalescingEnabled = coalescingEnabled;
+        this.permits = maxConcurrent > 0 ? new Semaphore(maxConcurrent) : null;
+        this.queueSize = queueSize;
+        this.queueTimeoutMs = queueTimeoutMs;
+        this.executed = lookupCounter(meterRegistry, "executed");
+        this.coalesced = lookupCounter(meterRegistry, "coalesced");
+        this.rejected = lookupCounter(meterRegistry, "rejected");
+        Gauge.builder("site.lookup.waiting", waiting, AtomicInteger::get)
+                .description("Site lookups waiting for a database permit").register(meterRegistry);
+    }
+
+    /**
+     * Returns the active ranges of a cluster, sharing the result with concurrent callers
+     * for the same normalized name. The returned list is read-only.
+     *
+     * @throws SiteLookupRejectedException if the lookup was shed under load
+     */
+    public List<RangeRow> getSiteDetails(String siteName) {
+        if (!coalescingEnabled) {
+            return admitAndQuery(siteName);
+        }
+
+        String key = MockApiService.normalize(siteName);
+        CompletableFuture<List<RangeRow>> own = new CompletableFuture<>();
+        CompletableFuture<List<RangeRow>> existing = inFlight.putIfAbsent(key, own);
+        if (existing != null) {
+            coalesced.increment();
+            return join(existing);
+        }
+
+        try {
+            own.complete(admitAndQuery(siteName));
+        } catch (Throwable e) {
+            // Errors too, or the callers already waiting for this lookup would wait forever
+            own.completeExceptionally(e);
+        } finally {
+            inFlight.remove(key, own);
+        }
+        return join(own);
+    }
+
+    /**
+     * Resolves many names with one set-based query, admitted like a single lookup but
+     * never coalesced.
+     *
+     * @throws SiteLookupRejectedException if the lookup was shed under load
+     */
+    public Map<String, List<RangeRow>> getSiteDetails(Collection<String> siteNames) {
+        return admitted(siteNames.size() + " sites", () -> mockApiService.getSiteDetails(siteNames));
+    }
+
+    private List<RangeRow> admitAndQuery(String siteName) {
+        return admitted(siteName, () -> Collections.unmodifiableList(mockApiService.getSiteDetails(siteName)));
+    }
+
+    private <T> T admitted(String description, Supplier<T> query) {
+        acquire(description);
+        try {
+            executed.increment();
+            return query.get();
+        } finally {
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+
+    private void acquire(String description) {
+        if (permits == null || permits.tryAcquire()) {
+            return;
+        }
+        if (waiting.incrementAndGet() > queueSize) {
+            waiting.decrementAndGet();
+            reject(description, "wait queue full");
+        }
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+        if (!acquired) {
+            reject(description, "no database permit within " + queueTimeoutMs + " ms");
+        }
+    }
+
+    private void reject(String description, String reason) {
+        rejected.increment();
+        logger.debug("Rejected site lookup for '{}': {}", description, reason);
+        throw new SiteLookupRejectedException("Site lookup rejected: " + reason);
+    }
+
+    private static List<RangeRow> join(CompletableFuture<List<RangeRow>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("site.lookup").tag("outcome", outcome)
+                .description("Site lookups by outcome").register(meterRegistry);
+    }
+}
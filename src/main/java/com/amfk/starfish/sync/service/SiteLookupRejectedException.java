@@ -0,0 +1,12 @@
+package com.amfk.starfish.sync.service;
+
+/**
+ * Thrown when a site lookup is shed because the lookup concurrency limit and its wait
+ * queue are both full. The endpoint answers with 503 so callers back off and retry.
+ */
+public class SiteLookupRejectedException extends RuntimeException {
+
+    public SiteLookupRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,199 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.RangeRow;
+import com.amfk.starfish.sync.repository.SiteRangeViewRepository;
+import com.amfk.starfish.sync.repository.SiteRangeViewRepository.ClusterRows;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maintains the materialized site range view read by {@link MockApiService}.
+ *
+ * Each sync run streams the site details join once, fingerprints the rows of every
+ * cluster and rewrites only the clusters whose fingerprint changed, plus removes the
+ * ones that disappeared or became inactive. The source has no change marker to filter
+ * on, so the join is still read in full, but row by row: only the cluster being read is
+ * held in memory, and changed clusters are written while reading in transactions of
+ * about {@code site.lookup.view.write.batch.rows} rows. Each cluster is replaced as a
+ * whole; a refresh that fails midway keeps the clusters it already wrote. Whether the view already holds data is
+ * checked once at startup, e.g. filled by another node or a previous run; otherwise
+ * {@link #isReadable()} stays false and lookups keep using the join until the first
+ * refresh of this node.
+ */
+@Service
+public class SiteRangeView implements InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteRangeView.class);
+
+    private final SiteRangeViewRepository repository;
+    private final boolean enabled;
+    private final int writeBatchRows;
+    private volatile boolean initialized;
+    private volatile boolean readable;
+
+    public SiteRangeView(SiteRangeViewRepository repository,
+                         @Value("${site.lookup.view.enabled:false}") boolean enabled,
+                         @Value("${site.lookup.view.write.batch.rows:1000}") int writeBatchRows) {
+        this.repository = repository;
+        this.enabled = enabled;
+        this.writeBatchRows = Math.max(1, writeBatchRows);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            initialize();
+            readable = repository.isPopulated();
+        } catch (RuntimeException e) {
+            logger.warn("Site range view not available at startup, reading from the join until it is refreshed: {}",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * True once the view is enabled and holds data, so lookups may read from it.
+     * Answers from memory and never queries the database.
+     */
+    public boolean isReadable() {
+        return enabled && readable;
+    }
+
+    /**
+     * Brings the view up to date with the source tables.
+     *
+     * @return summary of what was rewritten
+     */
+    public RefreshResult refresh() {
+        long start = System.currentTimeMillis();
+        initialize();
+        Map<Long, String> previous = repository.findFingerprints();
+        Set<Long> seen = new HashSet<>();
+        ChangeWriter writer = new ChangeWriter(previous);
+        ClusterAccumulator[] current = {null};
+
+        repository.forEachSourceRow((clusterId, rangeId, row) -> {
+            if (current[0] == null || current[0].clusterId != clusterId) {
+                writer.add(current[0]);
+                current[0] = new ClusterAccumulator(clusterId);
+                seen.add(clusterId);
+            }
+            current[0].add(rangeId, row);
+        });
+        writer.add(current[0]);
+
+        List<Long> removed = previous.keySet().stream().filter(clusterId -> !seen.contains(clusterId)).toList();
+        writer.flush(removed);
+        readable = !seen.isEmpty();
+
+        RefreshResult result = new RefreshResult(seen.size(), writer.changed, removed.size(),
+                System.currentTimeMillis() - start);
+        logger.info("Refreshed site range view: {} clusters, {} rewritten, {} removed in {} ms",
+                result.clusters(), result.changed(), result.removed(), result.durationMs());
+        return result;
+    }
+
+    private void initialize() {
+        if (!initialized) {
+            repository.initialize();
+            initialized = true;
+        }
+    }
+
+    /**
+     * Collects the changed clusters of a refresh and writes them once they add up to a batch.
+     */
+    private final class ChangeWriter {
+
+        private final Map<Long, String> previous;
+        private final List<ClusterRows> pending = new ArrayList<>();
+        private int pendingRows;
+        private int changed;
+
+        ChangeWriter(Map<Long, String> previous) {
+            this.previous = previous;
+        }
+
+        void add(ClusterAccumulator cluster) {
+            if (cluster == null) {
+                return;
+            }
+            String fingerprint = cluster.fingerprint();
+            if (fingerprint.equals(previous.get(cluster.clusterId))) {
+                return;
+            }
+            pending.add(new ClusterRows(cluster.clusterId, fingerprint, cluster.rangeIds, cluster.rows));
+            pendingRows += cluster.rows.size();
+            changed++;
+            if (pendingRows >= writeBatchRows) {
+                flush(List.of());
+            }
+        }
+
+        void flush(List<Long> removed) {
+            if (pending.isEmpty() && removed.isEmpty()) {
+                return;
+            }
+            repository.replaceClusters(pending, removed, System.currentTimeMillis());
+            pending.clear();
+            pendingRows = 0;
+        }
+    }
+
+    /**
+     * Rows of one cluster read so far and a running digest over them.
+     */
+    private static final class ClusterAccumulator {
+
+        private final long clusterId;
+        private final List<Long> rangeIds = new ArrayList<>();
+        private final List<RangeRow> rows = new ArrayList<>();
+        private final MessageDigest digest;
+
+        ClusterAccumulator(long clusterId) {
+            this.clusterId = clusterId;
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+
+        void add(long rangeId, RangeRow row) {
+            rangeIds.add(rangeId);
+            rows.add(row);
+            String line = rangeId + "|" + row.clusterName() + "|" + row.cm() + "|" + row.type() + "|"
+                    + row.lowerbound() + "|" + row.upperbound() + "|" + row.prefix() + "\n";
+            digest.update(line.getBytes(StandardCharsets.UTF_8));
+        }
+
+        String fingerprint() {
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
+
+    /**
+     * Outcome of a refresh: clusters in the source, clusters rewritten and removed.
+     */
+    public record RefreshResult(int clusters, int changed, int removed, long durationMs) {
+    }
+}
@@ -0,0 +1,285 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.config.VirtualThreads;
+import com.amfk.starfish.sync.dto.SiteDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Compares the sites known to the Master Service with those in Starfish.
+ *
+ * Both site lists are fetched concurrently on two dedicated threads (virtual when
+ * enabled), not on the common pool, as the calls block on HTTP. Starfish sites are indexed by {@code id} and
+ * by the fallback key ({@code site.reconcile.fallback.key}, e.g. {@code locationCode}),
+ * then every Master Service site is probed against the indexes: a hash join that is
+ * linear in the size of both lists. Matched pairs are compared through per-field 64-bit
+ * hashes computed once per site, so an unchanged site costs one long comparison.
+ *
+ * Results are emitted one by one: {@code CREATE} for Master Service sites missing in
+ * Starfish, {@code UPDATE} (with the differing fields) and {@code UNCHANGED} for matched
+ * sites, and finally {@code DELETE} for Starfish sites without a Master Service counterpart.
+ */
+@Service
+public class SiteReconciler implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteReconciler.class);
+
+    /**
+     * Site fields that can be compared, by the name they have in both APIs.
+     */
+    static final Map<String, Function<SiteDto, Object>> FIELDS = fields();
+
+    private final MultiSourceSiteFetcher siteFetcher;
+    private final StarfishApiClient starfishApiClient;
+    private final String fallbackKey;
+    private final String[] comparedFields;
+    private final ExecutorService fetchers;
+
+    public SiteReconciler(MultiSourceSiteFetcher siteFetcher, StarfishApiClient starfishApiClient, Environment environment,
+                          @Value("${site.reconcile.fallback.key:locationCode}") String fallbackKey,
+                          @Value("${site.reconcile.fields:name,locationCode,clusterName,clusterId,cmName,active,city,street}")
+                          String comparedFields) {
+        this.siteFetcher = siteFetcher;
+        this.starfishApiClient = starfishApiClient;
+        this.fallbackKey = fallbackKey == null || fallbackKey.isBlank() ? null : fallbackKey.trim();
+        this.comparedFields = parseFields(comparedFields);
+        this.fetchers = Executors.newFixedThreadPool(2,
+                VirtualThreads.threadFactory("site-reconcile-", VirtualThreads.isActive(environment)));
+        if (this.fallbackKey != null && !FIELDS.containsKey(this.fallbackKey)) {
+            throw new IllegalArgumentException("Unknown site.reconcile.fallback.key: " + this.fallbackKey);
+        }
+    }
+
+    /**
+     * Site lists of both sides, fetched concurrently.
+     */
+    public Inputs fetch() {
+        CompletableFuture<List<SiteDto>> master = CompletableFuture.supplyAsync(siteFetcher::getSites, fetchers);
+        CompletableFuture<List<Map<String, Object>>> starfish = CompletableFuture.supplyAsync(starfishApiClient::getSites,
+                fetchers);
+        try {
+            List<SiteDto> masterSites = master.join();
+            List<Map<String, Object>> starfishSites = starfish.join();
+            return new Inputs(masterSites != null ? masterSites : List.of(),
+                    starfishSites != null ? starfishSites : List.of());
+        } catch (CompletionException e) {
+            master.cancel(true);
+            starfish.cancel(true);
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        fetchers.shutdownNow();
+    }
+
+    /**
+     * Reconciles the fetched lists, passing every result to {@code out}.
+     */
+    public Summary reconcile(Inputs inputs, Consumer<SiteDiff> out) {
+        return reconcile(inputs.masterSites(), inputs.starfishSites(), fallbackKey, comparedFields, out);
+    }
+
+    static Summary reconcile(List<SiteDto> masterSites, List<Map<String, Object>> starfishSites, String fallbackKey,
+                             String[] comparedFields, Consumer<SiteDiff> out) {
+        long start = System.nanoTime();
+        Function<SiteDto, Object> masterFallback = fallbackKey != null ? FIELDS.get(fallbackKey) : null;
+
+        // Build side: Starfish sites with their field hashes, indexed by id and fallback key
+        StarfishSite[] starfish = new StarfishSite[starfishSites.size()];
+        Map<String, StarfishSite> byId = new HashMap<>(capacity(starfish.length));
+        Map<String, StarfishSite> byFallback = new HashMap<>(fallbackKey != null ? capacity(starfish.length) : 0);
+        for (int i = 0; i < starfish.length; i++) {
+            Map<String, Object> raw = starfishSites.get(i);
+            long[] hashes = new long[comparedFields.length];
+            for (int f = 0; f < comparedFields.length; f++) {
+                hashes[f] = hash(raw.get(comparedFields[f]));
+            }
+            StarfishSite site = new StarfishSite(key(raw.get("id")), hashes, combine(hashes));
+            starfish[i] = site;
+            if (site.id != null) {
+                byId.putIfAbsent(site.id, site);
+            }
+            if (fallbackKey != null) {
+                String fallback = key(raw.get(fallbackKey));
+                if (fallback != null) {
+                    byFallback.putIfAbsent(fallback, site);
+                }
+            }
+        }
+
+        // Probe side: Master Service sites
+        int created = 0;
+        int updated = 0;
+        int unchanged = 0;
+        long[] hashes = new long[comparedFields.length];
+        for (SiteDto site : masterSites) {
+            String id = site.getSiteId();
+            StarfishSite match = id != null ? byId.get(id) : null;
+            String matchedBy = "id";
+            if ((match == null || match.matched) && masterFallback != null) {
+                String fallback = key(masterFallback.apply(site));
+                match = fallback != null ? byFallback.get(fallback) : null;
+                matchedBy = fallbackKey;
+            }
+            if (match == null || match.matched) {
+                out.accept(new SiteDiff(Action.CREATE, id, null, null, List.of()));
+                created++;
+                continue;
+            }
+            match.matched = true;
+
+            for (int f = 0; f < comparedFields.length; f++) {
+                hashes[f] = hash(FIELDS.get(comparedFields[f]).apply(site));
+            }
+            if (combine(hashes) == match.combinedHash && Arrays.equals(hashes, match.fieldHashes)) {
+                out.accept(new SiteDiff(Action.UNCHANGED, id, match.id, matchedBy, List.of()));
+                unchanged++;
+            } else {
+                List<String> changedFields = new ArrayList<>();
+                for (int f = 0; f < comparedFields.length; f++) {
+                    if (hashes[f] != match.fieldHashes[f]) {
+                        changedFields.add(comparedFields[f]);
+                    }
+                }
+                out.accept(new SiteDiff(Action.UPDATE, id, match.id, matchedBy, changedFields));
+                updated++;
+            }
+        }
+
+        int deleted = 0;
+        for (StarfishSite site : starfish) {
+            if (!site.matched) {
+                out.accept(new SiteDiff(Action.DELETE, null, site.id, null, List.of()));
+                deleted++;
+            }
+        }
+
+        Summary summary = new Summary(masterSites.size(), starfishSites.size(), created, updated, deleted, unchanged,
+                (System.nanoTime() - start) / 1_000_000);
+        logger.info("Reconciled {} Master Service sites with {} Starfish sites: {} create, {} update, {} delete, "
+                        + "{} unchanged in {} ms", summary.masterSites(), summary.starfishSites(), created, updated,
+                deleted, unchanged, summary.durationMs());
+        return summary;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the value's string form; numbers and their string form hash alike.
+     */
+    static long hash(Object value) {
+        if (value == null) {
+            return 0L;
+        }
+        String text = value.toString();
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long combine(long[] hashes) {
+        long combined = 1L;
+        for (long hash : hashes) {
+            combined = 31 * combined + hash;
+        }
+        return combined;
+    }
+
+    private static String key(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String key = value.toString().trim();
+        return key.isEmpty() ? null : key;
+    }
+
+    private static int capacity(int entries) {
+        return (int) (entries / 0.75f) + 1;
+    }
+
+    private static String[] parseFields(String fields) {
+        String[] parsed = Arrays.stream(fields.split(",")).map(String::trim).filter(field -> !field.isEmpty())
+                .toArray(String[]::new);
+        for (String field : parsed) {
+            if (!FIELDS.containsKey(field)) {
+                throw new IllegalArgumentException("Unknown field in site.reconcile.fields: " + field + ", known: " + FIELDS.keySet());
+            }
+        }
+        return parsed;
+    }
+
+    private static Map<String, Function<SiteDto, Object>> fields() {
+        Map<String, Function<SiteDto, Object>> fields = new LinkedHashMap<>();
+        fields.put("name", SiteDto::getName);
+        fields.put("nameEnglish", SiteDto::getNameEnglish);
+        fields.put("nameGerman", SiteDto::getNameGerman);
+        fields.put("locationCode", SiteDto::getLocationCode);
+        fields.put("city", SiteDto::getCity);
+        fields.put("street", SiteDto::getStreet);
+        fields.put("active", SiteDto::getActive);
+        fields.put("clusterName", SiteDto::getClusterName);
+        fields.put("clusterId", SiteDto::getClusterId);
+        fields.put("sipDomain", SiteDto::getSipDomain);
+        fields.put("routingPolicy", SiteDto::getRoutingPolicy);
+        fields.put("cmName", SiteDto::getCmName);
+        fields.put("ars", SiteDto::getArs);
+        fields.put("location", SiteDto::getLocation);
+        return Map.copyOf(fields);
+    }
+
+    /**
+     * Starfish site reduced to its id and field hashes.
+     */
+    private static final class StarfishSite {
+
+        private final String id;
+        private final long[] fieldHashes;
+        private final long combinedHash;
+        private boolean matched;
+
+        StarfishSite(String id, long[] fieldHashes, long combinedHash) {
+            this.id = id;
+            this.fieldHashes = fieldHashes;
+            this.combinedHash = combinedHash;
+        }
+    }
+
+    public enum Action {
+        CREATE, UPDATE, DELETE, UNCHANGED
+    }
+
+    /**
+     * One reconciliation result. {@code masterId} is null for deletes, {@code starfishId}
+     * for creates; {@code matchedBy} tells whether the pair was joined on id or the fallback key.
+     */
+    public record SiteDiff(Action action, String masterId, String starfishId, String matchedBy,
+                           List<String> changedFields) {
+    }
+
+    public record Summary(int masterSites, int starfishSites, int create, int update, int delete, int unchanged,
+                          long durationMs) {
+    }
+
+    public record Inputs(List<SiteDto> masterSites, List<Map<String, Object>> starfishSites) {
+    }
+}
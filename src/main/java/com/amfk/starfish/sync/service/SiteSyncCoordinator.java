@@ -0,0 +1,134 @@
+package com.amfk.starfish.sync.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Single-flight entry point for site sync runs.
+ *
+ * Every trigger (cron schedule, manual request...) goes through this service. If a sync
+ * is already running, the trigger joins it and receives the same job instead of
+ * starting a second run against MySQL and the Master Service. The most recent jobs are
+ * kept so their progress and outcome can be queried.
+ */
+@Service
+public class SiteSyncCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteSyncCoordinator.class);
+
+    private final SiteSyncService siteSyncService;
+    private final TaskExecutor siteSyncExecutor;
+    private final AtomicReference<SyncJob> currentJob = new AtomicReference<>();
+    private final Map<String, SyncJob> recentJobs = new LinkedHashMap<>();
+
+    @Value("${site.sync.jobs.history.size:20}")
+    private int historySize;
+
+    public SiteSyncCoordinator(SiteSyncService siteSyncService,
+                               @Qualifier("siteSyncExecutor") TaskExecutor siteSyncExecutor) {
+        this.siteSyncService = siteSyncService;
+        this.siteSyncExecutor = siteSyncExecutor;
+    }
+
+    /**
+     * Outcome of a trigger: the job that serves it and whether it joined a run already in progress.
+     */
+    public record TriggerResult(SyncJob job, boolean joined) {
+    }
+
+    /**
+     * Starts a sync run, or joins the one already in progress.
+     *
+     * @param trigger short description of who requested the run, used for logging
+     * @return the (possibly shared) job serving this trigger
+     */
+    public TriggerResult triggerSync(String trigger) {
+        while (true) {
+            SyncJob running = currentJob.get();
+            if (running != null) {
+                logger.info("Site sync {} already in progress, {} trigger joins the running sync", running.getId(), trigger);
+                return new TriggerResult(running, true);
+            }
+            SyncJob job = new SyncJob(trigger);
+            if (currentJob.compareAndSet(null, job)) {
+                logger.info("Starting site sync run {} ({} trigger)", job.getId(), trigger);
+                remember(job);
+                start(job);
+                return new TriggerResult(job, false);
+            }
+        }
+    }
+
+    public boolean isSyncInProgress() {
+        return currentJob.get() != null;
+    }
+
+    public SyncJob getCurrentJob() {
+        return currentJob.get();
+    }
+
+    public SyncJob getJob(String jobId) {
+        synchronized (recentJobs) {
+            return recentJobs.get(jobId);
+        }
+    }
+
+    /**
+     * Most recent jobs, newest first.
+     */
+    public List<SyncJob> getRecentJobs() {
+        synchronized (recentJobs) {
+            List<SyncJob> jobs = new ArrayList<>(recentJobs.values());
+            Collections.reverse(jobs);
+            return jobs;
+        }
+    }
+
+    private void remember(SyncJob job) {
+        synchronized (recentJobs) {
+            recentJobs.put(job.getId(), job);
+            Iterator<SyncJob> oldest = recentJobs.values().iterator();
+            while (recentJobs.size() > historySize && oldest.hasNext()) {
+                oldest.next();
+                oldest.remove();
+            }
+        }
+    }
+
+    private void start(SyncJob job) {
+        try {
+            siteSyncExecutor.execute(() -> {
+                String result = null;
+                Throwable failure = null;
+                try {
+                    result = siteSyncService.syncSites(job);
+                } catch (Throwable t) {
+                    failure = t;
+                } finally {
+                    // Release the slot before completing so a trigger arriving now starts a fresh run
+                    currentJob.compareAndSet(job, null);
+                }
+                if (failure != null) {
+                    job.fail(failure);
+                } else {
+                    job.complete(result);
+                }
+            });
+        } catch (RuntimeException e) {
+            currentJob.compareAndSet(job, null);
+            job.fail(e);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.config.VirtualThreads;
+import com.amfk.starfish.sync.dto.RangeRow;
+import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.util.Deadline;
+import com.amfk.starfish.sync.util.StringPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Staged, backpressured execution of a site sync run:
+ *
+ * <pre>
+ * fetch (streaming HTTP) -> parse (map to SiteDto, validate) -> enrich (Mock API query) -> sink
+ * </pre>
+ *
+ * Stages are connected by bounded queues and each stage runs on its own threads. When a
+ * downstream stage is slow (typically the database), its input queue fills up, the
+ * upstream stage blocks on it, and eventually the HTTP read itself pauses. At most
+ * {@code queue.capacity} items per queue plus one per worker are in memory at any time,
+ * regardless of how many sites the Master Service returns.
+ *
+ * A failed fetch ends the stream and the other stages still process what was received.
+ * If any other stage fails (including with an {@link Error}), its input queue has no
+ * consumer anymore, so the run is aborted: every stage is cancelled, the queues are
+ * cleared and the failure is rethrown.
+ */
+@Service
+public class SiteSyncPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteSyncPipeline.class);
+
+    private static final Map<String, Object> END_OF_RAW = new HashMap<>();
+    private static final SiteDto END_OF_SITES = new SiteDto();
+    private static final EnrichedSite END_OF_ENRICHED = new EnrichedSite(null, List.of());
+
+    private final MultiSourceSiteFetcher siteFetcher;
+    private final SiteDtoMapper siteDtoMapper;
+    private final MockApiService mockApiService;
+    private final SiteValidator siteValidator;
+    private final SiteFreshnessTracker siteFreshness;
+    private final List<SiteSyncSink> sinks;
+    private final boolean virtualThreads;
+
+    @Value("${site.sync.pipeline.enabled:false}")
+    private boolean enabled;
+
+    @Value("${site.sync.pipeline.queue.capacity:256}")
+    private int queueCapacity;
+
+    @Value("${site.sync.pipeline.parse.threads:1}")
+    private int parseThreads;
+
+    @Value("${site.sync.pipeline.enrich.threads:4}")
+    private int enrichThreads;
+
+    @Value("${site.sync.pipeline.sink.threads:1}")
+    private int sinkThreads;
+
+    @Value("${master.service.string.pool.max.entries:50000}")
+    private int stringPoolMaxEntries;
+
+    public SiteSyncPipeline(MultiSourceSiteFetcher siteFetcher, SiteDtoMapper siteDtoMapper,
+                            MockApiService mockApiService, SiteValidator siteValidator,
+                            SiteFreshnessTracker siteFreshness, List<SiteSyncSink> sinks, Environment environment) {
+        this.siteFetcher = siteFetcher;
+        this.siteDtoMapper = siteDtoMapper;
+        this.mockApiService = mockApiService;
+        this.siteValidator = siteValidator;
+        this.siteFreshness = siteFreshness;
+        this.sinks = sinks;
+        this.virtualThreads = VirtualThreads.isActive(environment);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private record EnrichedSite(SiteDto site, List<RangeRow> siteDetails) {
+    }
+
+    /**
+     * Runs the pipeline to completion, recording per-site outcomes on the job. Under a run
+     * {@link Deadline}, fetching stops once it has passed and sites still queued are
+     * drained without being processed.
+     *
+     * @return number of sites received from the Master Service
+     */
+    public int run(SyncJob job) throws InterruptedException {
+        BlockingQueue<Map<String, Object>> rawSites = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<SiteDto> sites = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<EnrichedSite> enrichedSites = new ArrayBlockingQueue<>(queueCapacity);
+        StringPool stringPool = new StringPool(stringPoolMaxEntries);
+        SiteValidator.Run validation = siteValidator.start();
+        Deadline deadline = Deadline.current();
+        SiteSyncStats stats = job.getStats();
+        AtomicInteger fetched = new AtomicInteger();
+        Set<Integer> listedIds = ConcurrentHashMap.newKeySet();
+        AtomicBoolean allSources = new AtomicBoolean();
+
+        // Stage thread counts bound the concurrency even when the threads are virtual
+        ExecutorService pool = Executors.newFixedThreadPool(1 + parseThreads + enrichThreads + sinkThreads,
+                VirtualThreads.threadFactory("site-sync-pipeline-", virtualThreads));
+        CompletionService<Object> completion = new ExecutorCompletionService<>(pool);
+        List<Future<Object>> stages = new ArrayList<>();
+        job.processingSites(0);
+
+        try {
+            // Fetch: stream raw site objects from the Master Service sources
+            Future<Object> fetchStage = completion.submit(Deadline.propagate(() -> {
+                try {
+                    MultiSourceSiteFetcher.Fetched<Integer> streamed = siteFetcher.streamSites(site -> {
+                        if (deadline != null) {
+                            // Stops the stream: no new sites once the run is out of time
+                            deadline.check();
+                        }
+                        try {
+                            rawSites.put(site);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IllegalStateException("Site sync pipeline interrupted", e);
+                        }
+                        job.siteCountKnown(fetched.incrementAndGet());
+                    });
+                    allSources.set(streamed.allSources());
+                } finally {
+                    for (int i = 0; i < parseThreads; i++) {
+                        putEndMarker(rawSites, END_OF_RAW);
+                    }
+                }
+                return null;
+            }));
+            stages.add(fetchStage);
+
+            // Parse: convert raw maps into SiteDto objects and drop those failing validation
+            AtomicInteger activeParsers = new AtomicInteger(parseThreads);
+            for (int i = 0; i < parseThreads; i++) {
+                stages.add(completion.submit(Deadline.propagate(() -> {
+                    try {
+                        Map<String, Object> raw;
+                        while ((raw = rawSites.take()) != END_OF_RAW) {
+                            try {
+                                SiteDto site = siteDtoMapper.toSiteDto(raw, stringPool);
+                                if (validation.accept(site)) {
+                                    if (site.getId() != null) {
+                                        listedIds.add(site.getId());
+                                    }
+                                    sites.put(site);
+                                } else {
+                                    stats.recordRejected();
+                                }
+                            } catch (RuntimeException e) {
+                                logger.error("Failed to convert site {}: {}", raw.get("id"), e.getMessage());
+                                stats.recordFailure();
+                            }
+                        }
+                    } finally {
+                        signalEnd(activeParsers, sites, END_OF_SITES, enrichThreads);
+                    }
+                    return null;
+                })));
+            }
+
+            // Enrich: query site details for the site's cluster
+            AtomicInteger activeEnrichers = new AtomicInteger(enrichThreads);
+            for (int i = 0; i < enrichThreads; i++) {
+                stages.add(completion.submit(Deadline.propagate(() -> {
+                    try {
+                        SiteDto site;
+                        while ((site = sites.take()) != END_OF_SITES) {
+                            if (deadline != null && deadline.isExpired()) {
+                                // Drain what was already fetched without querying for it
+                                continue;
+                            }
+                            try {
+                                String clusterName = site.getClusterName() != null ? site.getClusterName() : "Unknown";
+                                List<RangeRow> ranges = mockApiService.getSiteDetails(clusterName);
+                                siteFreshness.recordRefresh(site, ranges != null && !ranges.isEmpty());
+                                enrichedSites.put(new EnrichedSite(site, ranges));
+                            } catch (RuntimeException e) {
+                                logger.error("Error processing site: {}", e.getMessage(), e);
+                                stats.recordFailure();
+                            }
+                        }
+                    } finally {
+                        signalEnd(activeEnrichers, enrichedSites, END_OF_ENRICHED, sinkThreads);
+                    }
+                    return null;
+                })));
+            }
+
+            // Sink: hand every enriched site to the configured sinks
+            for (int i = 0; i < sinkThreads; i++) {
+                stages.add(completion.submit(Deadline.propagate(() -> {
+                    EnrichedSite enriched;
+                    while ((enriched = enrichedSites.take()) != END_OF_ENRICHED) {
+                        if (deadline != null && deadline.isExpired()) {
+                            continue;
+                        }
+                        try {
+                            for (SiteSyncSink sink : sinks) {
+                                sink.accept(enriched.site(), enriched.siteDetails());
+                            }
+                            if (enriched.siteDetails().isEmpty()) {
+                                stats.recordFailure();
+                            } else {
+                                stats.recordSuccess();
+                            }
+                        } catch (RuntimeException e) {
+                            logger.error("Sink failed for site {}: {}", enriched.site().getSiteId(), e.getMessage(), e);
+                            stats.recordFailure();
+                        }
+                    }
+                    return null;
+                })));
+            }
+
+            Throwable failure = awaitStages(completion, stages, fetchStage, rawSites, sites, enrichedSites);
+            if (siteValidator.isEnabled()) {
+                validation.finish();
+            }
+            boolean complete = failure == null && (deadline == null || !deadline.isExpired());
+            if (complete && allSources.get()) {
+                // Only a complete run over every source has seen every listed site
+                siteFreshness.retainIds(listedIds);
+            }
+            for (SiteSyncSink sink : sinks) {
+                try {
+                    sink.finish(complete);
+                } catch (RuntimeException e) {
+                    logger.error("Sink {} failed to finish: {}", sink.getClass().getSimpleName(), e.getMessage(), e);
+                }
+            }
+            if (failure != null) {
+                logger.error("Pipeline stopped after {} sites: {}", fetched.get(), failure.getMessage());
+                throw failure instanceof RuntimeException runtime ? runtime : new IllegalStateException(failure);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        logger.info("Pipeline finished: {} sites fetched, {} (string pool: {} values)", fetched.get(), stats, stringPool.size());
+        return fetched.get();
+    }
+
+    /**
+     * Waits for every stage in the order they finish and returns the first failure. A failed
+     * fetch lets downstream stages drain what was received; any other failure aborts the run.
+     */
+    private static Throwable awaitStages(CompletionService<Object> completion, List<Future<Object>> stages,
+                                         Future<Object> fetchStage, BlockingQueue<?>... queues)
+            throws InterruptedException {
+        Throwable failure = null;
+        boolean aborted = false;
+        for (int i = 0; i < stages.size(); i++) {
+            Future<Object> stage = completion.take();
+            try {
+                stage.get();
+            } catch (CancellationException e) {
+                // Cancelled by the abort below
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+                if (stage != fetchStage && !aborted) {
+                    aborted = true;
+                    logger.error("Pipeline stage failed, aborting the run: {}", e.getCause().toString());
+                    // Interrupts workers blocked on a queue, then frees what the queues still hold
+                    for (Future<Object> other : stages) {
+                        other.cancel(true);
+                    }
+                    for (BlockingQueue<?> queue : queues) {
+                        queue.clear();
+                    }
+                }
+            }
+        }
+        return failure;
+    }
+
+    /**
+     * Called by each worker of a stage when it exits; the last one tells every downstream worker to stop.
+     */
+    private static <T> void signalEnd(AtomicInteger activeWorkers, BlockingQueue<T> downstream, T endMarker, int downstreamWorkers) {
+        if (activeWorkers.decrementAndGet() == 0) {
+            for (int i = 0; i < downstreamWorkers; i++) {
+                putEndMarker(downstream, endMarker);
+            }
+        }
+    }
+
+    /**
+     * Enqueues an end marker. If the pipeline is being shut down, the marker is only
+     * offered so a worker never blocks on a queue nobody drains anymore.
+     */
+    private static <T> void putEndMarker(BlockingQueue<T> queue, T endMarker) {
+        try {
+            queue.put(endMarker);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queue.offer(endMarker);
+        }
+    }
+}
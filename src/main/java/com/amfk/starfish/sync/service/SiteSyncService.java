@@ -1,15 +1,17 @@
 package com.amfk.starfish.sync.service;
 
+import com.amfk.starfish.sync.dto.RangeRow;
 import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.util.Deadline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.Map;
 
 @Service
 public class SiteSyncService {
@@ -17,87 +19,253 @@ public class SiteSyncService {
     private static final Logger logger = LoggerFactory.getLogger(SiteSyncService.class);
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     
-    private final MasterServiceClient masterServiceClient;
+    private final MultiSourceSiteFetcher siteFetcher;
     private final MockApiService mockApiService;
+    private final ShardedSiteSync shardedSiteSync;
+    private final SiteSyncPipeline siteSyncPipeline;
+    private final SiteRangeView siteRangeView;
+    private final SiteValidator siteValidator;
+    private final TrickleSiteSync trickleSiteSync;
+    private final SiteFreshnessTracker siteFreshness;
+    // Same sinks as the pipeline: rate-limited logging and, if enabled, the Starfish push
+    private final List<SiteSyncSink> sinks;
+    // Time budget of a whole run, applied to every HTTP call, statement and retry (0 = none)
+    private final long runDeadlineMs;
     
     @Autowired
-    public SiteSyncService(MasterServiceClient masterServiceClient,
-                          MockApiService mockApiService) {
-        this.masterServiceClient = masterServiceClient;
+    public SiteSyncService(MultiSourceSiteFetcher siteFetcher,
+                          MockApiService mockApiService,
+                          ShardedSiteSync shardedSiteSync,
+                          SiteSyncPipeline siteSyncPipeline,
+                          SiteRangeView siteRangeView,
+                          SiteValidator siteValidator,
+                          TrickleSiteSync trickleSiteSync,
+                          SiteFreshnessTracker siteFreshness,
+                          List<SiteSyncSink> sinks,
+                          @Value("${site.sync.deadline.ms:3600000}") long runDeadlineMs) {
+        this.siteFetcher = siteFetcher;
         this.mockApiService = mockApiService;
+        this.shardedSiteSync = shardedSiteSync;
+        this.siteSyncPipeline = siteSyncPipeline;
+        this.siteRangeView = siteRangeView;
+        this.siteValidator = siteValidator;
+        this.trickleSiteSync = trickleSiteSync;
+        this.siteFreshness = siteFreshness;
+        this.sinks = sinks;
+        this.runDeadlineMs = runDeadlineMs;
     }
     
     public String syncSites() {
+        return syncSites(new SyncJob("direct"));
+    }
+    
+    /**
+     * Runs the site sync and reports phase and per-site progress on the given job.
+     *
+     * The run has {@code site.sync.deadline.ms} in total: HTTP calls and statements get at
+     * most the remaining budget, retries stop when it cannot fit another attempt, and once
+     * it is used up the run stops and returns a summary of what it got done.
+     */
+    public String syncSites(SyncJob job) {
+        if (runDeadlineMs <= 0) {
+            return runSync(job, null);
+        }
+        Deadline deadline = Deadline.after(runDeadlineMs);
+        try (Deadline.Scope scope = deadline.enter()) {
+            return runSync(job, deadline);
+        }
+    }
+    
+    private String runSync(SyncJob job, Deadline deadline) {
         logger.info("Starting site sync job");
+        refreshSiteRangeView();
         
+        if (siteSyncPipeline.isEnabled() && !shardedSiteSync.isEnabled() && !trickleSiteSync.isEnabled()) {
+            return syncSitesWithPipeline(job, deadline);
+        }
+        
+        int total = 0;
+        boolean complete = false;
         try {
             // Step 1: Fetch sites from Master Service API
             logger.info("Step 1: Fetching sites from Master Service API");
-            List<SiteDto> sites = masterServiceClient.getSites();
+            job.fetchingSites();
+            MultiSourceSiteFetcher.Fetched<List<SiteDto>> fetched = siteFetcher.fetchSites();
+            List<SiteDto> sites = fetched.sites();
             
             if (sites == null || sites.isEmpty()) {
                 logger.warn("No sites found in Master Service API");
+                complete = true;
                 return "Site sync completed - no sites found";
             }
             
             logger.info("Retrieved {} sites from Master Service API", sites.size());
+            total = sites.size();
+            
+            // Drop invalid and inactive sites before any database work
+            SiteSyncStats stats = job.getStats();
+            List<SiteDto> validSites = siteValidator.filter(sites);
+            for (int i = validSites.size(); i < sites.size(); i++) {
+                stats.recordRejected();
+            }
+            sites = validSites;
+            if (fetched.allSources()) {
+                // Sites no longer listed are not refreshed again, so stop tracking them. A missing
+                // source would make its sites look delisted, so they are kept until it is back
+                siteFreshness.retain(sites);
+            }
             
             // Check what clusters are available in the database
             mockApiService.checkAvailableClusters();
             
             // Step 2: For each site, call Mock API using cluster name
             logger.info("Step 2: Calling Mock API for each site");
-            int processedCount = 0;
-            int successCount = 0;
-            int failureCount = 0;
+            job.processingSites(sites.size());
             
-            for (SiteDto site : sites) {
-                try {
-                    String siteName = site.getSiteName() != null ? site.getSiteName() : "Unknown";
-                    String siteId = site.getSiteId() != null ? site.getSiteId() : "Unknown";
-                    String clusterName = site.getClusterName() != null ? site.getClusterName() : "Unknown";
-                    
-                    logger.info("Processing site: {} ({}) with cluster: {}", siteName, siteId, clusterName);
-                    
-                    // Call Mock API for site details using cluster name
-                    List<Map<String, Object>> mockResponse = mockApiService.getSiteDetails(clusterName);
-                    
-                    if (mockResponse != null && !mockResponse.isEmpty()) {
-                        logger.info("Successfully retrieved Mock API data for site: {} - Response: {}", 
-                            siteName, mockResponse);
-                        successCount++;
+            if (shardedSiteSync.isEnabled()) {
+                logger.info("Cluster mode enabled, processing shards as node {}", shardedSiteSync.getNodeId());
+                shardedSiteSync.run(sites, this::processSite, stats);
+            } else if (trickleSiteSync.isEnabled()) {
+                // Spread over the trickle window on its own low-priority thread, stalest sites first
+                trickleSiteSync.run(sites, this::processSite, stats);
+            } else {
+                for (SiteDto site : sites) {
+                    if (deadline != null && deadline.isExpired()) {
+                        break;
+                    }
+                    try {
+                        if (processSite(site)) {
+                            stats.recordSuccess();
+                        } else {
+                            stats.recordFailure();
+                        }
                         
-                        // Log the mock response data
-                        logger.debug("Mock API data for site {}: {}", siteName, mockResponse);
+                        // Add small delay to avoid overwhelming the database
+                        Thread.sleep(100);
                         
-                    } else {
-                        logger.warn("No Mock API data found for site: {} ({})", siteName, siteId);
-                        failureCount++;
+                    } catch (Exception e) {
+                        logger.error("Error processing site: {}", e.getMessage(), e);
+                        stats.recordFailure();
                     }
-                    
-                    processedCount++;
-                    
-                    // Add small delay to avoid overwhelming the database
-                    Thread.sleep(100);
-                    
-                } catch (Exception e) {
-                    logger.error("Error processing site: {}", e.getMessage(), e);
-                    failureCount++;
-                    processedCount++;
                 }
             }
             
-            logger.info("Processed {} sites from Master Service API with Mock API calls", processedCount);
+            if (deadline != null && deadline.isExpired()) {
+                return partialResult(job, deadline, total);
+            }
+            complete = true;
+            logger.info("Processed {} sites from Master Service API with Mock API calls", stats.getProcessed());
             
-            String result = String.format("Site sync completed successfully. Processed: %d, Success: %d, Failed: %d (Mock API calls)", 
-                processedCount, successCount, failureCount);
+            String result = String.format("Site sync completed successfully. %s (Mock API calls)", stats);
             
             logger.info(result);
             return result;
             
         } catch (Exception e) {
+            if (deadline != null && deadline.isExpired()) {
+                logger.warn("Site sync stopped by its deadline: {}", e.getMessage());
+                return partialResult(job, deadline, total);
+            }
             logger.error("Site sync job failed: {}", e.getMessage(), e);
             throw new RuntimeException("Site sync job failed", e);
+        } finally {
+            finishSinks(complete);
+        }
+    }
+    
+    /**
+     * Streams sites through the staged pipeline instead of loading the full list first.
+     */
+    private String syncSitesWithPipeline(SyncJob job, Deadline deadline) {
+        try {
+            // Check what clusters are available in the database
+            mockApiService.checkAvailableClusters();
+            
+            logger.info("Fetching and processing sites through the staged pipeline");
+            job.fetchingSites();
+            int fetched = siteSyncPipeline.run(job);
+            if (deadline != null && deadline.isExpired()) {
+                return partialResult(job, deadline, fetched);
+            }
+            
+            if (fetched == 0) {
+                logger.warn("No sites found in Master Service API");
+                return "Site sync completed - no sites found";
+            }
+            
+            String result = String.format("Site sync completed successfully. %s (Mock API calls)", job.getStats());
+            logger.info(result);
+            return result;
+            
+        } catch (Exception e) {
+            if (deadline != null && deadline.isExpired()) {
+                logger.warn("Site sync stopped by its deadline: {}", e.getMessage());
+                return partialResult(job, deadline, job.getStats().getProcessed() + job.getStats().getRejected());
+            }
+            logger.error("Site sync job failed: {}", e.getMessage(), e);
+            throw new RuntimeException("Site sync job failed", e);
+        }
+    }
+    
+    /**
+     * Summary of a run cut short by its deadline: what was done and how many of the sites
+     * known so far were left unprocessed.
+     */
+    private String partialResult(SyncJob job, Deadline deadline, int knownSites) {
+        job.deadlineExceeded();
+        SiteSyncStats stats = job.getStats();
+        int notProcessed = Math.max(0, knownSites - stats.getProcessed() - stats.getRejected());
+        String result = String.format("Site sync stopped at its %d ms deadline. %s, Not processed: %d (Mock API calls)",
+                deadline.getBudgetMs(), stats, notProcessed);
+        logger.warn(result);
+        return result;
+    }
+    
+    /**
+     * Calls the Mock API for a single site using its cluster name and hands the result to the sinks.
+     *
+     * @return true if site details were found
+     */
+    boolean processSite(SiteDto site) {
+        String clusterName = site.getClusterName() != null ? site.getClusterName() : "Unknown";
+        
+        // Call Mock API for site details using cluster name
+        List<RangeRow> siteDetails = mockApiService.getSiteDetails(clusterName);
+        if (siteDetails == null) {
+            siteDetails = List.of();
+        }
+        siteFreshness.recordRefresh(site, !siteDetails.isEmpty());
+        for (SiteSyncSink sink : sinks) {
+            sink.accept(site, siteDetails);
+        }
+        return !siteDetails.isEmpty();
+    }
+    
+    /**
+     * Rewrites the clusters of the site range view whose source rows changed. A failure
+     * leaves the previous view in place and does not stop the sync.
+     */
+    private void refreshSiteRangeView() {
+        if (!siteRangeView.isEnabled()) {
+            return;
+        }
+        try {
+            siteRangeView.refresh();
+        } catch (Exception e) {
+            logger.warn("Site range view refresh failed, lookups keep the previous view: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Ends the run for every sink; {@code complete} is false after a failure or the deadline.
+     */
+    private void finishSinks(boolean complete) {
+        for (SiteSyncSink sink : sinks) {
+            try {
+                sink.finish(complete);
+            } catch (RuntimeException e) {
+                logger.error("Sink {} failed to finish: {}", sink.getClass().getSimpleName(), e.getMessage(), e);
+            }
         }
     }
     
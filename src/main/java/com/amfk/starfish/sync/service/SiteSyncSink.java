@@ -0,0 +1,25 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.RangeRow;
+import com.amfk.starfish.sync.dto.SiteDto;
+
+import java.util.List;
+
+/**
+ * Final stage of a site sync: receives every site together with the site details
+ * found for its cluster. Every sync mode feeds the same sinks; implementations are
+ * called concurrently from the sink threads of the pipeline, or from the threads
+ * processing sites in the sequential, sharded and trickle modes, and must be thread-safe.
+ */
+public interface SiteSyncSink {
+
+    void accept(SiteDto site, List<RangeRow> siteDetails);
+
+    /**
+     * Called once per run after the last site was accepted, also when the run failed or
+     * ran out of time. {@code complete} is false in that case, so buffering sinks do not
+     * report a partial run as a full one.
+     */
+    default void finish(boolean complete) {
+    }
+}
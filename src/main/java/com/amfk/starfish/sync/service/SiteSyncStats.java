@@ -0,0 +1,65 @@
+package com.amfk.starfish.sync.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe counters for a single site sync run.
+ */
+public class SiteSyncStats {
+
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger success = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger rejected = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+
+    public void recordSuccess() {
+        success.incrementAndGet();
+        processed.incrementAndGet();
+    }
+
+    public void recordFailure() {
+        failed.incrementAndGet();
+        processed.incrementAndGet();
+    }
+
+    /**
+     * A site that failed validation and was not processed.
+     */
+    public void recordRejected() {
+        rejected.incrementAndGet();
+    }
+
+    /**
+     * Sites left for the next run because this one reached its deadline first.
+     */
+    public void recordSkipped(int count) {
+        skipped.addAndGet(count);
+    }
+
+    public int getProcessed() {
+        return processed.get();
+    }
+
+    public int getSuccess() {
+        return success.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    public int getRejected() {
+        return rejected.get();
+    }
+
+    public int getSkipped() {
+        return skipped.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Processed: %d, Success: %d, Failed: %d, Rejected: %d, Skipped: %d", getProcessed(),
+                getSuccess(), getFailed(), getRejected(), getSkipped());
+    }
+}
@@ -0,0 +1,299 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.SiteDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Checks parsed sites before any database work and filters out those that fail.
+ *
+ * The rules are a fixed array built once from the configuration; checking a site is a
+ * plain loop over it, with no reflection and no allocation for a site that passes. A
+ * site without id or cluster name, or whose id was already seen in the run, is
+ * quarantined: it is skipped and kept (up to {@code site.validation.quarantine.max}) in
+ * the run's {@link Report}. Inactive sites are dropped unless
+ * {@code site.validation.skip.inactive} is false. Every rejection increments
+ * {@code site.validation.rejected{rule,action}}.
+ */
+@Component
+public class SiteValidator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteValidator.class);
+
+    public enum Action { DROP, QUARANTINE }
+
+    /**
+     * Validation rules in the order they are checked; a site is rejected by the first that fails.
+     */
+    public enum Rule {
+        MISSING_ID("missing-id", Action.QUARANTINE) {
+            @Override
+            boolean violatedBy(SiteDto site, Run run) {
+                return site.getId() == null;
+            }
+        },
+        MISSING_CLUSTER_NAME("missing-cluster-name", Action.QUARANTINE) {
+            @Override
+            boolean violatedBy(SiteDto site, Run run) {
+                return site.getClusterName() == null || site.getClusterName().isBlank();
+            }
+        },
+        DUPLICATE_ID("duplicate-id", Action.QUARANTINE) {
+            @Override
+            boolean violatedBy(SiteDto site, Run run) {
+                return !run.seenIds.add(site.getId());
+            }
+        },
+        INACTIVE("inactive", Action.DROP) {
+            @Override
+            boolean violatedBy(SiteDto site, Run run) {
+                return site.getActive() != null && site.getActive() == 0;
+            }
+        };
+
+        private final String key;
+        private final Action action;
+
+        Rule(String key, Action action) {
+            this.key = key;
+            this.action = action;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Action getAction() {
+            return action;
+        }
+
+        abstract boolean violatedBy(SiteDto site, Run run);
+    }
+
+    private final boolean enabled;
+    private final int quarantineMax;
+    private final Rule[] rules;
+    private final Counter[] rejectedCounters;
+    private volatile Report lastReport;
+
+    public SiteValidator(@Value("${site.validation.enabled:true}") boolean enabled,
+                         @Value("${site.validation.skip.inactive:true}") boolean skipInactive,
+                         @Value("${site.validation.quarantine.max:100}") int quarantineMax,
+                         MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.quarantineMax = quarantineMax;
+        this.rules = Arrays.stream(Rule.values())
+                .filter(rule -> skipInactive || rule != Rule.INACTIVE)
+                .toArray(Rule[]::new);
+        this.rejectedCounters = new Counter[Rule.values().length];
+        for (Rule rule : Rule.values()) {
+            rejectedCounters[rule.ordinal()] = Counter.builder("site.validation.rejected")
+                    .tag("rule", rule.getKey())
+                    .tag("action", rule.getAction().name().toLowerCase())
+                    .description("Sites rejected by validation before processing")
+                    .register(meterRegistry);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts validating the sites of one sync run.
+     */
+    public Run start() {
+        return new Run();
+    }
+
+    /**
+     * Validates a complete list and returns the sites that passed, in their original order.
+     */
+    public List<SiteDto> filter(List<SiteDto> sites) {
+        if (!enabled) {
+            return sites;
+        }
+        Run run = start();
+        List<SiteDto> accepted = new ArrayList<>(sites.size());
+        for (SiteDto site : sites) {
+            if (run.accept(site)) {
+                accepted.add(site);
+            }
+        }
+        run.finish();
+        return accepted;
+    }
+
+    /**
+     * Report of the last finished run, or null if no run has been validated yet.
+     */
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * Validation state of one run. {@link #accept} may be called from several threads.
+     */
+    public final class Run {
+
+        private final IdSet seenIds = new IdSet();
+        private final AtomicInteger validated = new AtomicInteger();
+        private final AtomicIntegerArray violations = new AtomicIntegerArray(Rule.values().length);
+        private final List<QuarantinedSite> quarantined = new ArrayList<>();
+
+        private Run() {
+        }
+
+        /**
+         * True if the site passed every rule; otherwise the violation is recorded.
+         */
+        public boolean accept(SiteDto site) {
+            validated.incrementAndGet();
+            if (!enabled) {
+                return true;
+            }
+            for (Rule rule : rules) {
+                if (rule.violatedBy(site, this)) {
+                    reject(site, rule);
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void reject(SiteDto site, Rule rule) {
+            violations.incrementAndGet(rule.ordinal());
+            rejectedCounters[rule.ordinal()].increment();
+            if (rule.getAction() == Action.QUARANTINE) {
+                synchronized (quarantined) {
+                    if (quarantined.size() < quarantineMax) {
+                        quarantined.add(new QuarantinedSite(site.getId(), site.getName(), site.getClusterName(),
+                                site.getSource(), rule.getKey()));
+                    }
+                }
+            }
+        }
+
+        public int getRejected() {
+            int rejected = 0;
+            for (int i = 0; i < violations.length(); i++) {
+                rejected += violations.get(i);
+            }
+            return rejected;
+        }
+
+        /**
+         * Builds the report of the run, publishes it as the last report and logs a summary.
+         */
+        public Report finish() {
+            Map<String, Integer> byRule = new LinkedHashMap<>();
+            for (Rule rule : Rule.values()) {
+                int count = violations.get(rule.ordinal());
+                if (count > 0) {
+                    byRule.put(rule.getKey(), count);
+                }
+            }
+            List<QuarantinedSite> sample;
+            synchronized (quarantined) {
+                sample = List.copyOf(quarantined);
+            }
+            int rejected = getRejected();
+            Report report = new Report(Instant.now(), validated.get(), validated.get() - rejected, byRule, sample);
+            lastReport = report;
+            if (rejected > 0) {
+                logger.warn("Site validation: {}", report.summary());
+            } else {
+                logger.info("Site validation: {}", report.summary());
+            }
+            return report;
+        }
+    }
+
+    /**
+     * Result of validating one run; {@code quarantined} holds at most {@code site.validation.quarantine.max} sites.
+     */
+    public record Report(Instant finishedAt, int validated, int accepted, Map<String, Integer> violations,
+                         List<QuarantinedSite> quarantined) {
+
+        public String summary() {
+            return String.format("%d of %d sites accepted, rejected %s", accepted, validated,
+                    violations.isEmpty() ? "none" : violations);
+        }
+    }
+
+    public record QuarantinedSite(Integer id, String name, String clusterName, String source, String rule) {
+    }
+
+    /**
+     * Thread-safe open-addressing set of site ids that stores them unboxed.
+     */
+    private static final class IdSet {
+
+        private static final int EMPTY = Integer.MIN_VALUE;
+
+        private int[] slots = newSlots(1024);
+        private int size;
+        private boolean containsEmpty;
+
+        synchronized boolean add(int id) {
+            if (id == EMPTY) {
+                boolean added = !containsEmpty;
+                containsEmpty = true;
+                return added;
+            }
+            if (size * 2 >= slots.length) {
+                grow();
+            }
+            int mask = slots.length - 1;
+            int i = slot(id, mask);
+            while (slots[i] != EMPTY) {
+                if (slots[i] == id) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            slots[i] = id;
+            size++;
+            return true;
+        }
+
+        private void grow() {
+            int[] old = slots;
+            slots = newSlots(old.length * 2);
+            int mask = slots.length - 1;
+            for (int id : old) {
+                if (id != EMPTY) {
+                    int i = slot(id, mask);
+                    while (slots[i] != EMPTY) {
+                        i = (i + 1) & mask;
+                    }
+                    slots[i] = id;
+                }
+            }
+        }
+
+        private static int slot(int id, int mask) {
+            int hash = id * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        private static int[] newSlots(int capacity) {
+            int[] slots = new int[capacity];
+            Arrays.fill(slots, EMPTY);
+            return slots;
+        }
+    }
+}
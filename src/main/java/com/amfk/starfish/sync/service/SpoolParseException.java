@@ -0,0 +1,25 @@
+package com.amfk.starfish.sync.service;
+
+import java.nio.file.Path;
+
+/**
+ * Thrown when a spooled Master Service response was received completely but cannot be
+ * parsed. Fetching the same response again would fail the same way, so it is not a
+ * {@code RestClientException} and is not retried; the spool is kept for a re-parse.
+ */
+public class SpoolParseException extends RuntimeException {
+
+    private final Path spool;
+
+    public SpoolParseException(Path spool, Throwable cause) {
+        super("Failed to parse spooled Master Service response " + spool, cause);
+        this.spool = spool;
+    }
+
+    /**
+     * The kept spool file, to be parsed again with {@code MasterServiceClient.parseSpool}.
+     */
+    public Path getSpool() {
+        return spool;
+    }
+}
@@ -0,0 +1,338 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.config.VirtualThreads;
+import com.amfk.starfish.sync.dto.RangeRow;
+import com.amfk.starfish.sync.dto.SiteDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sink that upserts every synced site with its ranges to the Starfish API in bulk.
+ *
+ * Sites are buffered into chunks of {@code starfish.push.chunk.size} and each full chunk
+ * is posted on a background thread; at most {@code starfish.push.max.in.flight} chunks
+ * are in flight, further sink calls block until one completes. Every chunk carries an
+ * {@code Idempotency-Key} derived from the run and the chunk number, which stays the
+ * same across the retries done through the shared {@code retryTemplate}, so a chunk that
+ * timed out after Starfish applied it is not applied twice. Client errors other than 429
+ * are not retried and mark the chunk's items as failed.
+ *
+ * Starfish answers with a status per item ({@code {"results": [{"id", "status", "error"}]}});
+ * {@link #finish(boolean)} flushes the last partial chunk, waits for every request and
+ * reports the item statuses of the run. Every site handed to the sink was processed, so
+ * a failed or timed-out run still pushes all of them, the last chunk included; only its
+ * report is marked incomplete.
+ */
+@Component
+public class StarfishPushSink implements SiteSyncSink, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(StarfishPushSink.class);
+
+    static final String STATUS_FAILED = "failed";
+    static final String STATUS_ACCEPTED = "accepted";
+
+    private final RestTemplate restTemplate;
+    private final RetryTemplate retryTemplate;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final String bulkUrl;
+    private final BearerTokenProvider.AuthorizedHeaders authorizedHeaders;
+    private final Semaphore inFlight;
+    private final ExecutorService senders;
+
+    private final Object lock = new Object();
+    private String runId;
+    private List<Map<String, Object>> buffer = new ArrayList<>();
+    private final AtomicInteger chunkSequence = new AtomicInteger();
+    private final List<Future<List<ItemStatus>>> pending = Collections.synchronizedList(new ArrayList<>());
+    private volatile PushReport lastReport;
+
+    public StarfishPushSink(RestTemplate restTemplate,
+                            @Qualifier("retryTemplate") RetryTemplate retryTemplate,
+                            MeterRegistry meterRegistry,
+                            Environment environment,
+                            @Value("${starfish.push.enabled:false}") boolean enabled,
+                            @Value("${starfish.push.chunk.size:200}") int chunkSize,
+                            @Value("${starfish.push.max.in.flight:4}") int maxInFlight,
+                            @Value("${starfish.api.base.url:http://localhost:8081}") String baseUrl,
+                            @Value("${starfish.push.path:/amsp/api/masterdata/v1/sites/bulk}") String bulkPath,
+                            @Qualifier("starfishTokenProvider") BearerTokenProvider tokenProvider) {
+        this.restTemplate = restTemplate;
+        this.retryTemplate = retryTemplate;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.bulkUrl = baseUrl + bulkPath;
+        HttpHeaders baseHeaders = new HttpHeaders();
+        baseHeaders.setContentType(MediaType.APPLICATION_JSON);
+        baseHeaders.setAccept(List.of(MediaType.APPLICATION_JSON));
+        this.authorizedHeaders = tokenProvider.withHeaders(baseHeaders);
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+        this.senders = Executors.newFixedThreadPool(Math.max(1, maxInFlight),
+                VirtualThreads.threadFactory("starfish-push-", VirtualThreads.isActive(environment)));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void accept(SiteDto site, List<RangeRow> siteDetails) {
+        if (!enabled) {
+            return;
+        }
+        List<Map<String, Object>> chunk = null;
+        String chunkRunId;
+        synchronized (lock) {
+            if (runId == null) {
+                runId = UUID.randomUUID().toString();
+            }
+            chunkRunId = runId;
+            buffer.add(toItem(site, siteDetails));
+            if (buffer.size() >= chunkSize) {
+                chunk = buffer;
+                buffer = new ArrayList<>(chunkSize);
+            }
+        }
+        if (chunk != null) {
+            submit(chunkRunId, chunk);
+        }
+    }
+
+    /**
+     * Posts the remaining items, waits for all chunks already sent and reports the item statuses.
+     */
+    @Override
+    public void finish(boolean complete) {
+        if (!enabled) {
+            return;
+        }
+        List<Map<String, Object>> chunk;
+        String finishedRunId;
+        synchronized (lock) {
+            if (runId == null) {
+                return;
+            }
+            finishedRunId = runId;
+            chunk = buffer;
+            buffer = new ArrayList<>();
+            runId = null;
+        }
+        if (!chunk.isEmpty()) {
+            submit(finishedRunId, chunk);
+        }
+
+        List<ItemStatus> items = new ArrayList<>();
+        List<Future<List<ItemStatus>>> chunks;
+        synchronized (pending) {
+            chunks = new ArrayList<>(pending);
+            pending.clear();
+        }
+        for (Future<List<ItemStatus>> future : chunks) {
+            try {
+                items.addAll(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for Starfish push", e);
+            } catch (ExecutionException e) {
+                // send() reports failures as item statuses, this is a bug
+                throw new IllegalStateException("Starfish push chunk failed", e.getCause());
+            }
+        }
+        int chunkCount = chunkSequence.getAndSet(0);
+
+        Map<String, Integer> statusCounts = new TreeMap<>();
+        List<ItemStatus> failures = new ArrayList<>();
+        for (ItemStatus item : items) {
+            statusCounts.merge(item.status(), 1, Integer::sum);
+            if (STATUS_FAILED.equals(item.status())) {
+                failures.add(item);
+            }
+        }
+        statusCounts.forEach((status, count) -> Counter.builder("starfish.push.items").tag("status", status)
+                .description("Sites pushed to Starfish by item status").register(meterRegistry).increment(count));
+        lastReport = new PushReport(finishedRunId, complete, chunkCount, items, statusCounts);
+
+        if (failures.isEmpty() && complete) {
+            logger.info("Pushed {} sites to Starfish in {} requests: {}", items.size(), chunkCount, statusCounts);
+        } else {
+            logger.warn("Pushed {} sites to Starfish in {} requests{}: {}{}", items.size(), chunkCount,
+                    complete ? "" : " for an incomplete run", statusCounts,
+                    failures.isEmpty() ? "" : "; first failure: " + failures.get(0).id() + " (" + failures.get(0).error() + ")");
+        }
+    }
+
+    /**
+     * Item statuses of the last finished run, or null before the first one.
+     */
+    public PushReport getLastReport() {
+        return lastReport;
+    }
+
+    @Override
+    public void destroy() {
+        senders.shutdownNow();
+    }
+
+    private void submit(String chunkRunId, List<Map<String, Object>> chunk) {
+        String idempotencyKey = chunkRunId + "-" + chunkSequence.incrementAndGet();
+        try {
+            // Blocks the sink thread while max.in.flight chunks are outstanding
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to push to Starfish", e);
+        }
+        try {
+            pending.add(senders.submit(() -> {
+                try {
+                    return send(idempotencyKey, chunk);
+                } finally {
+                    inFlight.release();
+                }
+            }));
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private List<ItemStatus> send(String idempotencyKey, List<Map<String, Object>> chunk) {
+        Map<String, List<Map<String, Object>>> body = Map.of("items", chunk);
+        try {
+            BulkResponse response = retryTemplate.execute(context -> {
+                // Built per attempt so a retry after a 401 picks up the refreshed token
+                HttpHeaders headers = new HttpHeaders();
+                headers.putAll(authorizedHeaders.get());
+                headers.set("Idempotency-Key", idempotencyKey);
+                HttpEntity<Map<String, List<Map<String, Object>>>> request = new HttpEntity<>(body, headers);
+                try {
+                    ResponseEntity<BulkResponse> entity = restTemplate.exchange(bulkUrl, HttpMethod.POST, request,
+                            new ParameterizedTypeReference<BulkResponse>() {});
+                    return entity.getBody();
+                } catch (HttpClientErrorException e) {
+                    if (e.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS) {
+                        throw e;
+                    }
+                    if (e.getStatusCode() == HttpStatus.UNAUTHORIZED) {
+                        authorizedHeaders.getProvider().invalidate();
+                        throw e;
+                    }
+                    // Not worth retrying: the same chunk would be rejected again
+                    return BulkResponse.rejected(e.getStatusCode().value() + " " + e.getStatusText());
+                }
+            });
+            return itemStatuses(chunk, response);
+        } catch (RestClientException e) {
+            logger.error("Starfish push of chunk {} failed after retries: {}", idempotencyKey, e.getMessage());
+            return failed(chunk, e.getMessage());
+        }
+    }
+
+    private static List<ItemStatus> itemStatuses(List<Map<String, Object>> chunk, BulkResponse response) {
+        if (response != null && response.error() != null) {
+            return failed(chunk, response.error());
+        }
+        Map<String, ItemStatus> byId = new HashMap<>();
+        if (response != null && response.results() != null) {
+            for (ItemStatus result : response.results()) {
+                byId.put(result.id(), result);
+            }
+        }
+        List<ItemStatus> statuses = new ArrayList<>(chunk.size());
+        for (Map<String, Object> item : chunk) {
+            String id = String.valueOf(item.get("id"));
+            ItemStatus result = byId.get(id);
+            statuses.add(result != null && result.status() != null ? result : new ItemStatus(id, STATUS_ACCEPTED, null));
+        }
+        return statuses;
+    }
+
+    private static List<ItemStatus> failed(List<Map<String, Object>> chunk, String error) {
+        List<ItemStatus> statuses = new ArrayList<>(chunk.size());
+        for (Map<String, Object> item : chunk) {
+            statuses.add(new ItemStatus(String.valueOf(item.get("id")), STATUS_FAILED, error));
+        }
+        return statuses;
+    }
+
+    private static Map<String, Object> toItem(SiteDto site, List<RangeRow> siteDetails) {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("id", site.getSiteId());
+        item.put("name", site.getName());
+        item.put("locationCode", site.getLocationCode());
+        item.put("clusterName", site.getClusterName());
+        item.put("clusterId", site.getClusterId());
+        item.put("cmName", site.getCmName());
+        item.put("active", site.getActive());
+        List<Map<String, Object>> ranges = new ArrayList<>(siteDetails.size());
+        for (RangeRow row : siteDetails) {
+            Map<String, Object> range = new LinkedHashMap<>();
+            range.put("type", row.type());
+            range.put("lowerbound", row.lowerbound());
+            range.put("upperbound", row.upperbound());
+            range.put("prefix", row.prefix());
+            ranges.add(range);
+        }
+        item.put("ranges", ranges);
+        return item;
+    }
+
+    /**
+     * Outcome of one pushed site as reported by Starfish ({@code created}, {@code updated},
+     * {@code unchanged}, ...), or {@code failed} with the error of its chunk.
+     */
+    public record ItemStatus(String id, String status, String error) {
+    }
+
+    /**
+     * Item statuses of one run and the number of bulk requests it took; {@code complete}
+     * is false if the run failed or hit its deadline before processing every site.
+     */
+    public record PushReport(String runId, boolean complete, int chunks, List<ItemStatus> items, Map<String, Integer> statusCounts) {
+    }
+
+    /**
+     * Body of a bulk upsert response; {@code error} is only set locally for rejected chunks.
+     */
+    record BulkResponse(List<ItemStatus> results, String error) {
+
+        static BulkResponse rejected(String error) {
+            return new BulkResponse(null, error);
+        }
+    }
+}
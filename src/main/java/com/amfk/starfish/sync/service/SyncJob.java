@@ -0,0 +1,148 @@
+package com.amfk.starfish.sync.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A single site sync run, with live progress that can be polled while it executes.
+ */
+public class SyncJob {
+
+    public enum Status { RUNNING, COMPLETED, FAILED }
+
+    public enum Phase { QUEUED, FETCHING_SITES, PROCESSING_SITES, FINISHED }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String trigger;
+    private final Instant startedAt = Instant.now();
+    private final SiteSyncStats stats = new SiteSyncStats();
+    private final CompletableFuture<String> future = new CompletableFuture<>();
+
+    private volatile Phase phase = Phase.QUEUED;
+    private volatile int totalSites;
+    private volatile Instant processingStartedAt;
+    private volatile Instant finishedAt;
+    private volatile String result;
+    private volatile String error;
+    private volatile boolean deadlineExceeded;
+
+    public SyncJob(String trigger) {
+        this.trigger = trigger;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTrigger() {
+        return trigger;
+    }
+
+    public SiteSyncStats getStats() {
+        return stats;
+    }
+
+    public CompletableFuture<String> getFuture() {
+        return future;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public Status getStatus() {
+        if (!future.isDone()) {
+            return Status.RUNNING;
+        }
+        return future.isCompletedExceptionally() ? Status.FAILED : Status.COMPLETED;
+    }
+
+    public boolean isFinished() {
+        return future.isDone();
+    }
+
+    void fetchingSites() {
+        phase = Phase.FETCHING_SITES;
+    }
+
+    void processingSites(int totalSites) {
+        this.totalSites = totalSites;
+        this.processingStartedAt = Instant.now();
+        this.phase = Phase.PROCESSING_SITES;
+    }
+
+    /**
+     * Updates the expected number of sites while they are still being streamed in.
+     */
+    void siteCountKnown(int totalSites) {
+        this.totalSites = totalSites;
+    }
+
+    /**
+     * Marks the run as cut short by its deadline; its result covers only part of the sites.
+     */
+    void deadlineExceeded() {
+        this.deadlineExceeded = true;
+    }
+
+    public boolean isDeadlineExceeded() {
+        return deadlineExceeded;
+    }
+
+    void complete(String result) {
+        this.result = result;
+        this.finishedAt = Instant.now();
+        this.phase = Phase.FINISHED;
+        future.complete(result);
+    }
+
+    void fail(Throwable failure) {
+        this.error = failure.getMessage();
+        this.finishedAt = Instant.now();
+        this.phase = Phase.FINISHED;
+        future.completeExceptionally(failure);
+    }
+
+    /**
+     * Estimated remaining time based on the throughput observed so far, or null if unknown.
+     */
+    public Duration getEta() {
+        Instant processingStart = processingStartedAt;
+        int processed = stats.getProcessed();
+        if (isFinished() || processingStart == null || processed == 0 || totalSites == 0) {
+            return null;
+        }
+        long elapsedMs = Duration.between(processingStart, Instant.now()).toMillis();
+        long remaining = Math.max(0, totalSites - processed);
+        return Duration.ofMillis(elapsedMs * remaining / processed);
+    }
+
+    /**
+     * Point-in-time view of the job, suitable for JSON responses.
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        Duration eta = getEta();
+        snapshot.put("jobId", id);
+        snapshot.put("trigger", trigger);
+        snapshot.put("status", getStatus());
+        snapshot.put("phase", phase);
+        snapshot.put("total", totalSites);
+        snapshot.put("processed", stats.getProcessed());
+        snapshot.put("success", stats.getSuccess());
+        snapshot.put("failed", stats.getFailed());
+        snapshot.put("rejected", stats.getRejected());
+        snapshot.put("skipped", stats.getSkipped());
+        snapshot.put("deadlineExceeded", deadlineExceeded);
+        snapshot.put("etaSeconds", eta != null ? eta.toSeconds() : null);
+        snapshot.put("startedAt", startedAt.toString());
+        snapshot.put("finishedAt", finishedAt != null ? finishedAt.toString() : null);
+        snapshot.put("result", result);
+        snapshot.put("error", error);
+        return snapshot;
+    }
+}
@@ -0,0 +1,137 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.util.Deadline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Spreads the per-site work of a run evenly over a time window instead of doing it in one burst.
+ *
+ * The sites are ordered by {@link SiteFreshnessTracker#prioritize} (new, then changed,
+ * then least recently refreshed) and cut into batches of {@code site.sync.trickle.batch.size}.
+ * Batch {@code i} starts {@code i * window / batches} ms into the run, so the database
+ * sees a small, steady load across {@code site.sync.trickle.window.ms}; a batch that
+ * overruns its slot delays only the next one. The batches run one at a time on a
+ * dedicated thread of minimum priority, but {@link #run} blocks the calling sync thread,
+ * and so the sync's single-flight slot, until the last batch is done. The window is
+ * shortened to fit the run deadline, and a run cut short by it records the remaining
+ * sites as skipped and leaves them for the next run.
+ */
+@Service
+public class TrickleSiteSync implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrickleSiteSync.class);
+
+    private final SiteFreshnessTracker freshnessTracker;
+    private final boolean enabled;
+    private final long windowMs;
+    private final int batchSize;
+    private final ExecutorService executor;
+
+    public TrickleSiteSync(SiteFreshnessTracker freshnessTracker,
+                           @Value("${site.sync.trickle.enabled:false}") boolean enabled,
+                           @Value("${site.sync.trickle.window.ms:2700000}") long windowMs,
+                           @Value("${site.sync.trickle.batch.size:20}") int batchSize) {
+        this.freshnessTracker = freshnessTracker;
+        this.enabled = enabled;
+        this.windowMs = windowMs;
+        this.batchSize = Math.max(1, batchSize);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "site-sync-trickle");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Processes the sites in priority order across the window and returns when the last batch is done.
+     *
+     * @param sites     validated site list of the run
+     * @param processor per-site work, returns true on success
+     * @param stats     counters updated as sites are processed
+     */
+    public void run(List<SiteDto> sites, Predicate<SiteDto> processor, SiteSyncStats stats) {
+        List<SiteDto> ordered = freshnessTracker.prioritize(sites);
+        Future<?> future = executor.submit(Deadline.propagate(() -> {
+            trickle(ordered, processor, stats);
+            return null;
+        }));
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Trickle site sync interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Trickle site sync failed", e.getCause());
+        }
+    }
+
+    private void trickle(List<SiteDto> sites, Predicate<SiteDto> processor, SiteSyncStats stats)
+            throws InterruptedException {
+        Deadline deadline = Deadline.current();
+        long window = windowMs;
+        if (deadline != null && deadline.remainingMs() < window) {
+            // Leave a tenth of the budget for the last batch
+            window = deadline.remainingMs() - deadline.remainingMs() / 10;
+            logger.info("Trickle window shortened from {} ms to {} ms to fit the run deadline", windowMs, window);
+        }
+        int batches = (sites.size() + batchSize - 1) / batchSize;
+        long intervalNanos = batches > 0 ? TimeUnit.MILLISECONDS.toNanos(Math.max(0, window)) / batches : 0;
+        logger.info("Trickling {} sites in {} batches of up to {}, one every {} ms", sites.size(), batches, batchSize,
+                TimeUnit.NANOSECONDS.toMillis(intervalNanos));
+
+        long start = System.nanoTime();
+        for (int batch = 0; batch < batches; batch++) {
+            long delayNanos = start + batch * intervalNanos - System.nanoTime();
+            if (delayNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(deadline != null
+                        ? Math.min(delayNanos, TimeUnit.MILLISECONDS.toNanos(deadline.remainingMs()))
+                        : delayNanos);
+            }
+            if (deadline != null && deadline.isExpired()) {
+                int skipped = sites.size() - batch * batchSize;
+                stats.recordSkipped(skipped);
+                logger.warn("Trickle stopped after {} of {} batches at the run deadline, {} sites skipped", batch,
+                        batches, skipped);
+                return;
+            }
+            int from = batch * batchSize;
+            for (SiteDto site : sites.subList(from, Math.min(from + batchSize, sites.size()))) {
+                try {
+                    if (processor.test(site)) {
+                        stats.recordSuccess();
+                    } else {
+                        stats.recordFailure();
+                    }
+                } catch (Exception e) {
+                    logger.error("Error processing site {}: {}", site.getSiteId(), e.getMessage(), e);
+                    stats.recordFailure();
+                }
+            }
+        }
+        logger.info("Trickled {} sites in {} ms", sites.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,144 @@
+package com.amfk.starfish.sync.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time budget of a sync run, carried in a thread-local so the HTTP client, the JDBC
+ * templates and the retry policies can see it without it being passed through every call.
+ *
+ * The run installs its deadline with {@link #enter()}; work handed to other threads is
+ * wrapped with {@link #propagate(Callable)} so it runs under the same deadline. Code on
+ * a thread without a deadline (e.g. an incoming {@code /site} request) is not limited.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long budgetMs;
+    private final long expiresAtNanos;
+
+    private Deadline(long budgetMs) {
+        this.budgetMs = budgetMs;
+        this.expiresAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMs);
+    }
+
+    /**
+     * Deadline {@code budgetMs} from now.
+     */
+    public static Deadline after(long budgetMs) {
+        return new Deadline(budgetMs);
+    }
+
+    /**
+     * Deadline of the current thread, or null if it runs without one.
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Milliseconds left until the deadline of the current thread, or {@code Long.MAX_VALUE} without one.
+     */
+    public static long currentRemainingMs() {
+        Deadline deadline = CURRENT.get();
+        return deadline != null ? deadline.remainingMs() : Long.MAX_VALUE;
+    }
+
+    /**
+     * {@code min(timeoutMs, remaining budget)} for a call made on the current thread.
+     * A timeout of 0 or less counts as unlimited.
+     *
+     * @throws DeadlineExceededException if the deadline has already passed
+     */
+    public static long clamp(long timeoutMs) {
+        Deadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return timeoutMs;
+        }
+        long remaining = deadline.remainingMs();
+        if (remaining <= 0) {
+            throw deadline.exceeded();
+        }
+        return timeoutMs > 0 ? Math.min(timeoutMs, remaining) : remaining;
+    }
+
+    /**
+     * Wraps a task so it runs under the current thread's deadline on whatever thread executes it.
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        Deadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return task;
+        }
+        return () -> {
+            try (Scope scope = deadline.enter()) {
+                return task.call();
+            }
+        };
+    }
+
+    /**
+     * Runs the current thread without a deadline until the returned scope is closed, for
+     * cleanup that must still happen after the deadline has passed.
+     */
+    public static Scope suspend() {
+        return install(null);
+    }
+
+    /**
+     * Makes this the deadline of the current thread until the returned scope is closed.
+     */
+    public Scope enter() {
+        return install(this);
+    }
+
+    private static Scope install(Deadline deadline) {
+        Deadline previous = CURRENT.get();
+        if (deadline != null) {
+            CURRENT.set(deadline);
+        } else {
+            CURRENT.remove();
+        }
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    public long getBudgetMs() {
+        return budgetMs;
+    }
+
+    public long remainingMs() {
+        return TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime());
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Throws if the deadline has passed, so a long loop can stop between items.
+     */
+    public void check() {
+        if (isExpired()) {
+            throw exceeded();
+        }
+    }
+
+    public DeadlineExceededException exceeded() {
+        return new DeadlineExceededException("Run deadline of " + budgetMs + " ms exceeded");
+    }
+
+    /**
+     * Restores the previous deadline of the thread when closed.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
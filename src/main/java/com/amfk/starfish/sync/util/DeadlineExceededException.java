@@ -0,0 +1,11 @@
+package com.amfk.starfish.sync.util;
+
+/**
+ * Thrown when a call is about to start after the deadline of its run has passed.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,52 @@
+package com.amfk.starfish.sync.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limiter for high-volume log statements.
+ *
+ * Allows at most {@code maxPerSecond} events through per one-second window and counts
+ * the rest, so a per-site log line cannot flood the appender during a large sync.
+ * Callers report the suppressed count once the run is over with {@link #drainSuppressed()}.
+ * A limit of 0 or less disables sampling and lets every event through.
+ */
+public class LogSampler {
+
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+
+    private final int maxPerSecond;
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final AtomicInteger windowCount = new AtomicInteger();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    public LogSampler(int maxPerSecond) {
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    /**
+     * Returns true if the current event should be logged, false if it is suppressed.
+     */
+    public boolean tryAcquire() {
+        if (maxPerSecond <= 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+            windowCount.set(0);
+        }
+        if (windowCount.incrementAndGet() <= maxPerSecond) {
+            return true;
+        }
+        suppressed.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Returns the number of events suppressed since the last call and resets it.
+     */
+    public long drainSuppressed() {
+        return suppressed.getAndSet(0);
+    }
+}
@@ -0,0 +1,68 @@
+package com.amfk.starfish.sync.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded string canonicalization pool.
+ *
+ * A pool is meant to be scoped to a single sync run: repeated values such as
+ * cluster names, SIP domains or audit users are collapsed onto one shared
+ * instance, and the whole pool becomes garbage once the run is finished.
+ * Unlike {@link String#intern()} nothing is retained in the JVM-wide string table.
+ *
+ * Once {@code maxEntries} distinct values have been pooled, new values are
+ * returned as-is so a high-cardinality field can never grow the pool unbounded.
+ */
+public class StringPool {
+
+    private final Map<String, String> pool;
+    private final int maxEntries;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    public StringPool(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.pool = new ConcurrentHashMap<>(Math.min(maxEntries, 1024));
+    }
+
+    /**
+     * Returns the canonical instance for the given value.
+     *
+     * @param value value to canonicalize, may be null
+     * @return the pooled instance, or the value itself if the pool is full
+     */
+    public String canonicalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = pool.get(value);
+        if (existing != null) {
+            hits.incrementAndGet();
+            return existing;
+        }
+        misses.incrementAndGet();
+        if (pool.size() >= maxEntries) {
+            return value;
+        }
+        existing = pool.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    public int size() {
+        return pool.size();
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    public void clear() {
+        pool.clear();
+    }
+}
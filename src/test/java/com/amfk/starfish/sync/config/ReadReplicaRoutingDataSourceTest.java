@@ -0,0 +1,167 @@
+package com.amfk.starfish.sync.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Uses separate embedded databases as primary and replicas, each tagged with its own name.
+ */
+class ReadReplicaRoutingDataSourceTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void readsAreBalancedAcrossReplicas() {
+        ReadReplicaRoutingDataSource routing = new ReadReplicaRoutingDataSource(
+                database("primary"), List.of(database("replica-1"), database("replica-2")), 30000, meterRegistry);
+        JdbcTemplate readTemplate = new JdbcTemplate(routing);
+
+        List<String> served = List.of(whoAmI(readTemplate), whoAmI(readTemplate), whoAmI(readTemplate), whoAmI(readTemplate));
+
+        assertEquals(List.of("replica-1", "replica-2", "replica-1", "replica-2"), served);
+        assertEquals(0.0, meterRegistry.counter("db.read.route", "target", "primary").count());
+    }
+
+    @Test
+    void unavailableReplicaFallsBackToPrimaryAndIsSkippedDuringCooldown() {
+        ReadReplicaRoutingDataSource routing = new ReadReplicaRoutingDataSource(
+                database("primary"), List.of(unreachableDatabase()), 30000, meterRegistry);
+        JdbcTemplate readTemplate = new JdbcTemplate(routing);
+
+        assertEquals("primary", whoAmI(readTemplate));
+        assertEquals("primary", whoAmI(readTemplate));
+
+        // The failed replica is only tried once, then skipped until the cooldown ends
+        assertEquals(1.0, meterRegistry.counter("db.read.fallback").count());
+        assertEquals(2.0, meterRegistry.counter("db.read.route", "target", "primary").count());
+    }
+
+    @Test
+    void withoutReplicasReadsGoToPrimary() {
+        ReadReplicaRoutingDataSource routing = new ReadReplicaRoutingDataSource(
+                database("primary"), List.of(), 30000, meterRegistry);
+
+        assertEquals("primary", whoAmI(new JdbcTemplate(routing)));
+    }
+
+    @Test
+    void connectionsWithExplicitCredentialsAreRoutedToo() throws SQLException {
+        ReadReplicaRoutingDataSource routing = new ReadReplicaRoutingDataSource(
+                database("primary"), List.of(database("replica-1")), 30000, meterRegistry);
+
+        try (Connection connection = routing.getConnection("sa", "");
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT name FROM whoami")) {
+            rs.next();
+            assertEquals("replica-1", rs.getString(1));
+        }
+    }
+
+    @Test
+    void queryFailingOnReplicaIsRepeatedOnPrimary() {
+        ReadReplicaRoutingDataSource routing = new ReadReplicaRoutingDataSource(
+                database("primary"), List.of(failingAfterRows(database("replica-1"), 0)), 30000, meterRegistry);
+        JdbcTemplate readTemplate = new ReplicaReadJdbcTemplate(routing);
+
+        assertEquals("primary", whoAmI(readTemplate));
+        List<String> names = new ArrayList<>();
+        readTemplate.query("SELECT name FROM whoami", rs -> {
+            names.add(rs.getString(1));
+        });
+
+        // The replica failed once and is skipped for the rest of the cooldown
+        assertEquals(List.of("primary"), names);
+        assertEquals(1.0, meterRegistry.counter("db.read.fallback").count());
+        assertEquals(1.0, meterRegistry.counter("db.read.route", "target", "replica-1").count());
+    }
+
+    @Test
+    void queryFailingAfterRowsWereDeliveredIsNotRepeated() {
+        DataSource replica = database("replica-1");
+        new JdbcTemplate(replica).update("INSERT INTO whoami (name) VALUES ('replica-1'), ('replica-1')");
+        ReadReplicaRoutingDataSource routing = new ReadReplicaRoutingDataSource(
+                database("primary"), List.of(failingAfterRows(replica, 1)), 30000, meterRegistry);
+        JdbcTemplate readTemplate = new ReplicaReadJdbcTemplate(routing);
+        List<String> names = new ArrayList<>();
+
+        assertThrows(DataAccessException.class, () -> readTemplate.query("SELECT name FROM whoami", rs -> {
+            names.add(rs.getString(1));
+        }));
+
+        assertEquals(List.of("replica-1"), names);
+        assertEquals(0.0, meterRegistry.counter("db.read.route", "target", "primary").count());
+    }
+
+    private static String whoAmI(JdbcTemplate template) {
+        return template.queryForObject("SELECT name FROM whoami", String.class);
+    }
+
+    private static DataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("CREATE TABLE whoami (name VARCHAR(32))");
+        template.update("INSERT INTO whoami (name) VALUES (?)", name);
+        return dataSource;
+    }
+
+    /**
+     * Replica whose result sets break after {@code rows} rows, like a connection dropped mid-query.
+     */
+    private static DataSource failingAfterRows(DataSource dataSource, int rows) {
+        AtomicInteger read = new AtomicInteger();
+        return new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return wrap(super.getConnection(), Connection.class, rows, read);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T wrap(Object target, Class<T> type, int rows, AtomicInteger read) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (type == ResultSet.class && method.getName().equals("next") && read.incrementAndGet() > rows) {
+                throw new SQLTransientConnectionException("Replica connection lost");
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof ResultSet) {
+                return wrap(result, ResultSet.class, rows, read);
+            }
+            if (result instanceof Statement && method.getReturnType().isInterface()) {
+                return wrap(result, (Class<Object>) method.getReturnType(), rows, read);
+            }
+            return result;
+        });
+    }
+
+    private static DataSource unreachableDatabase() {
+        return new DriverManagerDataSource("jdbc:h2:mem:missing-" + UUID.randomUUID() + ";IFEXISTS=TRUE", "sa", "");
+    }
+}
@@ -0,0 +1,107 @@
+package com.amfk.starfish.sync.config;
+
+import com.amfk.starfish.sync.harness.AmspTestDatabase;
+import com.amfk.starfish.sync.harness.StubResponse;
+import com.amfk.starfish.sync.harness.StubUpstreamServer;
+import com.amfk.starfish.sync.util.Deadline;
+import com.amfk.starfish.sync.util.DeadlineExceededException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.StatementCallback;
+import org.springframework.retry.RetryPolicy;
+import org.springframework.retry.policy.CompositeRetryPolicy;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.sql.Statement;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Calls made under a run deadline get at most its remaining budget.
+ */
+class RunDeadlineTest {
+
+    private StubUpstreamServer server;
+    private RestTemplate restTemplate;
+
+    @BeforeEach
+    void setUp() {
+        server = StubUpstreamServer.start();
+        RestClientConfig restClientConfig = new RestClientConfig();
+        ReflectionTestUtils.setField(restClientConfig, "maxConnections", 4);
+        restTemplate = restClientConfig.restTemplate(2000, 10000, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void httpTimeoutIsCutToTheRemainingBudget() {
+        server.stub("/slow", StubResponse.json("{}").delayed(3000));
+        server.stub("/fast", StubResponse.json("{}"));
+        String url = server.getBaseUrl() + "/slow";
+
+        long start = System.nanoTime();
+        try (Deadline.Scope scope = Deadline.after(300).enter()) {
+            assertThrows(ResourceAccessException.class, () -> restTemplate.getForObject(url, String.class));
+        }
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 2000);
+
+        Deadline expired = Deadline.after(0);
+        try (Deadline.Scope scope = expired.enter()) {
+            assertThrows(DeadlineExceededException.class,
+                    () -> restTemplate.getForObject(server.getBaseUrl() + "/fast", String.class));
+        }
+        // Outside the run the client timeouts apply unchanged
+        assertEquals("{}", restTemplate.getForObject(server.getBaseUrl() + "/fast", String.class));
+    }
+
+    @Test
+    void retriesStopWhenTheBudgetCannotFitAnotherAttempt() {
+        CompositeRetryPolicy policy = new CompositeRetryPolicy();
+        policy.setPolicies(new RetryPolicy[]{new SimpleRetryPolicy(20), new DeadlineRetryPolicy(50)});
+        RetryTemplate retryTemplate = RetryTemplate.builder().customPolicy(policy).noBackoff().build();
+        AtomicInteger attempts = new AtomicInteger();
+
+        try (Deadline.Scope scope = Deadline.after(1000).enter()) {
+            assertThrows(IllegalStateException.class, () -> retryTemplate.execute(context -> {
+                attempts.incrementAndGet();
+                Thread.sleep(300);
+                throw new IllegalStateException("attempt failed");
+            }));
+        }
+
+        // Attempts end at 300, 600 and 900 ms; a fourth would not fit in the last 100 ms
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void statementTimeoutIsCutToTheRemainingBudget() {
+        AmspTestDatabase database = AmspTestDatabase.create("run-deadline");
+        JdbcTemplate jdbcTemplate = new DeadlineJdbcTemplate(Objects.requireNonNull(
+                database.getJdbcTemplate().getDataSource()));
+        StatementCallback<Integer> queryTimeout = Statement::getQueryTimeout;
+
+        assertEquals(0, jdbcTemplate.execute(queryTimeout));
+        try (Deadline.Scope scope = Deadline.after(2500).enter()) {
+            assertEquals(3, jdbcTemplate.execute(queryTimeout));
+            jdbcTemplate.setQueryTimeout(1);
+            assertEquals(1, jdbcTemplate.execute(queryTimeout));
+        }
+        try (Deadline.Scope scope = Deadline.after(0).enter()) {
+            assertThrows(DeadlineExceededException.class, () -> jdbcTemplate.execute(queryTimeout));
+        }
+    }
+}
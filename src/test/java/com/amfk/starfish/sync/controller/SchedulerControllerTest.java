@@ -0,0 +1,167 @@
+package com.amfk.starfish.sync.controller;
+
+import com.amfk.starfish.sync.config.SchedulingConfig;
+import com.amfk.starfish.sync.service.SiteSyncCoordinator;
+import com.amfk.starfish.sync.service.SiteSyncService;
+import com.amfk.starfish.sync.service.SyncJob;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class SchedulerControllerTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ThreadPoolTaskExecutor executor;
+    private ThreadPoolTaskScheduler scheduler;
+    private SiteSyncCoordinator coordinator;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        SiteSyncService siteSyncService = mock(SiteSyncService.class);
+        when(siteSyncService.syncSites(any(SyncJob.class))).thenAnswer(invocation -> {
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            return "Site sync completed successfully";
+        });
+        executor = (ThreadPoolTaskExecutor) new SchedulingConfig(new MockEnvironment()).siteSyncExecutor();
+        executor.initialize();
+        coordinator = new SiteSyncCoordinator(siteSyncService, executor);
+        ReflectionTestUtils.setField(coordinator, "historySize", 20);
+
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setRemoveOnCancelPolicy(true);
+        scheduler.initialize();
+        SchedulerController controller = new SchedulerController(null, coordinator, scheduler, null,
+                new ObjectMapper(), null, null, null);
+        ReflectionTestUtils.setField(controller, "progressIntervalMs", 20L);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void jobIsSubmittedCoalescedAndReportedUntilItFinishes() throws Exception {
+        String jobId = new ObjectMapper().readTree(mockMvc.perform(post("/api/scheduler/sync"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.coalesced").value(false))
+                .andExpect(jsonPath("$.status").value("RUNNING"))
+                .andReturn().getResponse().getContentAsString()).get("jobId").asText();
+
+        mockMvc.perform(post("/api/scheduler/sync"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.coalesced").value(true))
+                .andExpect(jsonPath("$.jobId").value(jobId));
+        mockMvc.perform(get("/api/scheduler/sync/current"))
+                .andExpect(jsonPath("$.jobId").value(jobId))
+                .andExpect(jsonPath("$.trigger").value("manual"));
+        mockMvc.perform(get("/api/scheduler/sync/unknown")).andExpect(status().isNotFound());
+
+        release.countDown();
+        awaitTrue(() -> coordinator.getJob(jobId).isFinished());
+
+        mockMvc.perform(get("/api/scheduler/sync/" + jobId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.phase").value("FINISHED"))
+                .andExpect(jsonPath("$.result").value("Site sync completed successfully"));
+        mockMvc.perform(get("/api/scheduler/sync/current")).andExpect(jsonPath("$.status").value("IDLE"));
+        mockMvc.perform(get("/api/scheduler/sync"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].jobId").value(jobId));
+    }
+
+    @Test
+    void progressStreamEndsWithFinishedEvent() throws Exception {
+        SyncJob job = coordinator.triggerSync("manual").job();
+
+        MvcResult result = mockMvc.perform(get("/api/scheduler/sync/" + job.getId() + "/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitTrue(() -> contentOf(result).contains("event:progress"));
+        release.countDown();
+
+        awaitTrue(() -> contentOf(result).contains("event:finished"));
+        // The emitter completed the async request
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+        assertTrue(contentOf(result).contains("\"status\":\"COMPLETED\""));
+        awaitTrue(() -> scheduler.getScheduledThreadPoolExecutor().getQueue().isEmpty());
+    }
+
+    @Test
+    void progressStreamStopsPublishingOnTimeout() throws Exception {
+        SyncJob job = coordinator.triggerSync("manual").job();
+
+        MvcResult result = mockMvc.perform(get("/api/scheduler/sync/" + job.getId() + "/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitTrue(() -> contentOf(result).contains("event:progress"));
+
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+
+        awaitTrue(() -> scheduler.getScheduledThreadPoolExecutor().getQueue().isEmpty());
+        // No more events once the publisher is cancelled (and a send in flight is done)
+        Thread.sleep(50);
+        String sent = contentOf(result);
+        Thread.sleep(100);
+        assertEquals(sent, contentOf(result));
+        assertFalse(job.isFinished());
+    }
+
+    @Test
+    void progressStreamOfUnknownJobIsNotFound() throws Exception {
+        mockMvc.perform(get("/api/scheduler/sync/unknown/events")).andExpect(status().isNotFound());
+    }
+
+    private static String contentOf(MvcResult result) {
+        try {
+            return result.getResponse().getContentAsString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,148 @@
+package com.amfk.starfish.sync.harness;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Embedded H2 database (MySQL mode) with the amsp tables read by {@code MockApiService}.
+ *
+ * {@link #seed(int, long)} creates clusters spread over a few countries, each with a
+ * varying number of DID, extension and fax ranges. About one cluster in twenty and one
+ * range in thirty are inactive, so the {@code active} filters have something to drop.
+ */
+public final class AmspTestDatabase {
+
+    private static final String[][] COUNTRIES = {{"DE", "49"}, {"AT", "43"}, {"CH", "41"}, {"FR", "33"}, {"NL", "31"}};
+    private static final String[] CITIES = {"FRA", "BER", "MUC", "VIE", "ZRH", "PAR", "AMS", "HAM"};
+    private static final String[] PHONE_NUMBER_TYPES = {"DID", "EXT", "FAX"};
+
+    private final String url;
+    private final JdbcTemplate jdbcTemplate;
+
+    private AmspTestDatabase(String name) {
+        this.url = "jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        this.jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+        createSchema();
+    }
+
+    /**
+     * Creates an empty database. The name must be unique per test class, as in-memory
+     * databases live as long as the JVM.
+     */
+    public static AmspTestDatabase create(String name) {
+        return new AmspTestDatabase(name);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    /**
+     * Points the application datasource (and JPA) at this database in a Spring Boot test.
+     */
+    public void registerDataSource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> url);
+        registry.add("spring.datasource.driverClassName", () -> "org.h2.Driver");
+        registry.add("spring.datasource.username", () -> "sa");
+        registry.add("spring.datasource.password", () -> "");
+        registry.add("spring.jpa.database-platform", () -> "org.hibernate.dialect.H2Dialect");
+        registry.add("spring.jpa.properties.hibernate.dialect", () -> "org.hibernate.dialect.H2Dialect");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+    }
+
+    /**
+     * Name of the n-th seeded cluster, e.g. {@code DE-FRA-CL0001}.
+     */
+    public static String clusterName(int index) {
+        return COUNTRIES[index % COUNTRIES.length][0] + "-" + CITIES[index % CITIES.length] + "-CL"
+                + String.format("%04d", index);
+    }
+
+    /**
+     * PBX id of the n-th seeded cluster, the alternative lookup key.
+     */
+    public static String pbxId(int index) {
+        return String.format("PBX%05d", 10000 + index);
+    }
+
+    /**
+     * Seeds {@code clusters} clusters with on average {@code averageRanges} ranges each.
+     * The same seed always produces the same data.
+     *
+     * @return number of ranges inserted
+     */
+    public int seed(int clusters, int averageRanges, long randomSeed) {
+        Random random = new Random(randomSeed);
+        seedReferenceData();
+        List<Object[]> clusterRows = new ArrayList<>();
+        List<Object[]> rangeRows = new ArrayList<>();
+        long nextNumber = 300000000L;
+        for (int c = 0; c < clusters; c++) {
+            int active = random.nextInt(20) == 0 ? 0 : 1;
+            clusterRows.add(new Object[]{c + 1, clusterName(c), pbxId(c), c % COUNTRIES.length + 1, active});
+            int ranges = 1 + random.nextInt(Math.max(2 * averageRanges - 1, 1));
+            for (int r = 0; r < ranges; r++) {
+                int size = 10 * (1 + random.nextInt(100));
+                rangeRows.add(new Object[]{rangeRows.size() + 1, c + 1, 1 + random.nextInt(PHONE_NUMBER_TYPES.length),
+                        nextNumber, nextNumber + size - 1, random.nextInt(30) == 0 ? 0 : 1});
+                nextNumber += size;
+            }
+        }
+        insert(clusterRows, rangeRows);
+        return rangeRows.size();
+    }
+
+    /**
+     * Seeds clusters that are all active and have exactly {@code rangesPerCluster} active
+     * ranges, for measurements where every lookup must cost the same.
+     */
+    public void seedUniform(int clusters, int rangesPerCluster) {
+        seedReferenceData();
+        List<Object[]> clusterRows = new ArrayList<>();
+        List<Object[]> rangeRows = new ArrayList<>();
+        for (int c = 0; c < clusters; c++) {
+            clusterRows.add(new Object[]{c + 1, clusterName(c), pbxId(c), c % COUNTRIES.length + 1, 1});
+            for (int r = 0; r < rangesPerCluster; r++) {
+                long from = 300000000L + (long) rangeRows.size() * 100;
+                rangeRows.add(new Object[]{rangeRows.size() + 1, c + 1, 1, from, from + 99, 1});
+            }
+        }
+        insert(clusterRows, rangeRows);
+    }
+
+    private void createSchema() {
+        jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS amsp");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS amsp.country (id INT PRIMARY KEY, iso_code VARCHAR(2), "
+                + "country_code VARCHAR(8))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS amsp.pbx_phonenumber_type (id INT PRIMARY KEY, name VARCHAR(32))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS amsp.pbx_cluster (id INT PRIMARY KEY, name VARCHAR(64), "
+                + "id_pbx VARCHAR(64), id_country INT, active INT)");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS amsp.pbx_number_range (id INT PRIMARY KEY, id_pbx_cluster INT, "
+                + "phone_number_type INT, range_from VARCHAR(32), range_to VARCHAR(32), active INT)");
+    }
+
+    private void seedReferenceData() {
+        for (int i = 0; i < COUNTRIES.length; i++) {
+            jdbcTemplate.update("MERGE INTO amsp.country KEY (id) VALUES (?, ?, ?)", i + 1, COUNTRIES[i][0], COUNTRIES[i][1]);
+        }
+        for (int i = 0; i < PHONE_NUMBER_TYPES.length; i++) {
+            jdbcTemplate.update("MERGE INTO amsp.pbx_phonenumber_type KEY (id) VALUES (?, ?)", i + 1, PHONE_NUMBER_TYPES[i]);
+        }
+    }
+
+    private void insert(List<Object[]> clusterRows, List<Object[]> rangeRows) {
+        jdbcTemplate.batchUpdate("INSERT INTO amsp.pbx_cluster (id, name, id_pbx, id_country, active) VALUES (?, ?, ?, ?, ?)",
+                clusterRows);
+        jdbcTemplate.batchUpdate("INSERT INTO amsp.pbx_number_range (id, id_pbx_cluster, phone_number_type, range_from, "
+                + "range_to, active) VALUES (?, ?, ?, ?, ?, ?)", rangeRows);
+    }
+}
@@ -0,0 +1,129 @@
+package com.amfk.starfish.sync.harness;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load driver: each of {@code concurrency} threads sends its next request as
+ * soon as the previous one completes, so the offered load adapts to the latency of the
+ * system under test.
+ */
+public final class LoadGenerator {
+
+    private LoadGenerator() {
+    }
+
+    /**
+     * Runs {@code request} from {@code concurrency} threads for {@code duration}.
+     *
+     * @param request returns true on success; false or an exception counts as an error
+     */
+    public static LoadResult closedLoop(int concurrency, Duration duration, Callable<Boolean> request)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        AtomicLong errors = new AtomicLong();
+        List<LatencyRecorder> recorders = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            LatencyRecorder recorder = new LatencyRecorder();
+            recorders.add(recorder);
+            Thread worker = new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    recorder.record(timed(request, errors));
+                }
+            }, "load-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return LoadResult.of(recorders, errors.get(), System.nanoTime() - start);
+    }
+
+    /**
+     * Runs {@code task} {@code iterations} times one after another, e.g. full sync runs.
+     */
+    public static LoadResult sequential(int iterations, Callable<Boolean> task) {
+        long start = System.nanoTime();
+        AtomicLong errors = new AtomicLong();
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (int i = 0; i < iterations; i++) {
+            recorder.record(timed(task, errors));
+        }
+        return LoadResult.of(List.of(recorder), errors.get(), System.nanoTime() - start);
+    }
+
+    private static long timed(Callable<Boolean> request, AtomicLong errors) {
+        long start = System.nanoTime();
+        try {
+            if (!Boolean.TRUE.equals(request.call())) {
+                errors.incrementAndGet();
+            }
+        } catch (Exception e) {
+            errors.incrementAndGet();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static final class LatencyRecorder {
+
+        private long[] samples = new long[1024];
+        private int count;
+
+        void record(long nanos) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = nanos;
+        }
+    }
+
+    /**
+     * Throughput and latency distribution of a load run.
+     */
+    public record LoadResult(long requests, long errors, long elapsedNanos, long[] sortedLatencies) {
+
+        static LoadResult of(List<LatencyRecorder> recorders, long errors, long elapsedNanos) {
+            int total = recorders.stream().mapToInt(recorder -> recorder.count).sum();
+            long[] all = new long[total];
+            int offset = 0;
+            for (LatencyRecorder recorder : recorders) {
+                System.arraycopy(recorder.samples, 0, all, offset, recorder.count);
+                offset += recorder.count;
+            }
+            Arrays.sort(all);
+            return new LoadResult(total, errors, elapsedNanos, all);
+        }
+
+        public double throughputPerSecond() {
+            return elapsedNanos == 0 ? 0 : requests * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        /**
+         * Latency percentile in milliseconds, nearest-rank; 100 is the maximum.
+         */
+        public double percentileMs(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.min(Math.max(index, 0), sortedLatencies.length - 1)] / 1_000_000.0;
+        }
+
+        public static String header() {
+            return String.format("%-14s %10s %10s %10s %10s %10s %10s %8s",
+                    "run", "requests", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms", "errors");
+        }
+
+        public String format(String label) {
+            return String.format("%-14s %10d %10.1f %10.1f %10.1f %10.1f %10.1f %8d", label, requests,
+                    throughputPerSecond(), percentileMs(50), percentileMs(95), percentileMs(99), percentileMs(100), errors);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.amfk.starfish.sync.harness;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Master Service site payloads whose cluster names match {@link AmspTestDatabase} clusters.
+ */
+public final class SiteFixtures {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private SiteFixtures() {
+    }
+
+    /**
+     * Raw site objects as returned by {@code /amsp/api/masterdata/v1/sites}; site {@code i}
+     * belongs to cluster {@code i % clusters}.
+     */
+    public static List<Map<String, Object>> rawSites(int count, int clusters) {
+        List<Map<String, Object>> sites = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int cluster = i % clusters;
+            Map<String, Object> site = new LinkedHashMap<>();
+            site.put("id", i + 1);
+            site.put("name", "Site " + (i + 1));
+            site.put("nameEnglish", "Site " + (i + 1));
+            site.put("nameGerman", "Standort " + (i + 1));
+            site.put("locationCode", "LC" + (100000 + i));
+            site.put("city", "City " + (i % 120));
+            site.put("street", "Street " + (i % 2000));
+            site.put("remark", null);
+            site.put("active", i % 10 == 0 ? 0 : 1);
+            site.put("logCreatedBy", "user" + (i % 8));
+            site.put("logUpdatedBy", "user" + (i % 8));
+            site.put("clusterName", AmspTestDatabase.clusterName(cluster));
+            site.put("clusterId", cluster + 1);
+            site.put("sipDomain", "sip" + (i % 6) + ".example.com");
+            site.put("routingPolicy", "RP-" + (i % 12));
+            site.put("cmName", AmspTestDatabase.pbxId(cluster));
+            site.put("notes", "");
+            site.put("ars", "ARS-" + (i % 4));
+            site.put("userStamp", "batch");
+            sites.add(site);
+        }
+        return sites;
+    }
+
+    /**
+     * JSON array body with {@code count} sites.
+     */
+    public static String sitesJson(int count, int clusters) {
+        try {
+            return MAPPER.writeValueAsString(rawSites(count, clusters));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
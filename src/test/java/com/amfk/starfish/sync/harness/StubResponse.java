@@ -0,0 +1,140 @@
+package com.amfk.starfish.sync.harness;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Canned response served by {@link StubUpstreamServer}, with optional faults.
+ *
+ * Responses are immutable; every modifier returns a copy, so a base response can be
+ * shared between stubs:
+ *
+ * <pre>
+ * StubResponse.json(SiteFixtures.sitesJson(5000)).chunked(8192).truncatedAfter(100_000)
+ * </pre>
+ */
+public final class StubResponse {
+
+    private final int status;
+    private final byte[] body;
+    private final Map<String, String> headers;
+    private final long delayMs;
+    private final int chunkSize;
+    private final long chunkDelayMs;
+    private final long truncateAfterBytes;
+    private final boolean gzip;
+
+    private StubResponse(int status, byte[] body, Map<String, String> headers, long delayMs, int chunkSize,
+                         long chunkDelayMs, long truncateAfterBytes, boolean gzip) {
+        this.status = status;
+        this.body = body;
+        this.headers = headers;
+        this.delayMs = delayMs;
+        this.chunkSize = chunkSize;
+        this.chunkDelayMs = chunkDelayMs;
+        this.truncateAfterBytes = truncateAfterBytes;
+        this.gzip = gzip;
+    }
+
+    /**
+     * 200 response with a JSON body and a Content-Length header.
+     */
+    public static StubResponse json(String body) {
+        return json(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static StubResponse json(byte[] body) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", "application/json");
+        return new StubResponse(200, body, headers, 0, 0, 0, -1, false);
+    }
+
+    /**
+     * Error response, e.g. {@code status(503)}.
+     */
+    public static StubResponse status(int status) {
+        return json("{\"error\":\"stubbed " + status + "\"}").withStatus(status);
+    }
+
+    public StubResponse withStatus(int status) {
+        return new StubResponse(status, body, headers, delayMs, chunkSize, chunkDelayMs, truncateAfterBytes, gzip);
+    }
+
+    public StubResponse withHeader(String name, String value) {
+        Map<String, String> copy = new LinkedHashMap<>(headers);
+        copy.put(name, value);
+        return new StubResponse(status, body, copy, delayMs, chunkSize, chunkDelayMs, truncateAfterBytes, gzip);
+    }
+
+    /**
+     * Waits before sending the status line, to trigger response timeouts.
+     */
+    public StubResponse delayed(long delayMs) {
+        return new StubResponse(status, body, headers, delayMs, chunkSize, chunkDelayMs, truncateAfterBytes, gzip);
+    }
+
+    /**
+     * Sends the body with chunked transfer encoding in chunks of {@code chunkSize} bytes.
+     */
+    public StubResponse chunked(int chunkSize) {
+        return new StubResponse(status, body, headers, delayMs, chunkSize, chunkDelayMs, truncateAfterBytes, gzip);
+    }
+
+    /**
+     * Waits between chunks, to simulate a slow upstream. Implies chunked encoding.
+     */
+    public StubResponse slowChunks(int chunkSize, long chunkDelayMs) {
+        return new StubResponse(status, body, headers, delayMs, chunkSize, chunkDelayMs, truncateAfterBytes, gzip);
+    }
+
+    /**
+     * Closes the connection in the middle of a chunk once {@code bytes} of the body have
+     * been sent, which the client reports as a {@code TruncatedChunkException}.
+     * Implies chunked encoding.
+     */
+    public StubResponse truncatedAfter(long bytes) {
+        return new StubResponse(status, body, headers, delayMs, chunkSize > 0 ? chunkSize : 8192, chunkDelayMs,
+                bytes, gzip);
+    }
+
+    /**
+     * Compresses the body with gzip when the request advertises {@code Accept-Encoding: gzip},
+     * the way the Master Service does.
+     */
+    public StubResponse gzipped() {
+        return new StubResponse(status, body, headers, delayMs, chunkSize, chunkDelayMs, truncateAfterBytes, true);
+    }
+
+    int getStatus() {
+        return status;
+    }
+
+    byte[] getBody() {
+        return body;
+    }
+
+    Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    long getDelayMs() {
+        return delayMs;
+    }
+
+    int getChunkSize() {
+        return chunkSize;
+    }
+
+    long getChunkDelayMs() {
+        return chunkDelayMs;
+    }
+
+    long getTruncateAfterBytes() {
+        return truncateAfterBytes;
+    }
+
+    boolean isGzip() {
+        return gzip;
+    }
+}
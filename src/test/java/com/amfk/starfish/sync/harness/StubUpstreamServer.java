@@ -0,0 +1,300 @@
+package com.amfk.starfish.sync.harness;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Minimal HTTP/1.1 server standing in for the Master Service and the Starfish API.
+ *
+ * It is written on plain sockets rather than an embedded servlet container so it can
+ * misbehave on the wire: stall before answering, trickle chunks, cut a chunk in half
+ * and drop the connection, or gzip the body. Every connection serves one request and
+ * is then closed.
+ */
+public class StubUpstreamServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "stub-upstream");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, Function<RecordedRequest, StubResponse>> handlers = new ConcurrentHashMap<>();
+    private final List<RecordedRequest> requests = new CopyOnWriteArrayList<>();
+    private volatile boolean running = true;
+
+    private StubUpstreamServer() throws IOException {
+        serverSocket = new ServerSocket(0, 200, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "stub-upstream-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public static StubUpstreamServer start() {
+        try {
+            return new StubUpstreamServer();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not start stub upstream server", e);
+        }
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + serverSocket.getLocalPort();
+    }
+
+    /**
+     * Serves the given responses in order for requests to {@code path}; the last one repeats.
+     */
+    public StubUpstreamServer stub(String path, StubResponse... responses) {
+        List<StubResponse> sequence = List.of(responses);
+        AtomicInteger calls = new AtomicInteger();
+        return stub(path, request -> sequence.get(Math.min(calls.getAndIncrement(), sequence.size() - 1)));
+    }
+
+    /**
+     * Computes the response for every request to {@code path}.
+     */
+    public StubUpstreamServer stub(String path, Function<RecordedRequest, StubResponse> handler) {
+        handlers.put(path, handler);
+        return this;
+    }
+
+    public List<RecordedRequest> getRequests() {
+        return Collections.unmodifiableList(requests);
+    }
+
+    public List<RecordedRequest> getRequests(String path) {
+        return requests.stream().filter(request -> request.path().equals(path)).toList();
+    }
+
+    public void reset() {
+        handlers.clear();
+        requests.clear();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // already closed
+        }
+        connections.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> handle(socket));
+            } catch (IOException e) {
+                if (running) {
+                    throw new IllegalStateException("Stub upstream accept failed", e);
+                }
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            RecordedRequest request = readRequest(in);
+            if (request == null) {
+                return;
+            }
+            requests.add(request);
+            Function<RecordedRequest, StubResponse> handler = handlers.get(request.path());
+            StubResponse response = handler != null ? handler.apply(request) : StubResponse.status(404);
+            writeResponse(socket.getOutputStream(), request, response);
+        } catch (SocketException e) {
+            // client went away, e.g. after a response timeout
+        } catch (IOException | InterruptedException e) {
+            // connection dropped or server stopped
+        }
+    }
+
+    private static RecordedRequest readRequest(InputStream in) throws IOException {
+        String requestLine = readLine(in);
+        if (requestLine == null || requestLine.isEmpty()) {
+            return null;
+        }
+        String[] parts = requestLine.split(" ");
+        String target = parts[1];
+        int queryStart = target.indexOf('?');
+        String path = queryStart >= 0 ? target.substring(0, queryStart) : target;
+        String query = queryStart >= 0 ? target.substring(queryStart + 1) : "";
+
+        Map<String, String> headers = new ConcurrentHashMap<>();
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+        }
+
+        byte[] body = new byte[0];
+        if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+            body = readChunkedBody(in);
+        } else if (headers.containsKey("content-length")) {
+            body = in.readNBytes(Integer.parseInt(headers.get("content-length")));
+        }
+        return new RecordedRequest(parts[0], path, query, headers, body);
+    }
+
+    private static byte[] readChunkedBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        while (true) {
+            String sizeLine = readLine(in);
+            int size = Integer.parseInt(sizeLine.split(";")[0].trim(), 16);
+            if (size == 0) {
+                // skip trailers up to the terminating empty line
+                String trailer = readLine(in);
+                while (trailer != null && !trailer.isEmpty()) {
+                    trailer = readLine(in);
+                }
+                return body.toByteArray();
+            }
+            body.write(in.readNBytes(size));
+            readLine(in);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                break;
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        if (b == -1 && line.size() == 0) {
+            return null;
+        }
+        return line.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    private static void writeResponse(OutputStream out, RecordedRequest request, StubResponse response)
+            throws IOException, InterruptedException {
+        if (response.getDelayMs() > 0) {
+            Thread.sleep(response.getDelayMs());
+        }
+
+        byte[] body = response.getBody();
+        boolean gzip = response.isGzip() && request.acceptsGzip();
+        if (gzip) {
+            body = gzip(body);
+        }
+        boolean chunked = response.getChunkSize() > 0 || response.getChunkDelayMs() > 0;
+
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(response.getStatus()).append(' ').append(reason(response.getStatus())).append("\r\n");
+        response.getHeaders().forEach((name, value) -> head.append(name).append(": ").append(value).append("\r\n"));
+        if (gzip) {
+            head.append("Content-Encoding: gzip\r\n");
+        }
+        if (chunked) {
+            head.append("Transfer-Encoding: chunked\r\n");
+        } else {
+            head.append("Content-Length: ").append(body.length).append("\r\n");
+        }
+        head.append("Connection: close\r\n\r\n");
+        out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+        if (!chunked) {
+            out.write(body);
+            out.flush();
+            return;
+        }
+
+        int chunkSize = response.getChunkSize() > 0 ? response.getChunkSize() : 8192;
+        long truncateAfter = response.getTruncateAfterBytes();
+        int offset = 0;
+        while (offset < body.length) {
+            int length = Math.min(chunkSize, body.length - offset);
+            out.write((Integer.toHexString(length) + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            if (truncateAfter >= 0 && offset + length > truncateAfter) {
+                // Announce the full chunk, send only part of it and drop the connection
+                out.write(body, offset, (int) Math.max(truncateAfter - offset, 0));
+                out.flush();
+                return;
+            }
+            out.write(body, offset, length);
+            out.write("\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            offset += length;
+            if (response.getChunkDelayMs() > 0) {
+                Thread.sleep(response.getChunkDelayMs());
+            }
+        }
+        out.write("0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static String reason(int status) {
+        return switch (status) {
+            case 200 -> "OK";
+            case 201 -> "Created";
+            case 207 -> "Multi-Status";
+            case 400 -> "Bad Request";
+            case 401 -> "Unauthorized";
+            case 404 -> "Not Found";
+            case 429 -> "Too Many Requests";
+            case 500 -> "Internal Server Error";
+            case 502 -> "Bad Gateway";
+            case 503 -> "Service Unavailable";
+            case 504 -> "Gateway Timeout";
+            default -> "Status";
+        };
+    }
+
+    /**
+     * A request received by the stub. Header names are lower case.
+     */
+    public record RecordedRequest(String method, String path, String query, Map<String, String> headers, byte[] body) {
+
+        public String header(String name) {
+            return headers.get(name.toLowerCase(Locale.ROOT));
+        }
+
+        public String bodyAsString() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+
+        boolean acceptsGzip() {
+            String acceptEncoding = header("Accept-Encoding");
+            return acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+        }
+    }
+}
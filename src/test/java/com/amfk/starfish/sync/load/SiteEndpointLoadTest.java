@@ -0,0 +1,70 @@
+package com.amfk.starfish.sync.load;
+
+import com.amfk.starfish.sync.harness.AmspTestDatabase;
+import com.amfk.starfish.sync.harness.LoadGenerator;
+import com.amfk.starfish.sync.harness.LoadGenerator.LoadResult;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Load on {@code GET /ProvisioningWebService/sps/v1/site} with the embedded amsp database.
+ * Run with {@code mvn test -Pload-test}.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "site.sync.enabled=false",
+        "logging.level.com.amfk.starfish.sync=WARN"
+})
+class SiteEndpointLoadTest {
+
+    private static final int CLUSTERS = 500;
+    private static final AmspTestDatabase DATABASE = AmspTestDatabase.create("site-endpoint-load");
+
+    static {
+        DATABASE.seed(CLUSTERS, 12, 42);
+    }
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        DATABASE.registerDataSource(registry);
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void siteLookupsUnderConcurrency() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        String baseUrl = "http://localhost:" + port + "/ProvisioningWebService/sps/v1/site?SiteName=";
+
+        LoadGenerator.closedLoop(4, Duration.ofSeconds(2), () -> lookup(client, baseUrl));
+        System.out.println(LoadResult.header());
+        for (int concurrency : new int[]{1, 8, 32}) {
+            LoadResult result = LoadGenerator.closedLoop(concurrency, Duration.ofSeconds(5), () -> lookup(client, baseUrl));
+            System.out.println(result.format("site c=" + concurrency));
+            assertEquals(0, result.errors());
+            assertTrue(result.requests() > 0);
+        }
+    }
+
+    private static boolean lookup(HttpClient client, String baseUrl) throws Exception {
+        String cluster = AmspTestDatabase.clusterName(ThreadLocalRandom.current().nextInt(CLUSTERS));
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + cluster)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        return response.statusCode() == 200 && response.body().contains("\"Site\"");
+    }
+}
@@ -0,0 +1,76 @@
+package com.amfk.starfish.sync.load;
+
+import com.amfk.starfish.sync.harness.AmspTestDatabase;
+import com.amfk.starfish.sync.harness.LoadGenerator;
+import com.amfk.starfish.sync.harness.LoadGenerator.LoadResult;
+import com.amfk.starfish.sync.harness.SiteFixtures;
+import com.amfk.starfish.sync.harness.StubResponse;
+import com.amfk.starfish.sync.harness.StubUpstreamServer;
+import com.amfk.starfish.sync.service.SiteSyncService;
+import com.amfk.starfish.sync.service.SyncJob;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Full sync runs through the staged pipeline: sites streamed from the stand-in Master
+ * Service in slow chunks, enriched from the embedded amsp database.
+ * Run with {@code mvn test -Pload-test}.
+ */
+@Tag("load")
+@SpringBootTest(properties = {
+        "site.sync.enabled=false",
+        "site.sync.pipeline.enabled=true",
+        "logging.level.com.amfk.starfish.sync=WARN"
+})
+class SiteSyncLoadTest {
+
+    private static final int CLUSTERS = 300;
+    private static final int SITES = 5000;
+    private static final AmspTestDatabase DATABASE = AmspTestDatabase.create("site-sync-load");
+    private static final StubUpstreamServer MASTER = StubUpstreamServer.start();
+
+    static {
+        DATABASE.seed(CLUSTERS, 12, 7);
+        MASTER.stub("/amsp/api/masterdata/v1/sites",
+                StubResponse.json(SiteFixtures.sitesJson(SITES, CLUSTERS)).slowChunks(16 * 1024, 5));
+    }
+
+    @DynamicPropertySource
+    static void upstreams(DynamicPropertyRegistry registry) {
+        DATABASE.registerDataSource(registry);
+        registry.add("master.service.base.url", MASTER::getBaseUrl);
+    }
+
+    @AfterAll
+    static void stopMaster() {
+        MASTER.close();
+    }
+
+    @Autowired
+    private SiteSyncService siteSyncService;
+
+    @Test
+    void fullSyncRuns() {
+        int[] processed = new int[1];
+        LoadResult result = LoadGenerator.sequential(3, () -> {
+            SyncJob job = new SyncJob("load-test");
+            siteSyncService.syncSites(job);
+            // Inactive fixture sites are dropped by validation
+            processed[0] = job.getStats().getProcessed() + job.getStats().getRejected();
+            return processed[0] == SITES;
+        });
+
+        System.out.println(LoadResult.header());
+        System.out.println(result.format("sync runs"));
+        System.out.printf("%.0f sites/s%n", SITES * result.throughputPerSecond());
+        assertEquals(0, result.errors());
+        assertEquals(SITES, processed[0]);
+    }
+}
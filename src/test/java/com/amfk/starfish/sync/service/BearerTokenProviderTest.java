@@ -0,0 +1,146 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.config.RestClientConfig;
+import com.amfk.starfish.sync.harness.StubResponse;
+import com.amfk.starfish.sync.harness.StubUpstreamServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BearerTokenProviderTest {
+
+    private static final String TOKEN_PATH = "/auth/token";
+
+    private StubUpstreamServer server;
+    private RestClientConfig restClientConfig;
+    private BearerTokenProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        server = StubUpstreamServer.start();
+        restClientConfig = new RestClientConfig();
+        ReflectionTestUtils.setField(restClientConfig, "connectionTimeout", 2000);
+        ReflectionTestUtils.setField(restClientConfig, "readTimeout", 2000);
+        ReflectionTestUtils.setField(restClientConfig, "maxConnections", 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (provider != null) {
+            provider.close();
+        }
+        server.close();
+    }
+
+    @Test
+    void staticTokenExpiryIsDecodedAndHeadersAreShared() {
+        String token = jwt(1754537413L, 0);
+        provider = BearerTokenProvider.fixed("static", token);
+
+        assertEquals(Instant.ofEpochSecond(1754537413L), provider.current().expiresAt());
+        BearerTokenProvider.AuthorizedHeaders headers = provider.withHeaders(new HttpHeaders());
+        HttpHeaders first = headers.get();
+        assertEquals("Bearer " + token, first.getFirst(HttpHeaders.AUTHORIZATION));
+        assertSame(first, headers.get());
+        assertThrows(UnsupportedOperationException.class, () -> first.set("X-Test", "1"));
+        assertNull(BearerTokenProvider.fixed("none", "").withHeaders(new HttpHeaders()).get()
+                .getFirst(HttpHeaders.AUTHORIZATION));
+    }
+
+    @Test
+    void tokenIsRefreshedInTheBackgroundBeforeItExpires() throws Exception {
+        AtomicInteger logins = new AtomicInteger();
+        server.stub(TOKEN_PATH, request -> {
+            // Tokens live two seconds; the provider refreshes them one second ahead
+            long exp = Instant.now().getEpochSecond() + 2;
+            return StubResponse.json("{\"token\":\"" + jwt(exp, logins.incrementAndGet()) + "\"}");
+        });
+        provider = create(1000);
+
+        HttpHeaders first = provider.withHeaders(new HttpHeaders()).get();
+        assertTrue(server.getRequests(TOKEN_PATH).get(0).bodyAsString().contains("\"username\":\"user\""));
+
+        // Wait for the token rather than the login count, which the stub bumps before the token is published
+        String firstAuthorization = first.getFirst(HttpHeaders.AUTHORIZATION);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (firstAuthorization.equals(provider.current().authorization()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(logins.get() >= 2, "token was not refreshed");
+        HttpHeaders refreshed = provider.withHeaders(new HttpHeaders()).get();
+        assertNotEquals(firstAuthorization, refreshed.getFirst(HttpHeaders.AUTHORIZATION));
+    }
+
+    @Test
+    void failedRefreshKeepsServingTheCurrentToken() throws Exception {
+        long exp = Instant.now().getEpochSecond() + 600;
+        String token = jwt(exp, 1);
+        server.stub(TOKEN_PATH, StubResponse.json("{\"access_token\":\"" + token + "\"}"), StubResponse.status(500));
+        provider = create(60000);
+        BearerTokenProvider.AuthorizedHeaders headers = provider.withHeaders(new HttpHeaders());
+        assertEquals("Bearer " + token, headers.get().getFirst(HttpHeaders.AUTHORIZATION));
+
+        provider.invalidate();
+
+        assertEquals(2, server.getRequests(TOKEN_PATH).size());
+        assertEquals("Bearer " + token, headers.get().getFirst(HttpHeaders.AUTHORIZATION));
+        assertEquals(Instant.ofEpochSecond(exp), provider.current().expiresAt());
+    }
+
+    @Test
+    void rejectedTokenIsReplacedBeforeInvalidateReturns() throws Exception {
+        AtomicInteger logins = new AtomicInteger();
+        long exp = Instant.now().getEpochSecond() + 600;
+        server.stub(TOKEN_PATH, request -> {
+            sleep(200);
+            return StubResponse.json("{\"token\":\"" + jwt(exp, logins.incrementAndGet()) + "\"}");
+        });
+        provider = create(60000);
+        BearerTokenProvider.AuthorizedHeaders headers = provider.withHeaders(new HttpHeaders());
+        assertEquals("Bearer " + jwt(exp, 1), headers.get().getFirst(HttpHeaders.AUTHORIZATION));
+
+        // Callers rejected together share one login
+        Thread other = new Thread(provider::invalidate);
+        other.start();
+        provider.invalidate();
+        other.join(5000);
+
+        assertEquals("Bearer " + jwt(exp, 2), headers.get().getFirst(HttpHeaders.AUTHORIZATION));
+        assertEquals(2, logins.get());
+    }
+
+    private BearerTokenProvider create(long refreshAheadMs) {
+        return BearerTokenProvider.create("test", restClientConfig.restTemplate(), server.getBaseUrl() + TOKEN_PATH,
+                "user", "secret", null, refreshAheadMs, 300000, 1000);
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String jwt(long exp, int serial) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String header = encoder.encodeToString("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8));
+        String payload = encoder.encodeToString(("{\"sub\":\"user\",\"serial\":" + serial + ",\"exp\":" + exp + "}")
+                .getBytes(StandardCharsets.UTF_8));
+        return header + "." + payload + ".signature";
+    }
+}
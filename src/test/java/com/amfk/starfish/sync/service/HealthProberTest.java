@@ -0,0 +1,119 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.config.RestClientConfig;
+import com.amfk.starfish.sync.harness.AmspTestDatabase;
+import com.amfk.starfish.sync.harness.StubResponse;
+import com.amfk.starfish.sync.harness.StubUpstreamServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HealthProberTest {
+
+    private StubUpstreamServer server;
+    private HealthProber prober;
+    private RestTemplate probeClient;
+
+    @BeforeEach
+    void setUp() {
+        server = StubUpstreamServer.start();
+        RestClientConfig restClientConfig = new RestClientConfig();
+        ReflectionTestUtils.setField(restClientConfig, "maxConnections", 4);
+        probeClient = restClientConfig.restTemplate(500, 300, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (prober != null) {
+            prober.destroy();
+        }
+        server.close();
+    }
+
+    @Test
+    void cachedResultsReportStatusAndAge() throws Exception {
+        server.stub("/up/health", StubResponse.json("{\"status\":\"UP\"}"));
+        server.stub("/slow/health", StubResponse.json("{}").delayed(2000));
+        AmspTestDatabase database = AmspTestDatabase.create("health-probe");
+        prober = new HealthProber(60000, 120000);
+
+        HealthProber.Probe up = prober.register("up", HealthProber.http(probeClient, server.getBaseUrl() + "/up/health"));
+        HealthProber.Probe slow = prober.register("slow", HealthProber.http(probeClient, server.getBaseUrl() + "/slow/health"));
+        HealthProber.Probe db = prober.register("database", HealthProber.database(
+                Objects.requireNonNull(database.getJdbcTemplate().getDataSource()), 1));
+        awaitChecked(up, slow, db);
+
+        Health upHealth = up.health();
+        assertEquals(Status.UP, upHealth.getStatus());
+        assertEquals(200, upHealth.getDetails().get("status"));
+        assertTrue(upHealth.getDetails().containsKey("lastChecked"));
+        assertTrue((Long) upHealth.getDetails().get("ageMs") >= 0);
+        assertEquals(Status.DOWN, slow.health().getStatus());
+        assertTrue(slow.health().getDetails().get("error").toString().contains("timed out"));
+        assertEquals(Status.UP, db.health().getStatus());
+        assertEquals("H2", db.health().getDetails().get("database"));
+
+        // Answered from the cache: no further request reaches the upstream
+        int requests = server.getRequests("/up/health").size();
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            up.health();
+            slow.health();
+        }
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 500);
+        assertEquals(requests, server.getRequests("/up/health").size());
+    }
+
+    @Test
+    void staleResultIsReportedAsUnknown() throws Exception {
+        server.stub("/up/health", StubResponse.json("{}"));
+        prober = new HealthProber(60000, 50);
+        HealthProber.Probe probe = prober.register("up", HealthProber.http(probeClient, server.getBaseUrl() + "/up/health"));
+        awaitChecked(probe);
+
+        Thread.sleep(100);
+
+        Health health = probe.health();
+        assertEquals(Status.UNKNOWN, health.getStatus());
+        assertEquals("UP", health.getDetails().get("lastStatus"));
+    }
+
+    @Test
+    void sharedHttpClientIsClosedWithTheProber() {
+        server.stub("/up/health", StubResponse.json("{}"));
+        prober = new HealthProber(60000, 120000);
+        RestTemplate shared = prober.httpClient(() -> probeClient);
+        assertSame(shared, prober.httpClient(() -> {
+            throw new AssertionError("created twice");
+        }));
+        shared.getForEntity(server.getBaseUrl() + "/up/health", String.class);
+
+        prober.destroy();
+        assertThrows(RuntimeException.class, () -> shared.getForEntity(server.getBaseUrl() + "/up/health", String.class));
+    }
+
+    private static void awaitChecked(HealthProber.Probe... probes) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        for (HealthProber.Probe probe : probes) {
+            while (isUnchecked(probe.health().getDetails()) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static boolean isUnchecked(Map<String, Object> details) {
+        return !details.containsKey("lastChecked");
+    }
+}
@@ -0,0 +1,117 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.config.RestClientConfig;
+import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.harness.SiteFixtures;
+import com.amfk.starfish.sync.harness.StubResponse;
+import com.amfk.starfish.sync.harness.StubUpstreamServer;
+import org.apache.hc.core5.http.TruncatedChunkException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestClientException;
+
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Master Service failure modes reproduced against a local stand-in server.
+ * The client is used without the Spring retry proxy, so every test sees a single attempt.
+ */
+class MasterServiceClientFaultTest {
+
+    private static final String SITES_PATH = "/amsp/api/masterdata/v1/sites";
+
+    private StubUpstreamServer server;
+    private MasterServiceClient client;
+
+    @BeforeEach
+    void setUp() {
+        server = StubUpstreamServer.start();
+        RestClientConfig restClientConfig = new RestClientConfig();
+        ReflectionTestUtils.setField(restClientConfig, "connectionTimeout", 2000);
+        ReflectionTestUtils.setField(restClientConfig, "readTimeout", 1000);
+        ReflectionTestUtils.setField(restClientConfig, "maxConnections", 10);
+        client = new MasterServiceClient(restClientConfig.restTemplate(), new SiteDtoMapper(),
+                BearerTokenProvider.fixed("test", "test-token"));
+        ReflectionTestUtils.setField(client, "baseUrl", server.getBaseUrl());
+        ReflectionTestUtils.setField(client, "stringPoolMaxEntries", 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void largeChunkedResponseIsParsedCompletely() {
+        server.stub(SITES_PATH, StubResponse.json(SiteFixtures.sitesJson(20000, 300)).chunked(4096));
+
+        List<SiteDto> sites = client.getSites();
+
+        assertEquals(20000, sites.size());
+        assertEquals("Bearer test-token", server.getRequests(SITES_PATH).get(0).header("Authorization"));
+    }
+
+    @Test
+    void truncatedChunkFailsTheAttemptWithTruncatedChunkException() {
+        server.stub(SITES_PATH, StubResponse.json(SiteFixtures.sitesJson(2000, 50)).chunked(1024).truncatedAfter(50_000));
+
+        RestClientException e = assertThrows(RestClientException.class, client::getSites);
+
+        assertCausedBy(TruncatedChunkException.class, e);
+    }
+
+    @Test
+    void streamingDeliversSitesReadBeforeTheTruncation() {
+        server.stub(SITES_PATH, StubResponse.json(SiteFixtures.sitesJson(2000, 50)).chunked(1024).truncatedAfter(50_000));
+        AtomicInteger delivered = new AtomicInteger();
+
+        RestClientException e = assertThrows(RestClientException.class,
+                () -> client.streamSites(site -> delivered.incrementAndGet()));
+
+        assertCausedBy(TruncatedChunkException.class, e);
+        assertTrue(delivered.get() > 0 && delivered.get() < 2000, "delivered " + delivered.get());
+    }
+
+    @Test
+    void serverErrorIsThrownForRetry() {
+        server.stub(SITES_PATH, StubResponse.status(503));
+
+        assertThrows(HttpServerErrorException.ServiceUnavailable.class, client::getSites);
+    }
+
+    @Test
+    void stalledResponseHitsTheReadTimeout() {
+        server.stub(SITES_PATH, StubResponse.json(SiteFixtures.sitesJson(10, 5)).slowChunks(64, 2000));
+
+        RestClientException e = assertThrows(RestClientException.class, client::getSites);
+
+        assertCausedBy(SocketTimeoutException.class, e);
+    }
+
+    @Test
+    void sitesAreParsedWhenTheServerCompressesOnRequest() {
+        server.stub(SITES_PATH, StubResponse.json(SiteFixtures.sitesJson(500, 20)).gzipped());
+
+        List<SiteDto> sites = client.getSites();
+
+        assertEquals(500, sites.size());
+    }
+
+    private static void assertCausedBy(Class<? extends Throwable> expected, Throwable thrown) {
+        for (Throwable cause = thrown; cause != null; cause = cause.getCause()) {
+            if (expected.isInstance(cause)) {
+                return;
+            }
+        }
+        throw new AssertionError("Expected a " + expected.getSimpleName() + " cause", thrown);
+    }
+}
@@ -0,0 +1,60 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.RangeRow;
+import com.amfk.starfish.sync.harness.AmspTestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The set-based site details query must answer every requested name exactly like the
+ * single-name query does.
+ */
+class MockApiServiceBatchTest {
+
+    private MockApiService mockApiService;
+
+    @BeforeEach
+    void setUp() {
+        AmspTestDatabase database = AmspTestDatabase.create("batch-" + UUID.randomUUID());
+        database.seed(40, 8, 11);
+        mockApiService = new MockApiService();
+        ReflectionTestUtils.setField(mockApiService, "readJdbcTemplate", database.getJdbcTemplate());
+    }
+
+    @Test
+    void batchMatchesSingleLookups() {
+        List<String> names = List.of(
+                AmspTestDatabase.clusterName(3),
+                " " + AmspTestDatabase.clusterName(7).toLowerCase() + " ",
+                AmspTestDatabase.pbxId(12),
+                "UNKNOWN-SITE",
+                AmspTestDatabase.clusterName(21));
+
+        Map<String, List<RangeRow>> batch = mockApiService.getSiteDetails(names);
+
+        assertEquals(names, List.copyOf(batch.keySet()));
+        for (String name : names) {
+            assertEquals(mockApiService.getSiteDetails(name), batch.get(name), name);
+        }
+        assertTrue(batch.get("UNKNOWN-SITE").isEmpty());
+        assertFalse(batch.get(AmspTestDatabase.pbxId(12)).isEmpty());
+    }
+
+    @Test
+    void sameClusterRequestedTwiceIsAnsweredForBothNames() {
+        String name = AmspTestDatabase.clusterName(5);
+        Map<String, List<RangeRow>> batch = mockApiService.getSiteDetails(List.of(name, name.toLowerCase()));
+
+        assertEquals(2, batch.size());
+        assertEquals(batch.get(name), batch.get(name.toLowerCase()));
+    }
+}
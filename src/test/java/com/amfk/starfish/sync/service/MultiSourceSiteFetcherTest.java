@@ -0,0 +1,177 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.config.MasterServiceSourceProperties;
+import com.amfk.starfish.sync.config.MasterServiceSourceProperties.Source;
+import com.amfk.starfish.sync.config.RestClientConfig;
+import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.harness.SiteFixtures;
+import com.amfk.starfish.sync.harness.StubResponse;
+import com.amfk.starfish.sync.harness.StubUpstreamServer;
+import com.amfk.starfish.sync.util.StringPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MultiSourceSiteFetcherTest {
+
+    private static final String SITES_PATH = "/amsp/api/masterdata/v1/sites";
+
+    private final List<StubUpstreamServer> servers = new ArrayList<>();
+    private final MasterServiceSourceProperties properties = new MasterServiceSourceProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RestClientConfig restClientConfig;
+    private MultiSourceSiteFetcher fetcher;
+
+    @BeforeEach
+    void setUp() {
+        restClientConfig = new RestClientConfig();
+        ReflectionTestUtils.setField(restClientConfig, "connectionTimeout", 2000);
+        ReflectionTestUtils.setField(restClientConfig, "readTimeout", 5000);
+        ReflectionTestUtils.setField(restClientConfig, "maxConnections", 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (fetcher != null) {
+            fetcher.destroy();
+        }
+        servers.forEach(StubUpstreamServer::close);
+    }
+
+    @Test
+    void overlappingSourcesAreMergedFirstSourceWinning() {
+        addSource("east", 0, StubResponse.json(SiteFixtures.sitesJson(100, 5)));
+        addSource("west", 0, StubResponse.json(SiteFixtures.sitesJson(150, 5)));
+
+        MultiSourceSiteFetcher.Fetched<List<SiteDto>> fetched = fetcher().fetchSites();
+        List<SiteDto> sites = fetched.sites();
+
+        assertTrue(fetched.allSources());
+        assertEquals(150, sites.size());
+        assertEquals(150, sites.stream().map(SiteDto::getSiteId).distinct().count());
+        assertEquals("east", sites.get(0).getSource());
+        assertEquals("west", sites.get(149).getSource());
+        assertEquals(100.0, meterRegistry.get("master.service.sites").tag("source", "east").counter().count());
+        assertEquals(150.0, meterRegistry.get("master.service.sites").tag("source", "west").counter().count());
+        assertEquals(1, meterRegistry.get("master.service.fetch").tag("source", "west").tag("outcome", "success")
+                .timer().count());
+    }
+
+    @Test
+    void failingSourceIsRetriedThenLeftOut() {
+        addSource("east", 0, StubResponse.json(SiteFixtures.sitesJson(100, 5)));
+        StubUpstreamServer failing = addSource("broken", 0, StubResponse.status(500));
+
+        MultiSourceSiteFetcher.Fetched<List<SiteDto>> fetched = fetcher().fetchSites();
+
+        assertFalse(fetched.allSources());
+        assertEquals(100, fetched.sites().size());
+        assertEquals(2, failing.getRequests(SITES_PATH).size());
+        assertEquals(1, meterRegistry.get("master.service.fetch").tag("source", "broken").tag("outcome", "failure")
+                .timer().count());
+    }
+
+    @Test
+    void slowSourceIsCutAtItsDeadlineWithoutDelayingTheOthers() {
+        addSource("slow", 300, StubResponse.json(SiteFixtures.sitesJson(10, 5)).delayed(3000));
+        addSource("east", 0, StubResponse.json(SiteFixtures.sitesJson(100, 5)));
+
+        long start = System.nanoTime();
+        List<SiteDto> sites = fetcher().getSites();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(100, sites.size());
+        assertTrue(sites.stream().allMatch(site -> "east".equals(site.getSource())));
+        assertTrue(elapsedMs < 2000, "fetch took " + elapsedMs + " ms");
+        assertEquals(1, meterRegistry.get("master.service.fetch").tag("source", "slow").tag("outcome", "timeout")
+                .timer().count());
+    }
+
+    @Test
+    void fetchFailsWhenEverySourceFails() {
+        addSource("east", 0, StubResponse.status(500));
+        addSource("west", 0, StubResponse.status(503));
+
+        assertThrows(HttpServerErrorException.class, () -> fetcher().getSites());
+    }
+
+    @Test
+    void streamedSitesAreDeduplicatedAndTagged() {
+        addSource("east", 0, StubResponse.json(SiteFixtures.sitesJson(100, 5)).chunked(1024));
+        addSource("west", 0, StubResponse.json(SiteFixtures.sitesJson(150, 5)).chunked(1024));
+        List<Map<String, Object>> received = Collections.synchronizedList(new ArrayList<>());
+
+        MultiSourceSiteFetcher.Fetched<Integer> streamed = fetcher().streamSites(received::add);
+
+        assertEquals(150, streamed.sites());
+        assertTrue(streamed.allSources());
+        Set<Object> ids = new HashSet<>();
+        received.forEach(site -> ids.add(site.get("id")));
+        assertEquals(150, ids.size());
+        assertTrue(received.stream().allMatch(site -> site.get(SiteDtoMapper.SOURCE_KEY) != null));
+        SiteDto mapped = new SiteDtoMapper().toSiteDto(received.get(0), new StringPool(100));
+        assertEquals(received.get(0).get(SiteDtoMapper.SOURCE_KEY), mapped.getSource());
+    }
+
+    @Test
+    void destroyClosesThePerSourceHttpClients() {
+        StubUpstreamServer east = addSource("east", 0, StubResponse.json(SiteFixtures.sitesJson(10, 5)));
+        addSource("west", 0, StubResponse.json(SiteFixtures.sitesJson(10, 5)));
+        fetcher().getSites();
+
+        fetcher.destroy();
+
+        @SuppressWarnings("unchecked")
+        List<ClientHttpRequestFactory> requestFactories =
+                (List<ClientHttpRequestFactory>) ReflectionTestUtils.getField(fetcher, "requestFactories");
+        assertEquals(2, requestFactories.size());
+        for (ClientHttpRequestFactory requestFactory : requestFactories) {
+            // A closed client rejects new requests before connecting
+            assertThrows(IllegalStateException.class, () -> requestFactory
+                    .createRequest(URI.create(east.getBaseUrl() + SITES_PATH), HttpMethod.GET).execute());
+        }
+        fetcher = null;
+    }
+
+    private StubUpstreamServer addSource(String name, long deadlineMs, StubResponse response) {
+        StubUpstreamServer server = StubUpstreamServer.start();
+        servers.add(server);
+        server.stub(SITES_PATH, response);
+        Source source = new Source();
+        source.setName(name);
+        source.setBaseUrl(server.getBaseUrl());
+        source.setBearerToken("token-" + name);
+        source.setReadTimeout(5000);
+        source.setMaxConnections(4);
+        source.setDeadlineMs(deadlineMs);
+        source.setMaxAttempts(2);
+        source.setBackoffMs(10);
+        properties.getSources().add(source);
+        return server;
+    }
+
+    private MultiSourceSiteFetcher fetcher() {
+        fetcher = new MultiSourceSiteFetcher(null, new SiteDtoMapper(), properties, restClientConfig, null, null,
+                meterRegistry, new MockEnvironment(), 1000, 60000, 300000, 2000);
+        return fetcher;
+    }
+}
@@ -0,0 +1,101 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.harness.SiteFixtures;
+import com.amfk.starfish.sync.util.StringPool;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelSiteParserTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final SiteDtoMapper siteDtoMapper = new SiteDtoMapper();
+    private final ParallelSiteParser parser = new ParallelSiteParser(true, 0, 7, 4);
+
+    @AfterEach
+    void tearDown() {
+        parser.destroy();
+    }
+
+    @Test
+    void parallelResultMatchesSequentialParse() throws Exception {
+        List<Map<String, Object>> raw = SiteFixtures.rawSites(1000, 20);
+        // Strings the boundary scan must not mistake for structure
+        raw.get(3).put("remark", "braces } { ] [ and \"quotes\" \\");
+        raw.get(4).put("name", "Zürich – Standort ☃");
+        raw.get(5).put("notes", "\\\"}");
+        byte[] json = MAPPER.writeValueAsBytes(raw);
+
+        ParallelSiteParser.Result heap = parser.parse(json, siteDtoMapper, new StringPool(100));
+        ByteBuffer direct = ByteBuffer.allocateDirect(json.length).put(json).flip();
+        ParallelSiteParser.Result offHeap = parser.parse(direct, siteDtoMapper, new StringPool(100));
+        String text = new String(json, StandardCharsets.UTF_8);
+        ParallelSiteParser.Result decoded = parser.parse(text, siteDtoMapper, new StringPool(100));
+
+        String expected = MAPPER.writeValueAsString(sequential(text));
+        assertTrue(heap.complete());
+        assertEquals(expected, MAPPER.writeValueAsString(heap.sites()));
+        assertEquals(expected, MAPPER.writeValueAsString(offHeap.sites()));
+        assertEquals(expected, MAPPER.writeValueAsString(decoded.sites()));
+        assertEquals("Zürich – Standort ☃", decoded.sites().get(4).getName());
+    }
+
+    @Test
+    void thresholdOfADecodedResponseIsInUtf8Bytes() {
+        ParallelSiteParser tenBytes = new ParallelSiteParser(true, 10, 7, 1);
+        try {
+            assertTrue(tenBytes.appliesTo("0123456789"));
+            assertFalse(tenBytes.appliesTo("012345678"));
+            assertTrue(tenBytes.appliesTo("ééééé"));
+            assertFalse(tenBytes.appliesTo("éééé"));
+            assertTrue(tenBytes.appliesTo("☃☃☃☃"));
+            assertTrue(tenBytes.appliesTo("\uD83D\uDE00\uD83D\uDE00\uD83D\uDE00"));
+            assertFalse(tenBytes.appliesTo("\uD83D\uDE00\uD83D\uDE00"));
+        } finally {
+            tenBytes.destroy();
+        }
+    }
+
+    @Test
+    void truncatedArrayYieldsTheCompleteSites() throws Exception {
+        String json = SiteFixtures.sitesJson(50, 5);
+        int cut = json.indexOf("{\"id\":21,");
+        byte[] truncated = json.substring(0, cut + 40).getBytes(StandardCharsets.UTF_8);
+
+        ParallelSiteParser.Result result = parser.parse(truncated, siteDtoMapper, new StringPool(100));
+
+        assertFalse(result.complete());
+        assertEquals(20, result.sites().size());
+        assertEquals(Integer.valueOf(20), result.sites().get(19).getId());
+        assertThrows(IllegalArgumentException.class,
+                () -> parser.parse("{\"id\":1}".getBytes(StandardCharsets.UTF_8), siteDtoMapper, new StringPool(100)));
+    }
+
+    /**
+     * The sequential path of {@link MasterServiceClient}, which the parallel parse replaces.
+     */
+    private List<SiteDto> sequential(String json) {
+        MasterServiceClient client = new MasterServiceClient(null, siteDtoMapper, BearerTokenProvider.fixed("test", ""));
+        List<Map<String, Object>> raw = ReflectionTestUtils.invokeMethod(client, "parseSitesResponse", json);
+        StringPool stringPool = new StringPool(100);
+        List<SiteDto> sites = new ArrayList<>();
+        for (Map<String, Object> site : raw) {
+            sites.add(siteDtoMapper.toSiteDto(site, stringPool));
+        }
+        return sites;
+    }
+}
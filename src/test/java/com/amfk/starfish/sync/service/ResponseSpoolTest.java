@@ -0,0 +1,155 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.config.RestClientConfig;
+import com.amfk.starfish.sync.config.RetryConfig;
+import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.harness.SiteFixtures;
+import com.amfk.starfish.sync.harness.StubResponse;
+import com.amfk.starfish.sync.harness.StubUpstreamServer;
+import com.amfk.starfish.sync.service.ResponseSpool.SpoolFile;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ResponseSpoolTest {
+
+    private static final String SITES_PATH = "/amsp/api/masterdata/v1/sites";
+
+    @TempDir
+    Path spoolDir;
+
+    private StubUpstreamServer server;
+    private RestClientConfig restClientConfig;
+
+    @BeforeEach
+    void setUp() {
+        server = StubUpstreamServer.start();
+        restClientConfig = new RestClientConfig();
+        ReflectionTestUtils.setField(restClientConfig, "connectionTimeout", 2000);
+        ReflectionTestUtils.setField(restClientConfig, "readTimeout", 5000);
+        ReflectionTestUtils.setField(restClientConfig, "maxConnections", 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void spooledResponseIsParsedFromDiskAndCanBeParsedAgain() throws Exception {
+        server.stub(SITES_PATH, StubResponse.json(SiteFixtures.sitesJson(5000, 50)).chunked(8192));
+        MasterServiceClient client = client(new ResponseSpool(true, spoolDir.toString(), 1L << 30));
+
+        List<SiteDto> sites = client.getSites();
+
+        assertEquals(5000, sites.size());
+        List<SpoolFile> spools = new ResponseSpool(true, spoolDir.toString(), 1L << 30).list();
+        assertEquals(1, spools.size());
+        assertFalse(spools.get(0).failed());
+        assertEquals(1, server.getRequests(SITES_PATH).size());
+
+        List<SiteDto> reparsed = client.parseSpool(spools.get(0).path());
+        assertEquals(5000, reparsed.size());
+        assertEquals(sites.get(4999).getSiteId(), reparsed.get(4999).getSiteId());
+        assertEquals(1, server.getRequests(SITES_PATH).size());
+    }
+
+    @Test
+    void unparsableResponseIsKeptAsTheOnlyFailedSpoolOfItsSource() throws Exception {
+        String json = SiteFixtures.sitesJson(100, 5).replace("{\"id\":21,", "{\"id\":21,,");
+        server.stub(SITES_PATH, StubResponse.json(json));
+        ResponseSpool spool = new ResponseSpool(true, spoolDir.toString(), 1L << 30);
+        MasterServiceClient other = client(spool, "test-eu");
+        MasterServiceClient client = client(spool, "test");
+
+        SpoolParseException otherFailure = assertThrows(SpoolParseException.class, other::getSites);
+        assertThrows(SpoolParseException.class, client::getSites);
+        SpoolParseException failure = assertThrows(SpoolParseException.class, client::getSites);
+
+        // The second failure of "test" replaces its first one but not the spool of "test-eu"
+        List<SpoolFile> spools = spool.list();
+        assertEquals(2, spools.size());
+        assertTrue(spools.stream().allMatch(SpoolFile::failed));
+        assertEquals(Set.of(failure.getSpool(), otherFailure.getSpool()),
+                spools.stream().map(SpoolFile::path).collect(Collectors.toSet()));
+        assertEquals(json.length(), Files.size(failure.getSpool()));
+    }
+
+    @Test
+    void truncatedResponseIsDiscardedAndFailsAsRetryable() throws Exception {
+        String json = SiteFixtures.sitesJson(100, 5);
+        server.stub(SITES_PATH, StubResponse.json(json.substring(0, json.length() - 40)), StubResponse.json(json));
+        ResponseSpool spool = new ResponseSpool(true, spoolDir.toString(), 1L << 30);
+        MasterServiceClient client = client(spool, "test");
+
+        assertThrows(ResourceAccessException.class, client::getSites);
+        assertTrue(spool.list().isEmpty());
+
+        assertEquals(100, client.getSites().size());
+        assertFalse(spool.list().get(0).failed());
+    }
+
+    @Test
+    void unparsableSpoolIsNotRetried() {
+        // A mapping error is retryable on its own, but not as the cause of a failed spool parse
+        MasterServiceClient client = mock(MasterServiceClient.class);
+        when(client.getSites()).thenThrow(new SpoolParseException(spoolDir.resolve("test-1.failed.json"),
+                JsonMappingException.from((JsonParser) null, "Cannot map site")));
+        ProxyFactory proxyFactory = new ProxyFactory(client);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new RetryConfig().masterServiceRetryInterceptor());
+        MasterServiceClient retrying = (MasterServiceClient) proxyFactory.getProxy();
+
+        RuntimeException failure = assertThrows(RuntimeException.class, retrying::getSites);
+
+        assertInstanceOf(SpoolParseException.class, failure.getCause());
+        verify(client, times(1)).getSites();
+    }
+
+    @Test
+    void oldestSpoolsAreDeletedBeyondTheSizeLimit() throws Exception {
+        String json = SiteFixtures.sitesJson(200, 5);
+        server.stub(SITES_PATH, StubResponse.json(json));
+        ResponseSpool spool = new ResponseSpool(true, spoolDir.toString(), json.length() * 2L + 10);
+        MasterServiceClient client = client(spool);
+
+        for (int i = 0; i < 5; i++) {
+            client.getSites();
+        }
+
+        List<SpoolFile> spools = spool.list();
+        assertEquals(2, spools.size());
+        assertTrue(spools.get(0).path().getFileName().toString().endsWith("-5.json"));
+    }
+
+    private MasterServiceClient client(ResponseSpool spool) {
+        return client(spool, "test");
+    }
+
+    private MasterServiceClient client(ResponseSpool spool, String source) {
+        return new MasterServiceClient(restClientConfig.restTemplate(), new SiteDtoMapper(), source,
+                server.getBaseUrl(), BearerTokenProvider.fixed("test", "test-token"), 1000, spool, null);
+    }
+}
@@ -0,0 +1,101 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.repository.SyncShardLeaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs several sync nodes against one embedded database, the way replicas share the MySQL lease table.
+ */
+class ShardedSiteSyncTest {
+
+    private static final int SHARDS = 8;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Test
+    void nodesSplitShardsAndProcessEverySiteOnce() {
+        List<SiteDto> sites = sites(400);
+        Map<Integer, AtomicInteger> processed = new ConcurrentHashMap<>();
+        List<SiteSyncStats> nodeStats = new ArrayList<>();
+        List<CompletableFuture<Void>> runs = new ArrayList<>();
+
+        for (int node = 0; node < 3; node++) {
+            ShardedSiteSync sync = node("node-" + node, 60000);
+            SiteSyncStats stats = new SiteSyncStats();
+            nodeStats.add(stats);
+            runs.add(CompletableFuture.runAsync(() -> sync.run(sites, site -> {
+                processed.computeIfAbsent(site.getId(), k -> new AtomicInteger()).incrementAndGet();
+                sleepQuietly(2);
+                return true;
+            }, stats)));
+        }
+        runs.forEach(CompletableFuture::join);
+
+        assertEquals(sites.size(), processed.size());
+        processed.values().forEach(count -> assertEquals(1, count.get()));
+        assertEquals(sites.size(), nodeStats.stream().mapToInt(SiteSyncStats::getProcessed).sum());
+        assertTrue(nodeStats.stream().filter(stats -> stats.getProcessed() > 0).count() > 1,
+                "work should be spread over more than one node");
+    }
+
+    @Test
+    void leaseOfDeadNodeExpiresAndIsReclaimed() {
+        List<SiteDto> sites = sites(100);
+        SyncShardLeaseRepository repository = new SyncShardLeaseRepository(jdbcTemplate);
+        repository.initialize(SHARDS);
+        long now = System.currentTimeMillis();
+        // A node that claimed shard 0 and then died without completing it
+        assertTrue(repository.tryClaim(0, "dead-node", now, now + 300, now - 60000));
+
+        ShardedSiteSync survivor = node("survivor", 60000);
+        SiteSyncStats stats = new SiteSyncStats();
+        survivor.run(sites, site -> true, stats);
+
+        assertEquals(sites.size(), stats.getProcessed());
+        assertEquals(0, repository.countPending(SHARDS, now - 60000));
+    }
+
+    private ShardedSiteSync node(String nodeId, long leaseTtlMs) {
+        return new ShardedSiteSync(new SyncShardLeaseRepository(jdbcTemplate), true, SHARDS, 2,
+                leaseTtlMs, 600000, 50, nodeId, new MockEnvironment());
+    }
+
+    private static List<SiteDto> sites(int count) {
+        List<SiteDto> sites = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            sites.add(new SiteDto(i, "Site " + i, "CLUSTER-" + (i % 40), i % 40));
+        }
+        return sites;
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
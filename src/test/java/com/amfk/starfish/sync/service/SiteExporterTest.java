@@ -0,0 +1,92 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.SiteDetailsDto;
+import com.amfk.starfish.sync.harness.AmspTestDatabase;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A full export must contain exactly what {@code /site} returns cluster by cluster.
+ */
+class SiteExporterTest {
+
+    private static final int CLUSTERS = 60;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private AmspTestDatabase database;
+    private MockApiService mockApiService;
+    private SiteExporter exporter;
+    private int seededRanges;
+
+    @BeforeEach
+    void setUp() {
+        database = AmspTestDatabase.create("export-" + UUID.randomUUID());
+        seededRanges = database.seed(CLUSTERS, 6, 5);
+        mockApiService = new MockApiService();
+        ReflectionTestUtils.setField(mockApiService, "readJdbcTemplate", database.getJdbcTemplate());
+        exporter = new SiteExporter(mockApiService, objectMapper);
+    }
+
+    @Test
+    void ndjsonHasOneLinePerActiveSiteMatchingSingleLookups() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SiteExporter.Summary summary = exporter.export(SiteExporter.Format.NDJSON, out);
+
+        List<String> expected = new ArrayList<>();
+        int expectedRanges = 0;
+        for (int c = 0; c < CLUSTERS; c++) {
+            for (SiteDetailsDto site : SiteDetailsDto.fromRows(mockApiService.getSiteDetails(AmspTestDatabase.clusterName(c)))) {
+                expected.add(objectMapper.writeValueAsString(site));
+                expectedRanges += site.getRanges().size();
+            }
+        }
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(expected, lines);
+        assertEquals(expected.size(), summary.sites());
+        assertEquals(expectedRanges, summary.ranges());
+    }
+
+    @Test
+    void csvHasHeaderAndOneLinePerRange() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SiteExporter.Summary summary = exporter.export(SiteExporter.Format.CSV, out);
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(SiteExporter.CSV_HEADER, lines.get(0));
+        assertEquals(summary.ranges() + 1, lines.size());
+        assertEquals(6, lines.get(1).split(",", -1).length);
+        assertEquals(mockApiService.forEachActiveRange(row -> { }), summary.ranges());
+        assertTrue(summary.ranges() <= seededRanges);
+
+        StringWriter field = new StringWriter();
+        SiteExporter.writeCsvField(field, "Site, \"A\"");
+        assertEquals("\"Site, \"\"A\"\"\"", field.toString());
+    }
+
+    @Test
+    void csvKeepsLeadingZerosAndWritesMissingBoundsEmpty() throws Exception {
+        database.getJdbcTemplate().update("UPDATE amsp.pbx_number_range SET range_from = '0100', range_to = NULL"
+                + " WHERE id = (SELECT MIN(id) FROM amsp.pbx_number_range WHERE active = 1 AND id_pbx_cluster IN"
+                + " (SELECT id FROM amsp.pbx_cluster WHERE active = 1))");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.export(SiteExporter.Format.CSV, out);
+
+        List<String> edited = out.toString(StandardCharsets.UTF_8).lines()
+                .filter(line -> line.contains(",0100,"))
+                .toList();
+        assertEquals(1, edited.size());
+        assertTrue(edited.get(0).matches("[^,]*,[^,]*,[^,]*,0100,,[^,]+"), edited.get(0));
+    }
+}
@@ -0,0 +1,120 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.RangeRow;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Concurrent /site lookups against a database stand-in that blocks until released.
+ */
+class SiteLookupCoalescerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BlockingMockApiService database = new BlockingMockApiService();
+
+    @Test
+    void identicalLookupsShareOneQuery() throws Exception {
+        SiteLookupCoalescer coalescer = coalescer(8, 64);
+        List<CompletableFuture<List<RangeRow>>> lookups = new ArrayList<>();
+        lookups.add(CompletableFuture.supplyAsync(() -> coalescer.getSiteDetails("DE-FRA-CL0001")));
+        assertTrue(database.started.await(5, TimeUnit.SECONDS));
+        for (String name : List.of("de-fra-cl0001", " DE-FRA-CL0001 ", "De-Fra-Cl0001")) {
+            lookups.add(CompletableFuture.supplyAsync(() -> coalescer.getSiteDetails(name)));
+        }
+        awaitCount("coalesced", 3);
+        database.release.countDown();
+
+        List<RangeRow> first = lookups.get(0).get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<List<RangeRow>> lookup : lookups) {
+            assertSame(first, lookup.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, database.queries.get());
+        assertEquals(1.0, count("executed"));
+
+        // Once the query finished the next lookup queries again
+        coalescer.getSiteDetails("DE-FRA-CL0001");
+        assertEquals(2, database.queries.get());
+    }
+
+    @Test
+    void lookupsBeyondLimitAndQueueAreShed() throws Exception {
+        SiteLookupCoalescer coalescer = coalescer(1, 0);
+        CompletableFuture<List<RangeRow>> running = CompletableFuture.supplyAsync(() -> coalescer.getSiteDetails("A"));
+        assertTrue(database.started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(SiteLookupRejectedException.class, () -> coalescer.getSiteDetails("B"));
+        assertEquals(1.0, count("rejected"));
+
+        database.release.countDown();
+        assertEquals(1, running.get(5, TimeUnit.SECONDS).size());
+        assertEquals(1, coalescer.getSiteDetails("B").size());
+    }
+
+    @Test
+    void errorOfTheLeadingLookupReachesTheWaitingOnes() throws Exception {
+        SiteLookupCoalescer coalescer = coalescer(8, 64);
+        database.failure = new StackOverflowError("query blew the stack");
+        CompletableFuture<List<RangeRow>> leader = CompletableFuture.supplyAsync(() -> coalescer.getSiteDetails("A"));
+        assertTrue(database.started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<List<RangeRow>> follower = CompletableFuture.supplyAsync(() -> coalescer.getSiteDetails("a"));
+        awaitCount("coalesced", 1);
+        database.release.countDown();
+
+        for (CompletableFuture<List<RangeRow>> lookup : List.of(leader, follower)) {
+            ExecutionException thrown = assertThrows(ExecutionException.class, () -> lookup.get(5, TimeUnit.SECONDS));
+            assertSame(database.failure, thrown.getCause());
+        }
+    }
+
+    private SiteLookupCoalescer coalescer(int maxConcurrent, int queueSize) {
+        return new SiteLookupCoalescer(database, true, maxConcurrent, queueSize, 100, meterRegistry);
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.get("site.lookup").tag("outcome", outcome).counter().count();
+    }
+
+    private void awaitCount(String outcome, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count(outcome) < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, count(outcome));
+    }
+
+    private static class BlockingMockApiService extends MockApiService {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger queries = new AtomicInteger();
+        volatile Error failure;
+
+        @Override
+        public List<RangeRow> getSiteDetails(String clusterName) {
+            queries.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return new ArrayList<>(List.of(new RangeRow(clusterName, clusterName, "PBX1", "DID", "100", "199", "49")));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.RangeRow;
+import com.amfk.starfish.sync.harness.AmspTestDatabase;
+import com.amfk.starfish.sync.repository.SiteRangeViewRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Lookups from the materialized view must match the join, and refreshes must only touch
+ * clusters whose source rows changed. The small write batch spreads a full refresh over
+ * several transactions.
+ */
+class SiteRangeViewTest {
+
+    private static final int CLUSTERS = 60;
+    private static final int WRITE_BATCH_ROWS = 50;
+
+    private JdbcTemplate jdbcTemplate;
+    private SiteRangeViewRepository repository;
+    private SiteRangeView siteRangeView;
+    private MockApiService fromJoin;
+    private MockApiService fromView;
+
+    @BeforeEach
+    void setUp() {
+        AmspTestDatabase database = AmspTestDatabase.create("range-view-" + UUID.randomUUID());
+        database.seed(CLUSTERS, 8, 3);
+        jdbcTemplate = database.getJdbcTemplate();
+        repository = spy(new SiteRangeViewRepository(jdbcTemplate, jdbcTemplate));
+        siteRangeView = new SiteRangeView(repository, true, WRITE_BATCH_ROWS);
+        siteRangeView.afterPropertiesSet();
+        fromJoin = mockApiService(null);
+        fromView = mockApiService(siteRangeView);
+    }
+
+    @Test
+    void viewAnswersLikeTheJoin() {
+        assertFalse(siteRangeView.isReadable());
+        SiteRangeView.RefreshResult result = siteRangeView.refresh();
+        assertTrue(siteRangeView.isReadable());
+        assertEquals(result.clusters(), result.changed());
+        verify(repository, atLeast(5)).replaceClusters(anyList(), anyList(), anyLong());
+
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < CLUSTERS; i++) {
+            names.add(AmspTestDatabase.clusterName(i));
+            names.add(" " + AmspTestDatabase.pbxId(i).toLowerCase() + " ");
+        }
+        names.add("UNKNOWN-SITE");
+        for (String name : names) {
+            assertEquals(fromJoin.getSiteDetails(name), fromView.getSiteDetails(name), name);
+        }
+        assertEquals(fromJoin.getSiteDetails(names), fromView.getSiteDetails(names));
+    }
+
+    @Test
+    void refreshRewritesOnlyChangedClusters() {
+        siteRangeView.refresh();
+        assertEquals(0, siteRangeView.refresh().changed());
+
+        // New upper bound for one range of cluster 3, cluster 4 deactivated
+        jdbcTemplate.update("UPDATE amsp.pbx_number_range SET range_to = range_to + 1"
+                + " WHERE id = (SELECT MIN(id) FROM amsp.pbx_number_range WHERE id_pbx_cluster = 4 AND active = 1)");
+        jdbcTemplate.update("UPDATE amsp.pbx_cluster SET active = 0 WHERE id = 5");
+        SiteRangeView.RefreshResult result = siteRangeView.refresh();
+
+        assertEquals(1, result.changed());
+        assertEquals(1, result.removed());
+        String changed = AmspTestDatabase.clusterName(3);
+        assertEquals(fromJoin.getSiteDetails(changed), fromView.getSiteDetails(changed));
+        assertTrue(fromView.getSiteDetails(AmspTestDatabase.clusterName(4)).isEmpty());
+    }
+
+    @Test
+    void viewFilledBeforeStartupIsReadableWithoutARefresh() {
+        siteRangeView.refresh();
+
+        SiteRangeView restarted = new SiteRangeView(new SiteRangeViewRepository(jdbcTemplate, jdbcTemplate), true,
+                WRITE_BATCH_ROWS);
+        assertFalse(restarted.isReadable());
+        restarted.afterPropertiesSet();
+        assertTrue(restarted.isReadable());
+    }
+
+    @Test
+    void boundsKeepLeadingZerosAndNulls() {
+        jdbcTemplate.update("UPDATE amsp.pbx_number_range SET range_from = '0100', range_to = NULL"
+                + " WHERE id = (SELECT MIN(id) FROM amsp.pbx_number_range WHERE id_pbx_cluster = 2 AND active = 1)");
+        String name = AmspTestDatabase.clusterName(1);
+
+        List<RangeRow> rows = fromJoin.getSiteDetails(name);
+        RangeRow edited = rows.stream().filter(row -> "0100".equals(row.lowerbound())).findFirst().orElseThrow();
+        assertNull(edited.upperbound());
+
+        siteRangeView.refresh();
+        assertEquals(rows, fromView.getSiteDetails(name));
+    }
+
+    private MockApiService mockApiService(SiteRangeView view) {
+        MockApiService service = new MockApiService();
+        ReflectionTestUtils.setField(service, "readJdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "siteRangeView", view);
+        return service;
+    }
+}
@@ -0,0 +1,101 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.service.SiteReconciler.Action;
+import com.amfk.starfish.sync.service.SiteReconciler.SiteDiff;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SiteReconcilerTest {
+
+    private static final String[] FIELDS = {"name", "locationCode", "clusterName", "clusterId", "active"};
+
+    @Test
+    void classifiesSitesAndReportsChangedFields() {
+        List<SiteDto> master = List.of(
+                site(1, "Frankfurt", "FRA1"),
+                site(2, "Berlin", "BER1"),
+                site(3, "Munich", "MUC1"),
+                site(40, "Vienna", "VIE1"));
+        List<Map<String, Object>> starfish = List.of(
+                starfishSite(1, "Frankfurt", "FRA1"),
+                starfishSite(2, "Berlin Mitte", "BER1"),
+                // Same location under another id: joined on the fallback key
+                starfishSite(90, "Vienna", "VIE1"),
+                starfishSite(5, "Hamburg", "HAM1"));
+        List<SiteDiff> diffs = new ArrayList<>();
+
+        SiteReconciler.Summary summary = SiteReconciler.reconcile(master, starfish, "locationCode", FIELDS, diffs::add);
+
+        Map<String, SiteDiff> byMasterId = new HashMap<>();
+        diffs.stream().filter(diff -> diff.masterId() != null).forEach(diff -> byMasterId.put(diff.masterId(), diff));
+        assertEquals(Action.UNCHANGED, byMasterId.get("1").action());
+        assertEquals(Action.UPDATE, byMasterId.get("2").action());
+        assertEquals(List.of("name"), byMasterId.get("2").changedFields());
+        assertEquals(Action.CREATE, byMasterId.get("3").action());
+        assertEquals(Action.UNCHANGED, byMasterId.get("40").action());
+        assertEquals("locationCode", byMasterId.get("40").matchedBy());
+        assertEquals("90", byMasterId.get("40").starfishId());
+        SiteDiff delete = diffs.get(diffs.size() - 1);
+        assertEquals(Action.DELETE, delete.action());
+        assertEquals("5", delete.starfishId());
+        assertEquals(new SiteReconciler.Summary(4, 4, 1, 1, 1, 2, summary.durationMs()), summary);
+    }
+
+    @Test
+    void reconcilesHundredThousandSites() {
+        int count = 100_000;
+        List<SiteDto> master = new ArrayList<>(count);
+        List<Map<String, Object>> starfish = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Every 10th site is new, every 7th changed, and Starfish has 5000 sites of its own
+            if (i % 10 != 0) {
+                starfish.add(starfishSite(i, i % 7 == 0 ? "Site " + i + " (old)" : "Site " + i, "LOC" + i));
+            }
+            master.add(site(i, "Site " + i, "LOC" + i));
+        }
+        for (int i = 0; i < 5000; i++) {
+            starfish.add(starfishSite(count + i, "Gone " + i, "GONE" + i));
+        }
+        Map<Action, Integer> counts = new EnumMap<>(Action.class);
+
+        SiteReconciler.reconcile(master, starfish, "locationCode", FIELDS, diff -> counts.merge(diff.action(), 1, Integer::sum));
+
+        int created = count / 10;
+        int updated = 0;
+        for (int i = 0; i < count; i++) {
+            if (i % 10 != 0 && i % 7 == 0) {
+                updated++;
+            }
+        }
+        assertEquals(created, counts.get(Action.CREATE));
+        assertEquals(updated, counts.get(Action.UPDATE));
+        assertEquals(count - created - updated, counts.get(Action.UNCHANGED));
+        assertEquals(5000, counts.get(Action.DELETE));
+    }
+
+    private static SiteDto site(int id, String name, String locationCode) {
+        SiteDto site = new SiteDto(id, name, "DE-FRA-CL" + (id % 10), id % 10 + 1);
+        site.setLocationCode(locationCode);
+        site.setActive(1);
+        return site;
+    }
+
+    private static Map<String, Object> starfishSite(int id, String name, String locationCode) {
+        Map<String, Object> site = new HashMap<>();
+        site.put("id", id);
+        site.put("name", name);
+        site.put("locationCode", locationCode);
+        site.put("clusterName", "DE-FRA-CL" + (id % 10));
+        site.put("clusterId", id % 10 + 1);
+        site.put("active", 1);
+        return site;
+    }
+}
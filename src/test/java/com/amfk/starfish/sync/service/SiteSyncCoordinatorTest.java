@@ -0,0 +1,119 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.config.SchedulingConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SiteSyncCoordinatorTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private SiteSyncService siteSyncService;
+    private ThreadPoolTaskExecutor executor;
+    private SiteSyncCoordinator coordinator;
+
+    @BeforeEach
+    void setUp() {
+        siteSyncService = mock(SiteSyncService.class);
+        when(siteSyncService.syncSites(any(SyncJob.class))).thenAnswer(invocation -> {
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            return "done " + invocation.<SyncJob>getArgument(0).getTrigger();
+        });
+        executor = (ThreadPoolTaskExecutor) new SchedulingConfig(new MockEnvironment()).siteSyncExecutor();
+        executor.initialize();
+        coordinator = new SiteSyncCoordinator(siteSyncService, executor);
+        ReflectionTestUtils.setField(coordinator, "historySize", 20);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void concurrentTriggersJoinTheRunInFlight() throws Exception {
+        int triggers = 8;
+        CyclicBarrier start = new CyclicBarrier(triggers);
+        ExecutorService callers = Executors.newFixedThreadPool(triggers);
+        List<Future<SiteSyncCoordinator.TriggerResult>> results = new ArrayList<>();
+        for (int i = 0; i < triggers; i++) {
+            String trigger = "caller-" + i;
+            results.add(callers.submit(() -> {
+                start.await();
+                return coordinator.triggerSync(trigger);
+            }));
+        }
+
+        SyncJob job = null;
+        int started = 0;
+        for (Future<SiteSyncCoordinator.TriggerResult> result : results) {
+            SiteSyncCoordinator.TriggerResult trigger = result.get(10, TimeUnit.SECONDS);
+            if (!trigger.joined()) {
+                started++;
+            }
+            if (job == null) {
+                job = trigger.job();
+            }
+            assertSame(job, trigger.job());
+        }
+        callers.shutdown();
+        assertEquals(1, started);
+        assertTrue(coordinator.isSyncInProgress());
+        assertFalse(job.isFinished());
+
+        release.countDown();
+        assertEquals("done " + job.getTrigger(), job.getFuture().get(10, TimeUnit.SECONDS));
+        verify(siteSyncService, times(1)).syncSites(any(SyncJob.class));
+        assertNull(coordinator.getCurrentJob());
+
+        // Once the run is over the next trigger starts a fresh one
+        SiteSyncCoordinator.TriggerResult next = coordinator.triggerSync("next");
+        assertFalse(next.joined());
+        assertNotEquals(job.getId(), next.job().getId());
+        next.job().getFuture().get(10, TimeUnit.SECONDS);
+        assertEquals(List.of(next.job(), job), coordinator.getRecentJobs());
+    }
+
+    @Test
+    void failedRunReleasesTheSlot() throws Exception {
+        when(siteSyncService.syncSites(any(SyncJob.class))).thenThrow(new IllegalStateException("upstream down"));
+
+        SyncJob job = coordinator.triggerSync("manual").job();
+
+        assertEquals(SyncJob.Status.FAILED, awaitFinished(job).getStatus());
+        assertFalse(coordinator.triggerSync("retry").joined());
+    }
+
+    private static SyncJob awaitFinished(SyncJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!job.isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return job;
+    }
+}
@@ -0,0 +1,195 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.config.RestClientConfig;
+import com.amfk.starfish.sync.config.RetryConfig;
+import com.amfk.starfish.sync.dto.RangeRow;
+import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.harness.AmspTestDatabase;
+import com.amfk.starfish.sync.harness.SiteFixtures;
+import com.amfk.starfish.sync.harness.StubResponse;
+import com.amfk.starfish.sync.harness.StubUpstreamServer;
+import com.amfk.starfish.sync.util.Deadline;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SiteSyncPipelineTest {
+
+    private static final String BULK_PATH = "/amsp/api/masterdata/v1/sites/bulk";
+    private static final List<RangeRow> RANGES = List.of(new RangeRow("cluster", "site", "CM", "DID", "100", "199", "+49"));
+
+    private final MultiSourceSiteFetcher siteFetcher = mock(MultiSourceSiteFetcher.class);
+    private final MockApiService mockApiService = mock(MockApiService.class);
+    private final AtomicInteger streamed = new AtomicInteger();
+    private final SiteFreshnessTracker tracker = new SiteFreshnessTracker(new SimpleMeterRegistry());
+
+    @Test
+    void sitesFlowThroughEveryStageInOrder() throws Exception {
+        List<Map<String, Object>> raw = SiteFixtures.rawSites(40, 4);
+        raw.get(5).put("id", null);
+        stream(raw);
+        when(mockApiService.getSiteDetails(anyString())).thenAnswer(invocation -> {
+            String cluster = invocation.getArgument(0);
+            if (cluster.equals(AmspTestDatabase.clusterName(1))) {
+                return List.of();
+            }
+            if (cluster.equals(AmspTestDatabase.clusterName(2))) {
+                throw new IllegalStateException("query failed");
+            }
+            return RANGES;
+        });
+        List<SiteDto> accepted = Collections.synchronizedList(new ArrayList<>());
+        SyncJob job = new SyncJob("test");
+        SiteDto delisted = new SiteDto();
+        delisted.setId(999);
+        tracker.recordRefresh(delisted, true);
+
+        int fetched = pipeline((site, details) -> accepted.add(site), 256).run(job);
+
+        // Sites 1, 11, 21, 31 are inactive and site 6 has no id; of the other 35, the 9 sites of
+        // cluster 1 have no details and the 8 of cluster 2 fail before reaching the sink
+        SiteSyncStats stats = job.getStats();
+        assertEquals(40, fetched);
+        assertEquals(5, stats.getRejected());
+        assertEquals(18, stats.getSuccess());
+        assertEquals(17, stats.getFailed());
+        assertEquals(27, accepted.size());
+        // A single worker per stage keeps the Master Service order
+        List<Integer> ids = accepted.stream().map(SiteDto::getId).toList();
+        assertEquals(ids.stream().sorted().toList(), ids);
+        // Only the refreshed sites are tracked; site 999 is no longer listed
+        assertEquals(27, tracker.report(0).tracked());
+    }
+
+    @Test
+    void slowSinkHoldsBackTheFetch() throws Exception {
+        stream(SiteFixtures.rawSites(200, 4));
+        when(mockApiService.getSiteDetails(anyString())).thenReturn(RANGES);
+        CountDownLatch release = new CountDownLatch(1);
+        SiteSyncSink sink = (site, details) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        SyncJob job = new SyncJob("test");
+
+        CompletableFuture<Integer> run = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pipeline(sink, 2).run(job);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(300);
+
+        // Three queues of 2, one site per worker and one held by the blocked fetch
+        assertTrue(streamed.get() <= 3 * 2 + 4 + 1, "streamed " + streamed.get());
+        release.countDown();
+        assertEquals(200, run.get(10, TimeUnit.SECONDS));
+        assertEquals(200, job.getStats().getProcessed() + job.getStats().getRejected());
+    }
+
+    @Test
+    void failedStageAbortsTheRunInsteadOfHanging() {
+        stream(SiteFixtures.rawSites(500, 4));
+        when(mockApiService.getSiteDetails(anyString())).thenReturn(RANGES);
+        Error failure = new Error("sink crashed");
+        SiteSyncSink sink = (site, details) -> {
+            throw failure;
+        };
+
+        IllegalStateException thrown = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> assertThrows(IllegalStateException.class, () -> pipeline(sink, 2).run(new SyncJob("test"))));
+
+        assertSame(failure, thrown.getCause());
+        assertTrue(streamed.get() < 500);
+    }
+
+    @Test
+    void sitesSyncedBeforeTheDeadlineAreAllPushed() throws Exception {
+        stream(SiteFixtures.rawSites(500, 4));
+        when(mockApiService.getSiteDetails(anyString())).thenAnswer(invocation -> {
+            Thread.sleep(5);
+            return RANGES;
+        });
+        try (StubUpstreamServer starfish = StubUpstreamServer.start()) {
+            starfish.stub(BULK_PATH, StubResponse.json("{\"results\":[]}"));
+            RestClientConfig restClientConfig = new RestClientConfig();
+            ReflectionTestUtils.setField(restClientConfig, "connectionTimeout", 2000);
+            ReflectionTestUtils.setField(restClientConfig, "readTimeout", 5000);
+            ReflectionTestUtils.setField(restClientConfig, "maxConnections", 4);
+            StarfishPushSink push = new StarfishPushSink(restClientConfig.restTemplate(), new RetryConfig().retryTemplate(),
+                    new SimpleMeterRegistry(), new MockEnvironment(), true, 7, 2, starfish.getBaseUrl(), BULK_PATH,
+                    BearerTokenProvider.fixed("starfish", "push-token"));
+            SyncJob job = new SyncJob("test");
+
+            try (Deadline.Scope scope = Deadline.after(300).enter()) {
+                pipeline(push, 4).run(job);
+            } catch (RuntimeException e) {
+                // Stopped by the deadline
+            } finally {
+                push.destroy();
+            }
+
+            // Cut short, so the last chunk is partial, but every site counted as synced reaches Starfish
+            int synced = job.getStats().getSuccess();
+            assertTrue(synced > 0 && synced < 475, "synced " + synced);
+            StarfishPushSink.PushReport report = push.getLastReport();
+            assertFalse(report.complete());
+            assertEquals(synced, report.items().size());
+        }
+    }
+
+    /**
+     * Feeds the raw sites to the pipeline's consumer the way the streaming fetch does.
+     */
+    @SuppressWarnings("unchecked")
+    private void stream(List<Map<String, Object>> raw) {
+        when(siteFetcher.streamSites(any())).thenAnswer(invocation -> {
+            Consumer<Map<String, Object>> consumer = invocation.getArgument(0);
+            for (Map<String, Object> site : raw) {
+                consumer.accept(site);
+                streamed.incrementAndGet();
+            }
+            return new MultiSourceSiteFetcher.Fetched<>(raw.size(), true);
+        });
+    }
+
+    private SiteSyncPipeline pipeline(SiteSyncSink sink, int queueCapacity) {
+        SiteValidator validator = new SiteValidator(true, true, 100, new SimpleMeterRegistry());
+        SiteSyncPipeline pipeline = new SiteSyncPipeline(siteFetcher, new SiteDtoMapper(), mockApiService, validator,
+                tracker, List.of(sink), new MockEnvironment());
+        ReflectionTestUtils.setField(pipeline, "enabled", true);
+        ReflectionTestUtils.setField(pipeline, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(pipeline, "parseThreads", 1);
+        ReflectionTestUtils.setField(pipeline, "enrichThreads", 1);
+        ReflectionTestUtils.setField(pipeline, "sinkThreads", 1);
+        ReflectionTestUtils.setField(pipeline, "stringPoolMaxEntries", 1000);
+        return pipeline;
+    }
+}
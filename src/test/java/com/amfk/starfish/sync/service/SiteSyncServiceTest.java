@@ -0,0 +1,127 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.RangeRow;
+import com.amfk.starfish.sync.dto.SiteDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sync modes other than the pipeline must feed the same sinks, tell them whether the run completed
+ * and keep the freshness state to the sites still listed.
+ */
+class SiteSyncServiceTest {
+
+    private final SiteFreshnessTracker tracker = new SiteFreshnessTracker(new SimpleMeterRegistry());
+    private final MultiSourceSiteFetcher siteFetcher = mock(MultiSourceSiteFetcher.class);
+    private final MockApiService mockApiService = mock(MockApiService.class);
+    private final RecordingSink sink = new RecordingSink();
+    private TrickleSiteSync trickle;
+
+    @AfterEach
+    void tearDown() {
+        if (trickle != null) {
+            trickle.destroy();
+        }
+    }
+
+    @Test
+    void trickleRunFeedsEverySiteToTheSinks() {
+        List<SiteDto> sites = IntStream.rangeClosed(1, 5).mapToObj(SiteSyncServiceTest::site).toList();
+        when(siteFetcher.fetchSites()).thenReturn(new MultiSourceSiteFetcher.Fetched<>(sites, true));
+        when(mockApiService.getSiteDetails(anyString())).thenReturn(List.of());
+        when(mockApiService.getSiteDetails("cluster-2")).thenReturn(
+                List.of(new RangeRow("cluster-2", "cluster-2", "PBX1", "DID", "100", "199", "49")));
+
+        SyncJob job = new SyncJob("test");
+        service().syncSites(job);
+
+        assertEquals(List.of(1, 2, 3, 4, 5), sink.accepted.stream().map(SiteDto::getId).sorted().toList());
+        assertEquals(List.of(true), sink.finished);
+        assertEquals(1, job.getStats().getSuccess());
+        assertEquals(4, job.getStats().getFailed());
+    }
+
+    @Test
+    void everyRunForgetsSitesNoLongerListed() {
+        tracker.recordRefresh(site(99), true);
+        when(siteFetcher.fetchSites()).thenReturn(new MultiSourceSiteFetcher.Fetched<>(List.of(site(1), site(2)), true));
+        when(mockApiService.getSiteDetails(anyString())).thenReturn(List.of());
+
+        service(false).syncSites(new SyncJob("test"));
+
+        assertEquals(List.of(1, 2), trackedIds());
+    }
+
+    @Test
+    void sitesOfAMissingSourceAreNotForgotten() {
+        tracker.recordRefresh(site(99), true);
+        when(siteFetcher.fetchSites()).thenReturn(new MultiSourceSiteFetcher.Fetched<>(List.of(site(1), site(2)), false));
+        when(mockApiService.getSiteDetails(anyString())).thenReturn(List.of());
+
+        service(false).syncSites(new SyncJob("test"));
+
+        assertEquals(List.of(1, 2, 99), trackedIds());
+    }
+
+    @Test
+    void failedRunFinishesTheSinksAsIncomplete() {
+        when(siteFetcher.fetchSites()).thenReturn(new MultiSourceSiteFetcher.Fetched<>(List.of(site(1)), true));
+        doThrow(new IllegalStateException("database down")).when(mockApiService).checkAvailableClusters();
+        SiteSyncService service = service();
+
+        assertThrows(RuntimeException.class, () -> service.syncSites(new SyncJob("test")));
+
+        assertEquals(List.of(false), sink.finished);
+    }
+
+    private SiteSyncService service() {
+        return service(true);
+    }
+
+    private SiteSyncService service(boolean trickleEnabled) {
+        trickle = new TrickleSiteSync(tracker, trickleEnabled, 50, 2);
+        return new SiteSyncService(siteFetcher, mockApiService, mock(ShardedSiteSync.class), mock(SiteSyncPipeline.class),
+                mock(SiteRangeView.class), new SiteValidator(false, true, 100, new SimpleMeterRegistry()), trickle,
+                tracker, List.of(sink), 0);
+    }
+
+    private List<Integer> trackedIds() {
+        return tracker.report(10).stalest().stream().map(SiteFreshnessTracker.SiteFreshness::siteId).sorted().toList();
+    }
+
+    private static SiteDto site(int id) {
+        SiteDto site = new SiteDto();
+        site.setId(id);
+        site.setClusterName("cluster-" + id);
+        return site;
+    }
+
+    private static final class RecordingSink implements SiteSyncSink {
+
+        final List<SiteDto> accepted = Collections.synchronizedList(new ArrayList<>());
+        final List<Boolean> finished = new ArrayList<>();
+
+        @Override
+        public void accept(SiteDto site, List<RangeRow> siteDetails) {
+            accepted.add(site);
+        }
+
+        @Override
+        public void finish(boolean complete) {
+            finished.add(complete);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.SiteDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SiteValidatorTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void invalidSitesAreQuarantinedAndInactiveSitesDropped() {
+        SiteValidator validator = new SiteValidator(true, true, 2, meterRegistry);
+        List<SiteDto> sites = new ArrayList<>();
+        for (int i = 1; i <= 5000; i++) {
+            sites.add(site(i, "CL" + (i % 50), 1));
+        }
+        sites.add(site(null, "CL1", 1));
+        sites.add(site(5001, null, 1));
+        sites.add(site(5002, " ", 1));
+        sites.add(site(42, "CL42", 1));
+        sites.add(site(5003, "CL3", 0));
+
+        List<SiteDto> accepted = validator.filter(sites);
+
+        assertEquals(5000, accepted.size());
+        assertSame(sites.get(0), accepted.get(0));
+        SiteValidator.Report report = validator.getLastReport();
+        assertEquals(5005, report.validated());
+        assertEquals(5000, report.accepted());
+        assertEquals(Map.of("missing-id", 1, "missing-cluster-name", 2, "duplicate-id", 1, "inactive", 1),
+                report.violations());
+        assertEquals(2, report.quarantined().size());
+        assertEquals("missing-id", report.quarantined().get(0).rule());
+        assertEquals(2.0, meterRegistry.get("site.validation.rejected")
+                .tags("rule", "missing-cluster-name", "action", "quarantine").counter().count());
+        assertEquals(1.0, meterRegistry.get("site.validation.rejected")
+                .tags("rule", "inactive", "action", "drop").counter().count());
+    }
+
+    @Test
+    void inactiveSitesAreKeptWhenConfiguredAndRunsAreIndependent() {
+        SiteValidator validator = new SiteValidator(true, false, 100, meterRegistry);
+        List<SiteDto> sites = List.of(site(1, "CL1", 0), site(2, "CL2", 1));
+
+        assertEquals(2, validator.filter(sites).size());
+        // Ids seen in a previous run are not duplicates
+        assertEquals(2, validator.filter(sites).size());
+        assertEquals(Map.of(), validator.getLastReport().violations());
+        assertSame(sites, new SiteValidator(false, true, 100, meterRegistry).filter(sites));
+    }
+
+    private static SiteDto site(Integer id, String clusterName, int active) {
+        SiteDto site = new SiteDto(id, "Site " + id, clusterName, 1);
+        site.setActive(active);
+        return site;
+    }
+}
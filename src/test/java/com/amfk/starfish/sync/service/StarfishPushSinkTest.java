@@ -0,0 +1,181 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.config.RestClientConfig;
+import com.amfk.starfish.sync.config.RetryConfig;
+import com.amfk.starfish.sync.dto.RangeRow;
+import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.harness.StubResponse;
+import com.amfk.starfish.sync.harness.StubUpstreamServer;
+import com.amfk.starfish.sync.harness.StubUpstreamServer.RecordedRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bulk pushes against a local stand-in for the Starfish bulk upsert endpoint.
+ */
+class StarfishPushSinkTest {
+
+    private static final String BULK_PATH = "/amsp/api/masterdata/v1/sites/bulk";
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private StubUpstreamServer server;
+    private StarfishPushSink sink;
+
+    @BeforeEach
+    void setUp() {
+        server = StubUpstreamServer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (sink != null) {
+            sink.destroy();
+        }
+        server.close();
+    }
+
+    @Test
+    void sitesArePushedInChunksWithPerItemStatus() {
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        server.stub(BULK_PATH, request -> {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+                return StubResponse.json(results(request, "created"));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return StubResponse.status(500);
+            } finally {
+                concurrent.decrementAndGet();
+            }
+        });
+        sink = sink(500, 2);
+
+        pushSites(2250);
+
+        List<RecordedRequest> requests = server.getRequests(BULK_PATH);
+        assertEquals(5, requests.size());
+        Set<String> keys = new HashSet<>();
+        requests.forEach(request -> keys.add(request.header("Idempotency-Key")));
+        assertEquals(5, keys.size());
+        assertEquals("Bearer push-token", requests.get(0).header("Authorization"));
+        assertTrue(maxConcurrent.get() <= 2);
+
+        StarfishPushSink.PushReport report = sink.getLastReport();
+        assertEquals(5, report.chunks());
+        assertEquals(2250, report.items().size());
+        assertEquals(2250, report.statusCounts().get("created"));
+        assertEquals(2, readTree(requests.get(0).bodyAsString()).path("items").get(0).path("ranges").size());
+    }
+
+    @Test
+    void failedChunkIsRetriedWithTheSameIdempotencyKey() {
+        AtomicInteger calls = new AtomicInteger();
+        server.stub(BULK_PATH, request -> calls.incrementAndGet() == 1
+                ? StubResponse.status(503)
+                : StubResponse.json(results(request, "updated")));
+        sink = sink(100, 1);
+
+        pushSites(100);
+
+        List<RecordedRequest> requests = server.getRequests(BULK_PATH);
+        assertEquals(2, requests.size());
+        assertEquals(requests.get(0).header("Idempotency-Key"), requests.get(1).header("Idempotency-Key"));
+        assertEquals(100, sink.getLastReport().statusCounts().get("updated"));
+    }
+
+    @Test
+    void rejectedChunkMarksItsItemsFailedWithoutRetry() {
+        server.stub(BULK_PATH, request -> readTree(request.bodyAsString()).path("items").get(0).path("id").asText().equals("0")
+                ? StubResponse.status(400)
+                : StubResponse.json(results(request, "created")));
+        sink = sink(10, 2);
+
+        pushSites(25);
+
+        assertEquals(3, server.getRequests(BULK_PATH).size());
+        StarfishPushSink.PushReport report = sink.getLastReport();
+        assertEquals(10, report.statusCounts().get(StarfishPushSink.STATUS_FAILED));
+        assertEquals(15, report.statusCounts().get("created"));
+        assertTrue(report.items().get(0).error().startsWith("400"));
+        assertNull(report.items().get(24).error());
+    }
+
+    @Test
+    void incompleteRunStillPushesEveryProcessedSite() {
+        server.stub(BULK_PATH, request -> StubResponse.json(results(request, "created")));
+        sink = sink(10, 1);
+
+        for (int i = 0; i < 25; i++) {
+            sink.accept(new SiteDto(i, "Site " + i, "DE-FRA-CL" + (i % 10), i % 10 + 1), List.of());
+        }
+        sink.finish(false);
+
+        assertEquals(3, server.getRequests(BULK_PATH).size());
+        StarfishPushSink.PushReport report = sink.getLastReport();
+        assertFalse(report.complete());
+        assertEquals(25, report.items().size());
+    }
+
+    private void pushSites(int count) {
+        for (int i = 0; i < count; i++) {
+            SiteDto site = new SiteDto(i, "Site " + i, "DE-FRA-CL" + (i % 10), i % 10 + 1);
+            sink.accept(site, List.of(
+                    new RangeRow(site.getClusterName(), site.getClusterName(), "PBX1", "DID", "1000", "1999", "49"),
+                    new RangeRow(site.getClusterName(), site.getClusterName(), "PBX1", "EXT", "100", "199", "49")));
+        }
+        sink.finish(true);
+    }
+
+    private StarfishPushSink sink(int chunkSize, int maxInFlight) {
+        RestClientConfig restClientConfig = new RestClientConfig();
+        ReflectionTestUtils.setField(restClientConfig, "connectionTimeout", 2000);
+        ReflectionTestUtils.setField(restClientConfig, "readTimeout", 5000);
+        ReflectionTestUtils.setField(restClientConfig, "maxConnections", 10);
+        return new StarfishPushSink(restClientConfig.restTemplate(), new RetryConfig().retryTemplate(),
+                new SimpleMeterRegistry(), new MockEnvironment(), true, chunkSize, maxInFlight,
+                server.getBaseUrl(), BULK_PATH, BearerTokenProvider.fixed("starfish", "push-token"));
+    }
+
+    /**
+     * Bulk response reporting the given status for every item of the request.
+     */
+    private static String results(RecordedRequest request, String status) {
+        StringBuilder json = new StringBuilder("{\"results\":[");
+        JsonNode items = readTree(request.bodyAsString()).path("items");
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"").append(items.get(i).path("id").asText()).append("\",\"status\":\"").append(status).append("\"}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private static JsonNode readTree(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.amfk.starfish.sync.service;
+
+import com.amfk.starfish.sync.dto.SiteDto;
+import com.amfk.starfish.sync.util.Deadline;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrickleSiteSyncTest {
+
+    private final SiteFreshnessTracker tracker = new SiteFreshnessTracker(new SimpleMeterRegistry());
+    private TrickleSiteSync trickle;
+
+    @AfterEach
+    void tearDown() {
+        if (trickle != null) {
+            trickle.destroy();
+        }
+    }
+
+    @Test
+    void newAndChangedSitesComeBeforeTheOldestRefreshed() throws Exception {
+        SiteDto stale = site(1);
+        SiteDto recent = site(2);
+        SiteDto changed = site(3);
+        SiteDto added = site(4);
+        tracker.recordRefresh(stale, true);
+        Thread.sleep(5);
+        tracker.recordRefresh(changed, true);
+        Thread.sleep(5);
+        tracker.recordRefresh(recent, true);
+        changed.setLogUpdatedOn(LocalDateTime.of(2026, 1, 2, 0, 0));
+
+        List<SiteDto> ordered = tracker.prioritize(List.of(recent, stale, changed, added));
+
+        assertEquals(List.of(4, 3, 1, 2), ordered.stream().map(SiteDto::getId).toList());
+        assertEquals(SiteFreshnessTracker.Priority.CHANGED, tracker.priorityOf(changed));
+        assertEquals(1, tracker.report(10).stalest().get(0).siteId());
+    }
+
+    @Test
+    void batchesAreSpreadOverTheWindowOnALowPriorityThread() {
+        trickle = new TrickleSiteSync(tracker, true, 600, 2);
+        List<SiteDto> sites = IntStream.rangeClosed(1, 6).mapToObj(TrickleSiteSyncTest::site).toList();
+        List<Long> startedAt = new ArrayList<>();
+        List<Integer> priorities = new ArrayList<>();
+        SiteSyncStats stats = new SiteSyncStats();
+
+        long start = System.nanoTime();
+        trickle.run(sites, site -> {
+            startedAt.add((System.nanoTime() - start) / 1_000_000);
+            priorities.add(Thread.currentThread().getPriority());
+            tracker.recordRefresh(site, true);
+            return true;
+        }, stats);
+
+        assertEquals(6, stats.getSuccess());
+        assertTrue(priorities.stream().allMatch(priority -> priority == Thread.MIN_PRIORITY));
+        // Three batches of two, one every 200 ms
+        assertTrue(startedAt.get(1) < 100);
+        assertTrue(startedAt.get(2) >= 190 && startedAt.get(3) - startedAt.get(2) < 100);
+        assertTrue(startedAt.get(4) >= 390);
+        assertEquals(6, tracker.report(0).tracked());
+    }
+
+    @Test
+    void windowIsShortenedToFitTheRunDeadline() {
+        trickle = new TrickleSiteSync(tracker, true, 60000, 1);
+        List<SiteDto> sites = IntStream.rangeClosed(1, 4).mapToObj(TrickleSiteSyncTest::site).toList();
+        SiteSyncStats stats = new SiteSyncStats();
+
+        long start = System.nanoTime();
+        try (Deadline.Scope scope = Deadline.after(1000).enter()) {
+            trickle.run(sites, site -> true, stats);
+        }
+
+        assertEquals(4, stats.getSuccess());
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 1000);
+    }
+
+    @Test
+    void sitesNotReachedByTheDeadlineAreCountedAsSkipped() {
+        trickle = new TrickleSiteSync(tracker, true, 60000, 1);
+        List<SiteDto> sites = IntStream.rangeClosed(1, 4).mapToObj(TrickleSiteSyncTest::site).toList();
+        SiteSyncStats stats = new SiteSyncStats();
+
+        try (Deadline.Scope scope = Deadline.after(200).enter()) {
+            trickle.run(sites, site -> {
+                try {
+                    // The first site uses up the whole run budget
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }, stats);
+        }
+
+        assertEquals(1, stats.getSuccess());
+        assertEquals(3, stats.getSkipped());
+    }
+
+    private static SiteDto site(int id) {
+        SiteDto site = new SiteDto();
+        site.setId(id);
+        site.setClusterName("cluster-" + id);
+        site.setLogUpdatedOn(LocalDateTime.of(2026, 1, 1, 0, 0));
+        return site;
+    }
+}